@@ -0,0 +1,49 @@
+package com.tp.cameraxemotionrecognition;
+
+/**
+ * A decoded, upright image of an offline batch: a photo or one frame of a video, as ARGB pixels
+ * row by row.
+ */
+public class ArgbFrame {
+    /** {@link #getTimeMillis()} of frames that are not part of a video. */
+    public static final long NO_TIME = -1;
+
+    private final String id;
+    private final long timeMillis;
+    private final int width;
+    private final int height;
+    private final int[] pixels;
+
+    public ArgbFrame(String id, long timeMillis, int width, int height, int[] pixels) {
+        if (pixels.length < width * height) {
+            throw new IllegalArgumentException("Need " + width * height + " pixels, got " + pixels.length);
+        }
+        this.id = id;
+        this.timeMillis = timeMillis;
+        this.width = width;
+        this.height = height;
+        this.pixels = pixels;
+    }
+
+    /** File name of a photo or of the video the frame belongs to. */
+    public String getId() {
+        return id;
+    }
+
+    /** Position of a video frame, or {@link #NO_TIME}. */
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int[] getPixels() {
+        return pixels;
+    }
+}
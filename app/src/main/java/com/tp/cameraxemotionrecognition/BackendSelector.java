@@ -0,0 +1,172 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Picks the inference backend for this device at startup.
+ *
+ * <p>Each candidate is created, run {@code warmupRuns} times on a zero input tensor of batch size
+ * 1 to let delegates compile their graphs, then timed over {@code timedRuns} more calls. The one
+ * with the lowest average time is kept and the others are closed. Whether the GPU delegate beats a
+ * few CPU threads depends on the phone, so this is measured rather than guessed from
+ * {@code CompatibilityList}.
+ *
+ * <p>A per-device override names the backend to use without benchmarking; if it is unknown or
+ * fails to load, the benchmark runs as usual. Candidates that throw while loading or running are
+ * skipped.
+ */
+public class BackendSelector {
+    /** Average time reported for a candidate that failed. */
+    public static final long FAILED = -1;
+
+    private final FrameScheduler.Clock clock;
+    private final int warmupRuns;
+    private final int timedRuns;
+    private final List<String> names = new ArrayList<>();
+    private final List<Long> averageNanos = new ArrayList<>();
+    private String selectedName;
+
+    public BackendSelector(FrameScheduler.Clock clock, int warmupRuns, int timedRuns) {
+        if (warmupRuns < 0 || timedRuns < 1) {
+            throw new IllegalArgumentException("warmupRuns must be >= 0 and timedRuns >= 1");
+        }
+        this.clock = clock;
+        this.warmupRuns = warmupRuns;
+        this.timedRuns = timedRuns;
+    }
+
+    /**
+     * Returns a classifier of the fastest of {@code candidates}, or of {@code override} if it is
+     * non-null and loads. The caller owns the result.
+     *
+     * @throws IOException if no candidate could be loaded
+     * @throws InterruptedIOException if the thread is interrupted, checked between candidates
+     */
+    public EmotionClassifier select(List<EmotionClassifier.Factory> candidates, String override)
+            throws IOException {
+        names.clear();
+        averageNanos.clear();
+        selectedName = null;
+        IOException failure = null;
+
+        if (override != null) {
+            for (EmotionClassifier.Factory factory : candidates) {
+                if (factory.getName().equals(override)) {
+                    try {
+                        EmotionClassifier classifier = factory.create();
+                        selectedName = classifier.getName();
+                        return classifier;
+                    } catch (IOException | RuntimeException e) {
+                        // Zorlanan backend bu cihazda açılamadı, ölçüme geri dön
+                        failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                    }
+                }
+            }
+        }
+
+        EmotionClassifier best = null;
+        long bestNanos = Long.MAX_VALUE;
+        for (EmotionClassifier.Factory factory : candidates) {
+            if (Thread.currentThread().isInterrupted()) {
+                // Ölçüm iptal edildi; yarım karşılaştırmadan seçim yapılmaz
+                if (best != null) {
+                    best.close();
+                }
+                throw new InterruptedIOException("Backend selection cancelled");
+            }
+            names.add(factory.getName());
+            EmotionClassifier classifier = null;
+            long nanos;
+            try {
+                classifier = factory.create();
+                nanos = time(classifier);
+            } catch (IOException | RuntimeException e) {
+                failure = e instanceof IOException ? (IOException) e : new IOException(e);
+                if (classifier != null) {
+                    classifier.close();
+                }
+                averageNanos.add(FAILED);
+                continue;
+            }
+            averageNanos.add(nanos);
+            if (nanos < bestNanos) {
+                if (best != null) {
+                    best.close();
+                }
+                best = classifier;
+                bestNanos = nanos;
+            } else {
+                classifier.close();
+            }
+        }
+
+        if (best == null) {
+            throw failure != null ? failure : new IOException("No inference backend available");
+        }
+        selectedName = best.getName();
+        return best;
+    }
+
+    /** Average time of one batch-1 inference after warm-up. */
+    private long time(EmotionClassifier classifier) {
+        return averageRunNanos(clock, classifier, warmupRuns, timedRuns);
+    }
+
+    /**
+     * Average time of one inference of {@code classifier} on a zero batch-1 input, over
+     * {@code timedRuns} calls after {@code warmupRuns} untimed ones.
+     */
+    static long averageRunNanos(FrameScheduler.Clock clock, EmotionClassifier classifier,
+                                int warmupRuns, int timedRuns) {
+        int tensorBytes = YuvTensorConverter.getTensorBytes(classifier.getInputSize(), classifier.getInputFormat());
+        ByteBuffer input = ByteBuffer.allocateDirect(tensorBytes);
+        input.order(ByteOrder.nativeOrder());
+        float[][] output = new float[1][classifier.getNumClasses()];
+
+        for (int i = 0; i < warmupRuns; i++) {
+            classifier.run(input, 1, output);
+        }
+        long start = clock.nanoTime();
+        for (int i = 0; i < timedRuns; i++) {
+            classifier.run(input, 1, output);
+        }
+        return (clock.nanoTime() - start) / timedRuns;
+    }
+
+    /** Backend the last {@link #select} returned, or null. */
+    public String getSelectedName() {
+        return selectedName;
+    }
+
+    /** Candidates timed by the last {@link #select}; empty if an override was used. */
+    public List<String> getCandidateNames() {
+        return names;
+    }
+
+    /** Average time of each candidate in {@link #getCandidateNames()}, or {@link #FAILED}. */
+    public long getAverageNanos(int candidate) {
+        return averageNanos.get(candidate);
+    }
+
+    /** One line summary of the last selection for logging, e.g. {@code "gpu 12.1 ms, cpu 8.4 ms -> cpu"}. */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (int i = 0; i < names.size(); i++) {
+            if (i > 0) {
+                summary.append(", ");
+            }
+            long nanos = averageNanos.get(i);
+            summary.append(names.get(i)).append(' ')
+                    .append(nanos == FAILED ? "failed" : (nanos / 1000) / 1000f + " ms");
+        }
+        if (names.isEmpty()) {
+            summary.append("override");
+        }
+        return summary.append(" -> ").append(selectedName).toString();
+    }
+}
@@ -0,0 +1,148 @@
+package com.tp.cameraxemotionrecognition;
+
+import android.os.Bundle;
+import android.util.Log;
+import android.widget.TextView;
+
+import androidx.appcompat.app.AppCompatActivity;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.Charset;
+
+/**
+ * Headless batch mode: classifies the faces in a folder of photos or in a video and writes one
+ * row per face to a CSV or JSONL file, without the camera. Started from adb, e.g.
+ *
+ * <pre>
+ * adb shell am start -n com.tp.cameraxemotionrecognition/.BatchActivity \
+ *     --es input photos --es output photos.csv
+ * adb shell am start -n com.tp.cameraxemotionrecognition/.BatchActivity \
+ *     --es input clip.mp4 --es output clip.jsonl --el interval_ms 200
+ * </pre>
+ *
+ * Paths are resolved against the app's external files folder, which needs no storage permission;
+ * paths that lead outside it are refused, so the activity can't be used to read or overwrite other
+ * files the app can reach. Only callers holding {@code DUMP}, such as the adb shell, may start it.
+ * The output format follows the extension. Progress and the summary go to the screen and to
+ * logcat.
+ */
+public class BatchActivity extends AppCompatActivity {
+    private static final String TAG = "BatchActivity";
+    public static final String EXTRA_INPUT = "input";
+    public static final String EXTRA_OUTPUT = "output";
+    public static final String EXTRA_INTERVAL_MS = "interval_ms";
+    private static final long DEFAULT_INTERVAL_MS = 500;
+    private static final int MAX_BATCH_SIZE = 4;
+
+    private TextView textView;
+    private Thread worker;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        textView = new TextView(this);
+        setContentView(textView);
+
+        final String input = getIntent().getStringExtra(EXTRA_INPUT);
+        final String output = getIntent().getStringExtra(EXTRA_OUTPUT);
+        final long intervalMs = getIntent().getLongExtra(EXTRA_INTERVAL_MS, DEFAULT_INTERVAL_MS);
+        if (input == null || output == null) {
+            show("Usage: --es " + EXTRA_INPUT + " <folder or video> --es " + EXTRA_OUTPUT
+                    + " <file.csv|file.jsonl> [--el " + EXTRA_INTERVAL_MS + " <ms>]");
+            return;
+        }
+        // Model, dedektör ve kod çözme uzun sürer, ana thread'de çalışmamalı
+        worker = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    runBatch(resolve(input), resolve(output), intervalMs);
+                } catch (IOException e) {
+                    Log.e(TAG, "Batch failed", e);
+                    show("Failed: " + e.getMessage());
+                } catch (InterruptedException e) {
+                    show("Cancelled");
+                }
+            }
+        }, "batch");
+        worker.start();
+    }
+
+    /** The file at {@code path} inside the external files folder; absolute paths must point there too. */
+    private File resolve(String path) throws IOException {
+        File root = getExternalFilesDir(null);
+        if (root == null) {
+            throw new IOException("External storage is not available");
+        }
+        File file = new File(path);
+        if (!file.isAbsolute()) {
+            file = new File(root, path);
+        }
+        // ".." ve sembolik bağlantılar çözüldükten sonra karşılaştır
+        File canonical = file.getCanonicalFile();
+        String rootPath = root.getCanonicalPath();
+        if (!canonical.getPath().equals(rootPath) && !canonical.getPath().startsWith(rootPath + File.separator)) {
+            throw new IOException(path + " is outside " + rootPath);
+        }
+        return canonical;
+    }
+
+    private void runBatch(File input, File output, long intervalMs) throws IOException, InterruptedException {
+        int cores = Runtime.getRuntime().availableProcessors();
+        // Detection and decoding dominate, so one single-threaded model per two workers is enough;
+        // the locator gives each worker its own detector
+        MlKitFaceLocator locator = new MlKitFaceLocator();
+        BatchClassifier batch = new BatchClassifier(locator,
+                EmotionModelSession.factory(this, EmotionModelSession.BACKEND_XNNPACK,
+                        EmotionModelSession.CPU_VARIANTS, 1, MAX_BATCH_SIZE),
+                cores, Math.max(1, cores / 2));
+        batch.setProgressListener(new BatchClassifier.ProgressListener() {
+            @Override
+            public void onProgress(int framesDone, int frameCount) {
+                show(framesDone + " / " + frameCount + " frames");
+            }
+        });
+
+        BatchClassifier.FrameSource source = null;
+        BatchResultWriter writer = null;
+        try {
+            source = input.isDirectory()
+                    ? new ImageFolderSource(getContentResolver(), input)
+                    : new VideoFrameSource(input, intervalMs);
+            writer = new BatchResultWriter(new BufferedWriter(new OutputStreamWriter(
+                    new FileOutputStream(output), Charset.forName("UTF-8"))), BatchResultWriter.formatOf(output.getName()));
+            BatchClassifier.Summary summary = batch.run(source, writer);
+            Log.i(TAG, input + " -> " + output + ": " + summary);
+            show(summary + "\n" + output);
+        } finally {
+            locator.close();
+            if (source != null) {
+                source.close();
+            }
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private void show(final String text) {
+        runOnUiThread(new Runnable() {
+            @Override
+            public void run() {
+                textView.setText(text);
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        if (worker != null) {
+            worker.interrupt();
+        }
+    }
+}
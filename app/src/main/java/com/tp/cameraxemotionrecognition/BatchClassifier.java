@@ -0,0 +1,339 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Headless classification of recorded material: every frame of a {@link FrameSource} goes through
+ * a {@link FaceLocator} and the emotion model, and one {@link FaceResult} per face is written to a
+ * {@link BatchResultWriter}.
+ *
+ * <p>Frames are independent, so unlike the live pipeline nothing is dropped and nothing has to be
+ * fresh: a pool of worker threads, one per core by default, each decodes, detects and crops a whole
+ * frame, then borrows one of a few classifiers for its faces. Only a bounded number of frames is
+ * decoded ahead, so memory stays flat on long videos, and results are written in frame order
+ * whatever order the workers finish in.
+ *
+ * <p>Nothing here depends on Android; the device supplies sources and a locator backed by
+ * {@code BitmapUtils}, {@code MediaMetadataRetriever} and ML Kit, a host runner can supply its own.
+ */
+public class BatchClassifier {
+
+    /** Frames to classify, e.g. the photos of a folder or frames sampled from a video. */
+    public interface FrameSource extends Closeable {
+        int getFrameCount();
+
+        /** Decodes frame {@code index}; called from several worker threads at once. */
+        ArgbFrame decode(int index) throws IOException;
+    }
+
+    /** Face detector for decoded frames; called from several worker threads at once. */
+    public interface FaceLocator {
+        /** Face rects of {@code frame}, packed as {@code left, top, right, bottom} per face. */
+        int[] locate(ArgbFrame frame) throws IOException;
+    }
+
+    /** Classification of one face. */
+    public static class FaceResult {
+        public final String frameId;
+        public final long timeMillis;
+        public final int face;
+        public final int left;
+        public final int top;
+        public final int right;
+        public final int bottom;
+        public final float[] confidences;
+
+        public FaceResult(String frameId, long timeMillis, int face,
+                          int left, int top, int right, int bottom, float[] confidences) {
+            this.frameId = frameId;
+            this.timeMillis = timeMillis;
+            this.face = face;
+            this.left = left;
+            this.top = top;
+            this.right = right;
+            this.bottom = bottom;
+            this.confidences = confidences;
+        }
+
+        public int getEmotion() {
+            return Emotions.argmax(confidences);
+        }
+    }
+
+    /** Totals of one {@link #run}. */
+    public static class Summary {
+        public final int frames;
+        public final int failedFrames;
+        public final int faces;
+        public final long elapsedMs;
+        /** Message of the first frame that could not be read, or null. */
+        public final String firstError;
+
+        Summary(int frames, int failedFrames, int faces, long elapsedMs, String firstError) {
+            this.frames = frames;
+            this.failedFrames = failedFrames;
+            this.faces = faces;
+            this.elapsedMs = elapsedMs;
+            this.firstError = firstError;
+        }
+
+        @Override
+        public String toString() {
+            return frames + " frames, " + faces + " faces in " + elapsedMs + " ms"
+                    + (failedFrames > 0 ? ", " + failedFrames + " failed (" + firstError + ")" : "");
+        }
+    }
+
+    /** Progress callback, called from worker threads as frames are written. */
+    public interface ProgressListener {
+        void onProgress(int framesDone, int frameCount);
+    }
+
+    private final FaceLocator locator;
+    private final EmotionClassifier.Factory classifierFactory;
+    private final int workers;
+    private final int classifiers;
+    private ProgressListener progressListener;
+
+    // State of the current run; the reorder buffer is guarded by this
+    private final Map<Integer, List<FaceResult>> finished = new HashMap<>();
+    private BatchResultWriter writer;
+    private int frameCount;
+    private int nextToWrite;
+    private int failedFrames;
+    private int faces;
+    private String firstError;
+    private IOException writeError;
+
+    /**
+     * @param workers     frames processed at once, usually the number of cores
+     * @param classifiers model instances shared by the workers; each one is a full interpreter, so
+     *                    fewer than workers, since detection and decoding take most of a frame
+     */
+    public BatchClassifier(FaceLocator locator, EmotionClassifier.Factory classifierFactory,
+                           int workers, int classifiers) {
+        if (workers < 1 || classifiers < 1) {
+            throw new IllegalArgumentException("Need at least one worker and one classifier");
+        }
+        this.locator = locator;
+        this.classifierFactory = classifierFactory;
+        this.workers = workers;
+        this.classifiers = Math.min(classifiers, workers);
+    }
+
+    public void setProgressListener(ProgressListener progressListener) {
+        this.progressListener = progressListener;
+    }
+
+    /**
+     * Classifies every frame of {@code source} and writes the faces to {@code out}. A frame that
+     * can't be decoded or searched is counted as failed and skipped; a write error stops the run.
+     * Closes neither the source nor the writer.
+     *
+     * <p>If interrupted, the frames not started yet are dropped, but the call still waits for the
+     * running ones before it closes the classifiers and returns, so the caller may close the
+     * source, the writer and the locator right after.
+     */
+    public Summary run(FrameSource source, BatchResultWriter out) throws IOException, InterruptedException {
+        long start = System.nanoTime();
+        final BlockingQueue<EmotionClassifier> pool = new ArrayBlockingQueue<>(classifiers);
+        List<EmotionClassifier> created = new ArrayList<>(classifiers);
+        ExecutorService executor = Executors.newFixedThreadPool(workers);
+        try {
+            for (int i = 0; i < classifiers; i++) {
+                EmotionClassifier classifier = classifierFactory.create();
+                created.add(classifier);
+                pool.add(classifier);
+            }
+            final EmotionClassifier first = pool.peek();
+            final ThreadLocal<Worker> worker = new ThreadLocal<Worker>() {
+                @Override
+                protected Worker initialValue() {
+                    return new Worker(first);
+                }
+            };
+
+            synchronized (this) {
+                writer = out;
+                frameCount = source.getFrameCount();
+                nextToWrite = 0;
+                failedFrames = 0;
+                faces = 0;
+                firstError = null;
+                writeError = null;
+                finished.clear();
+            }
+            // At most two frames per worker queued or in progress, so decoded frames don't pile up
+            final Semaphore ahead = new Semaphore(2 * workers);
+            final FrameSource frames = source;
+            for (int i = 0; i < frameCount && !hasWriteError(); i++) {
+                ahead.acquire();
+                final int index = i;
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        try {
+                            process(frames, index, worker.get(), pool);
+                        } finally {
+                            ahead.release();
+                        }
+                    }
+                });
+            }
+            executor.shutdown();
+            executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+        } finally {
+            executor.shutdownNow();
+            awaitWorkers(executor);
+            // Çalışanlar bitti, ödünç alınan modeller de havuza döndü
+            for (EmotionClassifier classifier : created) {
+                classifier.close();
+            }
+        }
+
+        synchronized (this) {
+            writer = null;
+            if (writeError != null) {
+                throw writeError;
+            }
+            return new Summary(frameCount, failedFrames, faces,
+                    (System.nanoTime() - start) / 1_000_000, firstError);
+        }
+    }
+
+    /**
+     * Waits until every worker has returned, even if this thread is interrupted: workers may be
+     * inside the locator, the source or a classifier, which must not be closed under them.
+     */
+    private static void awaitWorkers(ExecutorService executor) {
+        boolean interrupted = false;
+        while (true) {
+            try {
+                if (executor.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS)) {
+                    break;
+                }
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private synchronized boolean hasWriteError() {
+        return writeError != null;
+    }
+
+    /** Per-thread crop buffers. */
+    private static class Worker {
+        final YuvTensorConverter converter;
+        final FrameBufferArena arena;
+
+        Worker(EmotionClassifier classifier) {
+            converter = new YuvTensorConverter(classifier.getInputSize(), classifier.getInputFormat());
+            arena = new FrameBufferArena(classifier.getInputSize(), classifier.getMaxBatchSize(),
+                    classifier.getNumClasses(), classifier.getInputFormat());
+        }
+    }
+
+    private void process(FrameSource source, int index, Worker worker, BlockingQueue<EmotionClassifier> pool) {
+        List<FaceResult> results = null;
+        String error = null;
+        try {
+            results = classifyFrame(source.decode(index), worker, pool);
+        } catch (IOException | RuntimeException e) {
+            error = "frame " + index + ": " + e.getMessage();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            error = "frame " + index + ": interrupted";
+        }
+        finish(index, results, error);
+    }
+
+    private List<FaceResult> classifyFrame(ArgbFrame frame, Worker worker, BlockingQueue<EmotionClassifier> pool)
+            throws IOException, InterruptedException {
+        int[] rects = locator.locate(frame);
+        int count = rects.length / 4;
+        if (count == 0) {
+            return Collections.emptyList();
+        }
+        List<FaceResult> results = new ArrayList<>(count);
+        int maxBatch = worker.arena.getMaxBatchSize();
+        for (int from = 0; from < count; from += maxBatch) {
+            int batch = Math.min(maxBatch, count - from);
+            ByteBuffer input = worker.arena.getInput(batch);
+            // Kırpma sınıflandırıcıyı beklemeden yapılır, model sadece run için ödünç alınır
+            for (int face = from; face < from + batch; face++) {
+                worker.converter.convertArgb(frame.getPixels(), frame.getWidth(), frame.getHeight(),
+                        rects[4 * face], rects[4 * face + 1], rects[4 * face + 2], rects[4 * face + 3], input);
+            }
+            input.rewind();
+            float[][] output = worker.arena.getOutput(batch);
+            EmotionClassifier classifier = pool.take();
+            try {
+                classifier.run(input, batch, output);
+            } finally {
+                pool.add(classifier);
+            }
+            for (int i = 0; i < batch; i++) {
+                int face = from + i;
+                results.add(new FaceResult(frame.getId(), frame.getTimeMillis(), face,
+                        rects[4 * face], rects[4 * face + 1], rects[4 * face + 2], rects[4 * face + 3],
+                        output[i].clone()));
+            }
+        }
+        return results;
+    }
+
+    /** Queues the results of frame {@code index} and writes every frame that is now next in order. */
+    private void finish(int index, List<FaceResult> results, String error) {
+        int done;
+        synchronized (this) {
+            if (error != null) {
+                failedFrames++;
+                if (firstError == null) {
+                    firstError = error;
+                }
+                results = Collections.emptyList();
+            }
+            finished.put(index, results);
+            int before = nextToWrite;
+            List<FaceResult> next;
+            while ((next = finished.remove(nextToWrite)) != null) {
+                if (writeError == null) {
+                    try {
+                        for (FaceResult result : next) {
+                            writer.write(result);
+                        }
+                    } catch (IOException e) {
+                        writeError = e;
+                    }
+                }
+                faces += next.size();
+                nextToWrite++;
+            }
+            if (nextToWrite == before) {
+                return;
+            }
+            done = nextToWrite;
+        }
+        ProgressListener listener = progressListener;
+        if (listener != null) {
+            listener.onProgress(done, frameCount);
+        }
+    }
+}
@@ -0,0 +1,124 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Locale;
+
+/**
+ * Writes {@link BatchClassifier.FaceResult}s as CSV, with a header row, or as JSON lines, one
+ * object per face. Both carry the frame id and time, the face index and rect, the top emotion and
+ * the confidence of every class.
+ */
+public class BatchResultWriter implements Closeable {
+    public static final int FORMAT_CSV = 0;
+    public static final int FORMAT_JSONL = 1;
+
+    private final Writer out;
+    private final int format;
+    private final String[] classes;
+    private boolean headerWritten;
+
+    public BatchResultWriter(Writer out, int format) {
+        this(out, format, Emotions.CLASSES);
+    }
+
+    public BatchResultWriter(Writer out, int format, String[] classes) {
+        if (format != FORMAT_CSV && format != FORMAT_JSONL) {
+            throw new IllegalArgumentException("Unknown format " + format);
+        }
+        this.out = out;
+        this.format = format;
+        this.classes = classes;
+    }
+
+    /** {@link #FORMAT_JSONL} for {@code .jsonl} and {@code .json} files, CSV otherwise. */
+    public static int formatOf(String fileName) {
+        String name = fileName.toLowerCase(Locale.US);
+        return name.endsWith(".jsonl") || name.endsWith(".json") ? FORMAT_JSONL : FORMAT_CSV;
+    }
+
+    public void write(BatchClassifier.FaceResult result) throws IOException {
+        StringBuilder line = new StringBuilder(128);
+        if (format == FORMAT_CSV) {
+            if (!headerWritten) {
+                out.write(csvHeader());
+                headerWritten = true;
+            }
+            line.append(csvField(result.frameId)).append(',')
+                    .append(result.timeMillis).append(',')
+                    .append(result.face).append(',')
+                    .append(result.left).append(',')
+                    .append(result.top).append(',')
+                    .append(result.right).append(',')
+                    .append(result.bottom).append(',')
+                    .append(className(result.getEmotion())).append(',')
+                    .append(format(result.confidences[result.getEmotion()]));
+            for (float confidence : result.confidences) {
+                line.append(',').append(format(confidence));
+            }
+        } else {
+            line.append("{\"frame\":").append(jsonString(result.frameId))
+                    .append(",\"time_ms\":").append(result.timeMillis)
+                    .append(",\"face\":").append(result.face)
+                    .append(",\"box\":[").append(result.left).append(',').append(result.top).append(',')
+                    .append(result.right).append(',').append(result.bottom).append(']')
+                    .append(",\"emotion\":").append(jsonString(className(result.getEmotion())))
+                    .append(",\"confidence\":").append(format(result.confidences[result.getEmotion()]))
+                    .append(",\"scores\":{");
+            for (int i = 0; i < result.confidences.length; i++) {
+                line.append(i == 0 ? "" : ",").append(jsonString(className(i))).append(':')
+                        .append(format(result.confidences[i]));
+            }
+            line.append("}}");
+        }
+        out.write(line.append('\n').toString());
+    }
+
+    private String csvHeader() {
+        StringBuilder header = new StringBuilder("frame,time_ms,face,left,top,right,bottom,emotion,confidence");
+        for (int i = 0; i < classes.length; i++) {
+            header.append(',').append(classes[i]);
+        }
+        return header.append('\n').toString();
+    }
+
+    private String className(int index) {
+        return index < classes.length ? classes[index] : "class" + index;
+    }
+
+    private static String format(float value) {
+        return String.format(Locale.US, "%.4f", value);
+    }
+
+    private static String csvField(String value) {
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0) {
+            return value;
+        }
+        return '"' + value.replace("\"", "\"\"") + '"';
+    }
+
+    private static String jsonString(String value) {
+        StringBuilder json = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                json.append('\\').append(c);
+            } else if (c < 0x20) {
+                json.append(String.format(Locale.US, "\\u%04x", (int) c));
+            } else {
+                json.append(c);
+            }
+        }
+        return json.append('"').toString();
+    }
+
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        out.close();
+    }
+}
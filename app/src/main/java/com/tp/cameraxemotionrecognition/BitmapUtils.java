@@ -23,8 +23,6 @@ import android.graphics.ImageFormat;
 import android.graphics.Matrix;
 import android.graphics.Rect;
 import android.graphics.YuvImage;
-import android.media.Image;
-import android.media.Image.Plane;
 import android.net.Uri;
 import android.os.Build.VERSION_CODES;
 import android.provider.MediaStore;
@@ -32,7 +30,6 @@ import android.util.Log;
 
 import androidx.annotation.Nullable;
 import androidx.annotation.RequiresApi;
-import androidx.camera.core.ExperimentalGetImage;
 import androidx.camera.core.ImageProxy;
 import androidx.exifinterface.media.ExifInterface;
 
@@ -49,8 +46,14 @@ public class BitmapUtils {
     @Nullable
     public static Bitmap getBitmap(ByteBuffer data, FrameMetadata metadata) {
         data.rewind();
-        byte[] imageInBuffer = new byte[data.limit()];
-        data.get(imageInBuffer, 0, imageInBuffer.length);
+        byte[] imageInBuffer;
+        if (data.hasArray() && data.arrayOffset() == 0 && data.array().length == data.limit()) {
+            // Already backed by a whole NV21 array, no need to copy it.
+            imageInBuffer = data.array();
+        } else {
+            imageInBuffer = new byte[data.limit()];
+            data.get(imageInBuffer, 0, imageInBuffer.length);
+        }
         try {
             YuvImage image =
                     new YuvImage(
@@ -71,7 +74,6 @@ public class BitmapUtils {
     /** Converts a YUV_420_888 image from CameraX API to a bitmap. */
     @RequiresApi(VERSION_CODES.LOLLIPOP)
     @Nullable
-    @ExperimentalGetImage
     public static Bitmap getBitmap(ImageProxy image) {
         FrameMetadata frameMetadata =
                 new FrameMetadata.Builder()
@@ -81,10 +83,47 @@ public class BitmapUtils {
                         .build();
 
         ByteBuffer nv21Buffer =
-                yuv420ThreePlanesToNV21(image.getImage().getPlanes(), image.getWidth(), image.getHeight());
+                yuv420ThreePlanesToNV21(getYuvPlanes(image), image.getWidth(), image.getHeight());
         return getBitmap(nv21Buffer, frameMetadata);
     }
 
+    /** Wraps the Y, U and V planes of a YUV_420_888 CameraX frame without copying them. */
+    public static YuvPlane[] getYuvPlanes(ImageProxy image) {
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        YuvPlane[] yuvPlanes = new YuvPlane[3];
+        for (int i = 0; i < 3; i++) {
+            yuvPlanes[i] = new YuvPlane(planes[i].getBuffer(), planes[i].getRowStride(), planes[i].getPixelStride());
+        }
+        return yuvPlanes;
+    }
+
+    /**
+     * Points a reusable {@link YuvFrame} at a YUV_420_888 CameraX frame, so all faces in it share
+     * one frame without allocating wrappers for every image.
+     */
+    public static void wrapYuvFrame(ImageProxy image, YuvFrame frame) {
+        frame.reset(image.getWidth(), image.getHeight(), image.getImageInfo().getRotationDegrees());
+        ImageProxy.PlaneProxy[] planes = image.getPlanes();
+        for (int i = 0; i < 3; i++) {
+            frame.setPlane(i, planes[i].getBuffer(), planes[i].getRowStride(), planes[i].getPixelStride());
+        }
+    }
+
+    /**
+     * Writes an RGB tensor in {@code format} into an existing mutable {@code size x size} bitmap, using
+     * {@code pixels} as scratch space, so nothing is allocated.
+     */
+    public static void tensorToBitmap(ByteBuffer tensor, int size, TensorFormat format, int[] pixels, Bitmap out) {
+        for (int i = 0; i < size * size; i++) {
+            int base = i * YuvTensorConverter.CHANNELS;
+            int r = format.get(tensor, base);
+            int g = format.get(tensor, base + 1);
+            int b = format.get(tensor, base + 2);
+            pixels[i] = 0xFF000000 | (r << 16) | (g << 8) | b;
+        }
+        out.setPixels(pixels, 0, size, 0, 0, size, size);
+    }
+
     /** Rotates a bitmap if it is converted from a bytebuffer. */
     private static Bitmap rotateBitmap(
             Bitmap bitmap, int rotationDegrees, boolean flipX, boolean flipY) {
@@ -176,109 +215,10 @@ public class BitmapUtils {
         return exif.getAttributeInt(ExifInterface.TAG_ORIENTATION, ExifInterface.ORIENTATION_NORMAL);
     }
 
-    /**
-     * Converts YUV_420_888 to NV21 bytebuffer.
-     *
-     * <p>The NV21 format consists of a single byte array containing the Y, U and V values. For an
-     * image of size S, the first S positions of the array contain all the Y values. The remaining
-     * positions contain interleaved V and U values. U and V are subsampled by a factor of 2 in both
-     * dimensions, so there are S/4 U values and S/4 V values. In summary, the NV21 array will contain
-     * S Y values followed by S/4 VU values: YYYYYYYYYYYYYY(...)YVUVUVUVU(...)VU
-     *
-     * <p>YUV_420_888 is a generic format that can describe any YUV image where U and V are subsampled
-     * by a factor of 2 in both dimensions. {@link Image#getPlanes} returns an array with the Y, U and
-     * V planes. The Y plane is guaranteed not to be interleaved, so we can just copy its values into
-     * the first part of the NV21 array. The U and V planes may already have the representation in the
-     * NV21 format. This happens if the planes share the same buffer, the V buffer is one position
-     * before the U buffer and the planes have a pixelStride of 2. If this is case, we can just copy
-     * them to the NV21 array.
-     */
-    private static ByteBuffer yuv420ThreePlanesToNV21(
-            Plane[] yuv420888planes, int width, int height) {
-        int imageSize = width * height;
-        byte[] out = new byte[imageSize + 2 * (imageSize / 4)];
-
-        if (areUVPlanesNV21(yuv420888planes, width, height)) {
-            // Copy the Y values.
-            yuv420888planes[0].getBuffer().get(out, 0, imageSize);
-
-            ByteBuffer uBuffer = yuv420888planes[1].getBuffer();
-            ByteBuffer vBuffer = yuv420888planes[2].getBuffer();
-            // Get the first V value from the V buffer, since the U buffer does not contain it.
-            vBuffer.get(out, imageSize, 1);
-            // Copy the first U value and the remaining VU values from the U buffer.
-            uBuffer.get(out, imageSize + 1, 2 * imageSize / 4 - 1);
-        } else {
-            // Fallback to copying the UV values one by one, which is slower but also works.
-            // Unpack Y.
-            unpackPlane(yuv420888planes[0], width, height, out, 0, 1);
-            // Unpack U.
-            unpackPlane(yuv420888planes[1], width, height, out, imageSize + 1, 2);
-            // Unpack V.
-            unpackPlane(yuv420888planes[2], width, height, out, imageSize, 2);
-        }
-
+    /** Converts YUV_420_888 to NV21 bytebuffer, see {@link YuvConversions#yuv420ThreePlanesToNV21}. */
+    private static ByteBuffer yuv420ThreePlanesToNV21(YuvPlane[] planes, int width, int height) {
+        byte[] out = new byte[YuvConversions.nv21Size(width, height)];
+        YuvConversions.yuv420ThreePlanesToNV21(planes, width, height, out);
         return ByteBuffer.wrap(out);
     }
-
-    /** Checks if the UV plane buffers of a YUV_420_888 image are in the NV21 format. */
-    private static boolean areUVPlanesNV21(Plane[] planes, int width, int height) {
-        int imageSize = width * height;
-
-        ByteBuffer uBuffer = planes[1].getBuffer();
-        ByteBuffer vBuffer = planes[2].getBuffer();
-
-        // Backup buffer properties.
-        int vBufferPosition = vBuffer.position();
-        int uBufferLimit = uBuffer.limit();
-
-        // Advance the V buffer by 1 byte, since the U buffer will not contain the first V value.
-        vBuffer.position(vBufferPosition + 1);
-        // Chop off the last byte of the U buffer, since the V buffer will not contain the last U value.
-        uBuffer.limit(uBufferLimit - 1);
-
-        // Check that the buffers are equal and have the expected number of elements.
-        boolean areNV21 =
-                (vBuffer.remaining() == (2 * imageSize / 4 - 2)) && (vBuffer.compareTo(uBuffer) == 0);
-
-        // Restore buffers to their initial state.
-        vBuffer.position(vBufferPosition);
-        uBuffer.limit(uBufferLimit);
-
-        return areNV21;
-    }
-
-    /**
-     * Unpack an image plane into a byte array.
-     *
-     * <p>The input plane data will be copied in 'out', starting at 'offset' and every pixel will be
-     * spaced by 'pixelStride'. Note that there is no row padding on the output.
-     */
-    private static void unpackPlane(
-            Plane plane, int width, int height, byte[] out, int offset, int pixelStride) {
-        ByteBuffer buffer = plane.getBuffer();
-        buffer.rewind();
-
-        // Compute the size of the current plane.
-        // We assume that it has the aspect ratio as the original image.
-        int numRow = (buffer.limit() + plane.getRowStride() - 1) / plane.getRowStride();
-        if (numRow == 0) {
-            return;
-        }
-        int scaleFactor = height / numRow;
-        int numCol = width / scaleFactor;
-
-        // Extract the data in the output buffer.
-        int outputPos = offset;
-        int rowStart = 0;
-        for (int row = 0; row < numRow; row++) {
-            int inputPos = rowStart;
-            for (int col = 0; col < numCol; col++) {
-                out[outputPos] = buffer.get(inputPos);
-                outputPos += pixelStride;
-                inputPos += plane.getPixelStride();
-            }
-            rowStart += plane.getRowStride();
-        }
-    }
-}
\ No newline at end of file
+}
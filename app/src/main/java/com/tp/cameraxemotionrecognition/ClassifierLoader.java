@@ -0,0 +1,252 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads the emotion model on a background thread at app start, then runs a few warm-up
+ * inferences on zero inputs, so the first face doesn't pay for the model load, GPU shader
+ * compilation or the first allocation of the interpreter tensors.
+ *
+ * <p>The classifier is published as soon as it has run at batch size 1, the shape of the first
+ * frames with a face. Each input shape allocates its own tensors, so {@link #warmUpLargerBatches()}
+ * then runs the largest batch too, while the classifier is already in use. Callers on the frame
+ * path use {@link #getIfReady()}, which never blocks; they treat a model that isn't ready yet like
+ * a frame without faces.
+ *
+ * <p>The loader owns the classifier: {@link #close()} releases it, or releases it as soon as it
+ * loads if loading is still under way.
+ */
+public class ClassifierLoader implements Closeable {
+    public static final int STATE_NOT_STARTED = 0;
+    public static final int STATE_LOADING = 1;
+    public static final int STATE_READY = 2;
+    public static final int STATE_FAILED = 3;
+    public static final int STATE_CLOSED = 4;
+
+    /** Creates the classifier; runs once, on the loader thread. */
+    public interface Loader {
+        EmotionClassifier load() throws IOException;
+    }
+
+    private final Loader loader;
+    private final int warmupRuns;
+    private final FrameScheduler.Clock clock;
+
+    // Guarded by this
+    private int state = STATE_NOT_STARTED;
+    private EmotionClassifier classifier;
+    private IOException error;
+    private long loadNanos;
+    private long warmupNanos;
+    private boolean batchesWarmedUp;
+
+    public ClassifierLoader(Loader loader, int warmupRuns, FrameScheduler.Clock clock) {
+        if (warmupRuns < 0) {
+            throw new IllegalArgumentException("warmupRuns must be >= 0");
+        }
+        this.loader = loader;
+        this.warmupRuns = warmupRuns;
+        this.clock = clock;
+    }
+
+    /**
+     * Starts loading on a new background thread, which also runs {@link #warmUpLargerBatches()}.
+     * Does nothing if already started or closed.
+     */
+    public void start() {
+        if (!claim()) {
+            return;
+        }
+        Thread thread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                loadAndWarmUp();
+                warmUpLargerBatches();
+            }
+        }, "model-loader");
+        thread.start();
+    }
+
+    /**
+     * Loads the classifier and warms it up at batch size 1 on the calling thread, for callers that
+     * schedule the work themselves; they should call {@link #warmUpLargerBatches()} afterwards.
+     * Does nothing if already started or closed.
+     *
+     * @return whether the classifier is ready
+     */
+    public boolean load() {
+        if (claim()) {
+            loadAndWarmUp();
+        }
+        return isReady();
+    }
+
+    private synchronized boolean claim() {
+        if (state != STATE_NOT_STARTED) {
+            return false;
+        }
+        state = STATE_LOADING;
+        return true;
+    }
+
+    private void loadAndWarmUp() {
+        long start = clock.nanoTime();
+        EmotionClassifier loaded = null;
+        IOException failure = null;
+        long loadedAt = start;
+        try {
+            loaded = loader.load();
+            loadedAt = clock.nanoTime();
+            warmUp(loaded, 1);
+        } catch (IOException e) {
+            failure = e;
+        } catch (RuntimeException e) {
+            failure = new IOException("Model failed to load", e);
+        }
+        long end = clock.nanoTime();
+
+        synchronized (this) {
+            if (state == STATE_CLOSED) {
+                // Yükleme sürerken kapatıldı, model kimseye verilmeden bırakılır
+                if (loaded != null) {
+                    loaded.close();
+                }
+                return;
+            }
+            if (failure != null) {
+                if (loaded != null) {
+                    loaded.close();
+                }
+                error = failure;
+                state = STATE_FAILED;
+            } else {
+                classifier = loaded;
+                state = STATE_READY;
+            }
+            loadNanos = loadedAt - start;
+            warmupNanos = failure != null ? 0 : end - loadedAt;
+            notifyAll();
+        }
+    }
+
+    /**
+     * Runs the warm-up inferences at the largest batch size of a published classifier. Does
+     * nothing if it isn't ready, takes one face at a time or was warmed up already. The runs share
+     * the classifier with the frame path, so they may hold up a frame or two.
+     */
+    public void warmUpLargerBatches() {
+        EmotionClassifier ready;
+        synchronized (this) {
+            if (state != STATE_READY || batchesWarmedUp) {
+                return;
+            }
+            batchesWarmedUp = true;
+            ready = classifier;
+        }
+        if (ready.getMaxBatchSize() <= 1) {
+            return;
+        }
+        try {
+            warmUp(ready, ready.getMaxBatchSize());
+        } catch (RuntimeException e) {
+            // Isınma sırasında kapatıldı; kapatan taraf modeli zaten bıraktı
+        }
+    }
+
+    private void warmUp(EmotionClassifier classifier, int count) {
+        int tensorBytes = YuvTensorConverter.getTensorBytes(classifier.getInputSize(), classifier.getInputFormat());
+        ByteBuffer input = ByteBuffer.allocateDirect(count * tensorBytes).order(ByteOrder.nativeOrder());
+        float[][] output = new float[count][classifier.getNumClasses()];
+        for (int i = 0; i < warmupRuns; i++) {
+            input.rewind();
+            classifier.run(input, count, output);
+        }
+    }
+
+    public synchronized int getState() {
+        return state;
+    }
+
+    public synchronized boolean isReady() {
+        return state == STATE_READY;
+    }
+
+    /**
+     * Returns the warmed-up classifier, or null while it is still loading. Never blocks.
+     *
+     * @throws IOException if loading failed or the loader was closed
+     */
+    public synchronized EmotionClassifier getIfReady() throws IOException {
+        switch (state) {
+            case STATE_READY:
+                return classifier;
+            case STATE_FAILED:
+                throw new IOException("Model failed to load", error);
+            case STATE_CLOSED:
+                throw new IOException("Model loader is closed");
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Waits up to {@code timeout} for the classifier, for callers off the frame path that have
+     * nothing to do until it is there. Returns null on timeout or if the loader was never started.
+     */
+    public synchronized EmotionClassifier await(long timeout, TimeUnit unit) throws IOException, InterruptedException {
+        long deadline = System.nanoTime() + unit.toNanos(timeout);
+        while (state == STATE_LOADING) {
+            long remaining = deadline - System.nanoTime();
+            if (remaining <= 0) {
+                return null;
+            }
+            TimeUnit.NANOSECONDS.timedWait(this, remaining);
+        }
+        return getIfReady();
+    }
+
+    /** Time {@link Loader#load()} took, once loading is over. */
+    public synchronized long getLoadMillis() {
+        return loadNanos / 1_000_000;
+    }
+
+    /** Time the batch-1 warm-up inferences took, once the classifier is ready. */
+    public synchronized long getWarmupMillis() {
+        return warmupNanos / 1_000_000;
+    }
+
+    /** Releases the classifier, now or when loading finishes. Safe to call more than once. */
+    @Override
+    public void close() {
+        EmotionClassifier loaded;
+        synchronized (this) {
+            loaded = classifier;
+            classifier = null;
+            state = STATE_CLOSED;
+            notifyAll();
+        }
+        if (loaded != null) {
+            loaded.close();
+        }
+    }
+
+    @Override
+    public synchronized String toString() {
+        switch (state) {
+            case STATE_READY:
+                return "ready, load " + getLoadMillis() + " ms, warm-up " + getWarmupMillis() + " ms";
+            case STATE_FAILED:
+                return "failed: " + error.getMessage();
+            case STATE_CLOSED:
+                return "closed";
+            case STATE_LOADING:
+                return "loading";
+            default:
+                return "not started";
+        }
+    }
+}
@@ -0,0 +1,189 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.util.Locale;
+
+/**
+ * Face detection settings: the camera analysis resolution and the detector options that decide
+ * how much detection costs per frame. Detection is about half of the frame time and its cost grows
+ * with the number of pixels and with how small a face it looks for, so most scenes don't need more
+ * than the {@link #BALANCED} profile.
+ *
+ * <p>The profile only describes the settings; {@code MainActivity} turns it into an
+ * {@code ImageAnalysis} target resolution and {@code FaceDetectorOptions}. Contour detection
+ * only finds the most prominent face and gives no tracking ids, so it is best left off here.
+ */
+public class DetectionProfile {
+    public static final int PERFORMANCE_FAST = 1;
+    public static final int PERFORMANCE_ACCURATE = 2;
+
+    /** Close faces, e.g. a kiosk a person stands in front of. */
+    public static final DetectionProfile FAST = new Builder("fast")
+            .setAnalysisSize(480, 360)
+            .setPerformanceMode(PERFORMANCE_FAST)
+            .setMinFaceSize(0.2f)
+            .build();
+    /** Faces across a room at a resolution most cameras stream cheaply. */
+    public static final DetectionProfile BALANCED = new Builder("balanced")
+            .setAnalysisSize(640, 480)
+            .setPerformanceMode(PERFORMANCE_FAST)
+            .setMinFaceSize(0.1f)
+            .build();
+    /** Small or turned faces, at several times the cost per frame. */
+    public static final DetectionProfile ACCURATE = new Builder("accurate")
+            .setAnalysisSize(1280, 960)
+            .setPerformanceMode(PERFORMANCE_ACCURATE)
+            .setMinFaceSize(0.05f)
+            .build();
+
+    private final String name;
+    private final int analysisWidth;
+    private final int analysisHeight;
+    private final int performanceMode;
+    private final float minFaceSize;
+    private final boolean landmarks;
+    private final boolean contours;
+    private final boolean tracking;
+
+    private DetectionProfile(Builder builder) {
+        this.name = builder.name;
+        this.analysisWidth = builder.analysisWidth;
+        this.analysisHeight = builder.analysisHeight;
+        this.performanceMode = builder.performanceMode;
+        this.minFaceSize = builder.minFaceSize;
+        this.landmarks = builder.landmarks;
+        this.contours = builder.contours;
+        this.tracking = builder.tracking;
+    }
+
+    /** One of the built-in profiles by name, case insensitive, or null. */
+    public static DetectionProfile forName(String name) {
+        if (name == null) {
+            return null;
+        }
+        for (DetectionProfile profile : new DetectionProfile[]{FAST, BALANCED, ACCURATE}) {
+            if (profile.name.equals(name.toLowerCase(Locale.US))) {
+                return profile;
+            }
+        }
+        return null;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /** Requested analysis width in sensor orientation; the camera picks the closest size it has. */
+    public int getAnalysisWidth() {
+        return analysisWidth;
+    }
+
+    public int getAnalysisHeight() {
+        return analysisHeight;
+    }
+
+    /** {@link #PERFORMANCE_FAST} or {@link #PERFORMANCE_ACCURATE}. */
+    public int getPerformanceMode() {
+        return performanceMode;
+    }
+
+    /** Smallest face to look for, as its width over the image width. */
+    public float getMinFaceSize() {
+        return minFaceSize;
+    }
+
+    public boolean isLandmarks() {
+        return landmarks;
+    }
+
+    public boolean isContours() {
+        return contours;
+    }
+
+    /** Whether the detector assigns tracking ids, which the emotion cache per face relies on. */
+    public boolean isTracking() {
+        return tracking;
+    }
+
+    /** This profile with another analysis size, e.g. one picked by {@link DetectionResolutionController}. */
+    public DetectionProfile withAnalysisSize(int width, int height) {
+        return toBuilder().setAnalysisSize(width, height).build();
+    }
+
+    public Builder toBuilder() {
+        return new Builder(name)
+                .setAnalysisSize(analysisWidth, analysisHeight)
+                .setPerformanceMode(performanceMode)
+                .setMinFaceSize(minFaceSize)
+                .setLandmarks(landmarks)
+                .setContours(contours)
+                .setTracking(tracking);
+    }
+
+    @Override
+    public String toString() {
+        return name + " " + analysisWidth + "x" + analysisHeight
+                + (performanceMode == PERFORMANCE_ACCURATE ? " accurate" : " fast")
+                + ", min face " + minFaceSize
+                + (landmarks ? ", landmarks" : "") + (contours ? ", contours" : "") + (tracking ? ", tracking" : "");
+    }
+
+    /** Builder for {@link DetectionProfile}; tracking is on and landmarks and contours are off by default. */
+    public static class Builder {
+        private final String name;
+        private int analysisWidth = 640;
+        private int analysisHeight = 480;
+        private int performanceMode = PERFORMANCE_FAST;
+        private float minFaceSize = 0.1f;
+        private boolean landmarks;
+        private boolean contours;
+        private boolean tracking = true;
+
+        public Builder(String name) {
+            this.name = name;
+        }
+
+        public Builder setAnalysisSize(int width, int height) {
+            if (width <= 0 || height <= 0) {
+                throw new IllegalArgumentException("Analysis size must be positive");
+            }
+            this.analysisWidth = width;
+            this.analysisHeight = height;
+            return this;
+        }
+
+        public Builder setPerformanceMode(int performanceMode) {
+            if (performanceMode != PERFORMANCE_FAST && performanceMode != PERFORMANCE_ACCURATE) {
+                throw new IllegalArgumentException("Unknown performance mode " + performanceMode);
+            }
+            this.performanceMode = performanceMode;
+            return this;
+        }
+
+        public Builder setMinFaceSize(float minFaceSize) {
+            if (minFaceSize <= 0f || minFaceSize > 1f) {
+                throw new IllegalArgumentException("minFaceSize must be in (0, 1]");
+            }
+            this.minFaceSize = minFaceSize;
+            return this;
+        }
+
+        public Builder setLandmarks(boolean landmarks) {
+            this.landmarks = landmarks;
+            return this;
+        }
+
+        public Builder setContours(boolean contours) {
+            this.contours = contours;
+            return this;
+        }
+
+        public Builder setTracking(boolean tracking) {
+            this.tracking = tracking;
+            return this;
+        }
+
+        public DetectionProfile build() {
+            return new DetectionProfile(this);
+        }
+    }
+}
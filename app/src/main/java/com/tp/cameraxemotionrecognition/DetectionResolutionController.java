@@ -0,0 +1,211 @@
+package com.tp.cameraxemotionrecognition;
+
+/**
+ * Adaptive detection resolution: moves along a ladder of analysis heights so the smallest face
+ * in view stays just above the size the detector and the emotion model need, and no bigger.
+ *
+ * <p>After every detected frame {@link #onFrame} gets the frame's short side and the short side of
+ * its smallest face. The level goes up when faces are smaller than {@code minFacePixels}, or when
+ * faces seen at the current level vanish for {@code missFrames} frames, since a face too small for
+ * the resolution is simply missed; an empty scene alone doesn't raise it. It goes down when the
+ * smallest face would still be {@code downscaleMargin} times {@code minFacePixels} one level
+ * lower. Each change needs {@code stableFrames} agreeing frames in a row and at least
+ * {@code cooldownMs} since the last one, because switching means rebinding the camera's analysis
+ * use case.
+ *
+ * <p>Thread safe; the listener is called on the thread that reported the frame causing the change.
+ */
+public class DetectionResolutionController {
+    /** {@link #onFrame} value for a frame without faces. */
+    public static final int NO_FACES = -1;
+
+    public interface Listener {
+        /** The analysis should switch to {@code shortSide} pixels, e.g. 480 for 640x480. */
+        void onLevelChanged(int level, int shortSide);
+    }
+
+    private final int[] levels;
+    private final int minFacePixels;
+    private final float downscaleMargin;
+    private final int stableFrames;
+    private final int missFrames;
+    private final long cooldownNanos;
+    private final FrameScheduler.Clock clock;
+    private Listener listener;
+
+    // Guarded by this
+    private int level;
+    private int upVotes;
+    private int downVotes;
+    private int framesWithoutFaces;
+    private boolean sawFaces;
+    private long lastChangeNanos;
+    private int changes;
+
+    private DetectionResolutionController(Builder builder) {
+        this.levels = builder.levels.clone();
+        this.minFacePixels = builder.minFacePixels;
+        this.downscaleMargin = builder.downscaleMargin;
+        this.stableFrames = builder.stableFrames;
+        this.missFrames = builder.missFrames;
+        this.cooldownNanos = builder.cooldownMs * 1_000_000L;
+        this.clock = builder.clock;
+        this.level = builder.initialLevel;
+        this.lastChangeNanos = clock.nanoTime();
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * Reports one detected frame.
+     *
+     * @param frameShortSide        short side of the frame the faces were found in
+     * @param smallestFaceShortSide short side of the smallest face box, or {@link #NO_FACES}
+     * @return the level to use from now on
+     */
+    public int onFrame(int frameShortSide, int smallestFaceShortSide) {
+        int changedTo = -1;
+        synchronized (this) {
+            int vote = 0;
+            if (smallestFaceShortSide == NO_FACES) {
+                downVotes = 0;
+                upVotes = 0;
+                // Sadece bu seviyede görülen yüzler kaybolursa; boş sahne çözünürlüğü artırmaz
+                if (++framesWithoutFaces >= missFrames && sawFaces) {
+                    vote = 1;
+                }
+            } else {
+                framesWithoutFaces = 0;
+                sawFaces = true;
+                if (smallestFaceShortSide < minFacePixels) {
+                    downVotes = 0;
+                    upVotes++;
+                } else if (level > 0 && (long) smallestFaceShortSide * levels[level - 1]
+                        >= downscaleMargin * minFacePixels * frameShortSide) {
+                    // Bir alt seviyede yüz bu kadar piksel olurdu, yine de yeterli
+                    upVotes = 0;
+                    downVotes++;
+                } else {
+                    upVotes = 0;
+                    downVotes = 0;
+                }
+                vote = upVotes >= stableFrames ? 1 : downVotes >= stableFrames ? -1 : 0;
+            }
+            long now = clock.nanoTime();
+            int next = Math.max(0, Math.min(levels.length - 1, level + vote));
+            if (next != level && now - lastChangeNanos >= cooldownNanos) {
+                level = next;
+                lastChangeNanos = now;
+                changes++;
+                upVotes = 0;
+                downVotes = 0;
+                framesWithoutFaces = 0;
+                sawFaces = false;
+                changedTo = level;
+            }
+        }
+        Listener current = listener;
+        if (changedTo >= 0 && current != null) {
+            current.onLevelChanged(changedTo, levels[changedTo]);
+        }
+        return changedTo >= 0 ? changedTo : getLevel();
+    }
+
+    public synchronized int getLevel() {
+        return level;
+    }
+
+    /** Analysis short side of the current level. */
+    public synchronized int getShortSide() {
+        return levels[level];
+    }
+
+    /** Level changes so far. */
+    public synchronized int getChangeCount() {
+        return changes;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "level " + level + "/" + (levels.length - 1) + " (" + levels[level] + "p), " + changes + " changes";
+    }
+
+    public static class Builder {
+        private int[] levels = {240, 360, 480, 720, 960};
+        private int initialLevel = -1;
+        private int minFacePixels = 64;
+        private float downscaleMargin = 1.5f;
+        private int stableFrames = 10;
+        private int missFrames = 30;
+        private long cooldownMs = 3000;
+        private FrameScheduler.Clock clock = FrameScheduler.SYSTEM_CLOCK;
+
+        /** Analysis short sides to choose from, ascending. */
+        public Builder setLevels(int... levels) {
+            if (levels.length == 0) {
+                throw new IllegalArgumentException("Need at least one level");
+            }
+            for (int i = 1; i < levels.length; i++) {
+                if (levels[i] <= levels[i - 1]) {
+                    throw new IllegalArgumentException("Levels must be ascending");
+                }
+            }
+            this.levels = levels.clone();
+            return this;
+        }
+
+        /** Level to start at; the middle one by default. */
+        public Builder setInitialLevel(int initialLevel) {
+            this.initialLevel = initialLevel;
+            return this;
+        }
+
+        /** Smallest face short side, in frame pixels, the pipeline should get. */
+        public Builder setMinFacePixels(int minFacePixels) {
+            this.minFacePixels = minFacePixels;
+            return this;
+        }
+
+        /** How far above {@code minFacePixels} faces must stay one level lower to step down. */
+        public Builder setDownscaleMargin(float downscaleMargin) {
+            if (downscaleMargin < 1f) {
+                throw new IllegalArgumentException("downscaleMargin must be at least 1");
+            }
+            this.downscaleMargin = downscaleMargin;
+            return this;
+        }
+
+        public Builder setStableFrames(int stableFrames) {
+            this.stableFrames = Math.max(1, stableFrames);
+            return this;
+        }
+
+        /** Frames without the faces seen at this level after which the level goes up to find them. */
+        public Builder setMissFrames(int missFrames) {
+            this.missFrames = Math.max(1, missFrames);
+            return this;
+        }
+
+        public Builder setCooldownMs(long cooldownMs) {
+            this.cooldownMs = cooldownMs;
+            return this;
+        }
+
+        public Builder setClock(FrameScheduler.Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public DetectionResolutionController build() {
+            if (initialLevel < 0) {
+                initialLevel = levels.length / 2;
+            }
+            if (initialLevel >= levels.length) {
+                throw new IllegalArgumentException("initialLevel out of range");
+            }
+            return new DetectionResolutionController(this);
+        }
+    }
+}
@@ -0,0 +1,59 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * Emotion model behind one inference backend, e.g. the TFLite interpreter on CPU threads or with
+ * the GPU delegate. The analyzer only talks to this interface, so the backend can be chosen at
+ * startup by {@link BackendSelector} and replaced by a fake in host tests.
+ *
+ * <p>Implementations serialize {@link #run} calls and must be closed by their owner.
+ */
+public interface EmotionClassifier extends Closeable {
+
+    /** Creates classifiers of one backend; creation may load a model and is expected to be slow. */
+    interface Factory {
+        /** Backend name, e.g. {@code "gpu"}; also what a per-device override refers to. */
+        String getName();
+
+        EmotionClassifier create() throws IOException;
+    }
+
+    /** Name of the backend this classifier runs on. */
+    String getName();
+
+    /** Element format the input tensor expects; build inputs with a converter of this format. */
+    TensorFormat getInputFormat();
+
+    /** Width and height of the square model input. */
+    int getInputSize();
+
+    int getNumClasses();
+
+    /** Largest number of faces accepted by one {@link #run} call. */
+    int getMaxBatchSize();
+
+    /**
+     * Runs one inference over {@code count} faces packed back to back in {@code input} and writes
+     * the class confidences of each to {@code output}, a [count][numClasses] array.
+     */
+    void run(ByteBuffer input, int count, float[][] output);
+
+    /** CPU threads the backend runs on; not meaningful for delegates that run elsewhere. */
+    int getNumThreads();
+
+    /**
+     * Changes the CPU threads later {@link #run} calls use. Returns false, and changes nothing, if
+     * the backend does not run on CPU threads.
+     */
+    boolean setNumThreads(int numThreads);
+
+    /** Wall time of the last {@link #run} call. */
+    long getLastInferenceTimeMs();
+
+    /** Releases the backend. Safe to call more than once. */
+    @Override
+    void close();
+}
@@ -0,0 +1,412 @@
+package com.tp.cameraxemotionrecognition;
+
+import android.content.Context;
+import android.os.Build;
+import android.os.SystemClock;
+import android.util.Log;
+
+import org.tensorflow.lite.DataType;
+import org.tensorflow.lite.Interpreter;
+import org.tensorflow.lite.Tensor;
+import org.tensorflow.lite.gpu.CompatibilityList;
+import org.tensorflow.lite.gpu.GpuDelegate;
+import org.tensorflow.lite.support.common.FileUtil;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Long-lived TFLite interpreter for the emotion model shared by every face the analyzer classifies.
+ *
+ * <p>The interpreter and its delegate are created once for one of the backends {@link #BACKEND_CPU},
+ * {@link #BACKEND_XNNPACK}, {@link #BACKEND_NNAPI} or {@link #BACKEND_GPU}; {@link #factories} lists
+ * the ones this device can run for {@link BackendSelector}. Several faces can be classified in one
+ * invocation by packing them into a [N, 224, 224, 3] input; with the GPU and NNAPI delegates the
+ * batch size is fixed to 1 because resizing the input rebuilds the delegate graph. Calls are
+ * serialized on the session, so it can be used from any single worker thread. {@link #close()}
+ * must be called when the owner goes away.
+ *
+ * <p>The model file is the first available of a list of variants, by default float16 weights on
+ * GPU devices and a quantized model on CPU-only ones, falling back to the float model. The input and
+ * output formats are read from the tensors of whatever was loaded: see {@link #getInputFormat()}.
+ * Quantized outputs are dequantized, so {@link #run} always returns float confidences.
+ */
+public class EmotionModelSession implements EmotionClassifier {
+    private static final String TAG = "EmotionModelSession";
+    /** Asset path ML model binding packages {@code ml/EmotionModel.tflite} under. */
+    public static final String MODEL_PATH = "EmotionModel.tflite";
+    /** Same model with float16 weights; same float input and output. */
+    public static final String MODEL_PATH_FP16 = "EmotionModel_fp16.tflite";
+    /** Fully quantized model with uint8 or int8 input and output. */
+    public static final String MODEL_PATH_INT8 = "EmotionModel_int8.tflite";
+    /** Variants tried, in order, when the GPU delegate is used. */
+    public static final String[] GPU_VARIANTS = {MODEL_PATH_FP16, MODEL_PATH};
+    /** Variants tried, in order, on the CPU. */
+    public static final String[] CPU_VARIANTS = {MODEL_PATH_INT8, MODEL_PATH};
+
+    /** Interpreter's built-in kernels on {@code numThreads} threads. */
+    public static final String BACKEND_CPU = "cpu";
+    /** XNNPACK delegate on {@code numThreads} threads. */
+    public static final String BACKEND_XNNPACK = "xnnpack";
+    /** Android Neural Networks API, API 27 and up. */
+    public static final String BACKEND_NNAPI = "nnapi";
+    /** GPU delegate, on devices in the GPU compatibility list. */
+    public static final String BACKEND_GPU = "gpu";
+
+    private final MappedByteBuffer model;
+    private final Interpreter.Options options;
+    private final GpuDelegate gpuDelegate;
+    private final String backend;
+    private final String modelPath;
+    private final TensorFormat inputFormat;
+    private final TensorFormat outputFormat;
+    private final byte[][][] quantizedOutputs;
+    private final int maxBatchSize;
+    private final int inputSize;
+    private final int numClasses;
+    private final long loadTimeMs;
+
+    private Interpreter interpreter;
+    private int numThreads;
+    private int currentBatchSize = 1;
+    private long lastInferenceTimeMs;
+    private long totalInferenceTimeMs;
+    private long inferenceCount;
+    private boolean closed;
+
+    private EmotionModelSession(Interpreter interpreter, MappedByteBuffer model, Interpreter.Options options,
+                                GpuDelegate gpuDelegate, String backend, String modelPath,
+                                int numThreads, int maxBatchSize, long loadTimeMs) {
+        this.interpreter = interpreter;
+        this.model = model;
+        this.options = options;
+        this.gpuDelegate = gpuDelegate;
+        this.backend = backend;
+        this.modelPath = modelPath;
+        this.numThreads = numThreads;
+        this.maxBatchSize = maxBatchSize;
+        this.loadTimeMs = loadTimeMs;
+        this.inputSize = interpreter.getInputTensor(0).shape()[1];
+        this.numClasses = interpreter.getOutputTensor(0).shape()[1];
+        this.inputFormat = formatOf(interpreter.getInputTensor(0));
+        this.outputFormat = formatOf(interpreter.getOutputTensor(0));
+
+        if (outputFormat.isQuantized()) {
+            quantizedOutputs = new byte[maxBatchSize + 1][][];
+            for (int count = 1; count <= maxBatchSize; count++) {
+                quantizedOutputs[count] = new byte[count][numClasses];
+            }
+        } else {
+            quantizedOutputs = null;
+        }
+    }
+
+    /** Element format of a model tensor, from its type and quantization parameters. */
+    static TensorFormat formatOf(Tensor tensor) {
+        DataType type = tensor.dataType();
+        if (type == DataType.FLOAT32) {
+            return TensorFormat.FLOAT;
+        }
+        Tensor.QuantizationParams params = tensor.quantizationParams();
+        if (type == DataType.UINT8) {
+            return TensorFormat.quantized(TensorFormat.UINT8, params.getScale(), params.getZeroPoint());
+        }
+        if (type == DataType.INT8) {
+            return TensorFormat.quantized(TensorFormat.INT8, params.getScale(), params.getZeroPoint());
+        }
+        throw new IllegalArgumentException("Unsupported tensor type " + type);
+    }
+
+    /**
+     * Loads the model, choosing the GPU delegate or {@code numThreads} CPU threads once. CPU
+     * sessions accept up to {@code maxBatchSize} faces per call.
+     */
+    public static EmotionModelSession create(Context context, int numThreads, int maxBatchSize) throws IOException {
+        return create(context, (String[]) null, null, numThreads, maxBatchSize);
+    }
+
+    /**
+     * Same as {@link #create(Context, int, int)} with the model variants to try, in order, for GPU
+     * and CPU devices. A null list uses {@link #GPU_VARIANTS} or {@link #CPU_VARIANTS}.
+     */
+    public static EmotionModelSession create(Context context, String[] gpuVariants, String[] cpuVariants,
+                                             int numThreads, int maxBatchSize) throws IOException {
+        return isGpuSupported()
+                ? create(context, BACKEND_GPU, gpuVariants, numThreads, maxBatchSize)
+                : create(context, BACKEND_CPU, cpuVariants, numThreads, maxBatchSize);
+    }
+
+    /**
+     * Loads the first available of {@code variants} on {@code backend}. A null list uses
+     * {@link #GPU_VARIANTS} for the GPU and {@link #CPU_VARIANTS} otherwise.
+     */
+    public static EmotionModelSession create(Context context, String backend, String[] variants,
+                                             int numThreads, int maxBatchSize) throws IOException {
+        long start = SystemClock.elapsedRealtime();
+
+        Interpreter.Options options = new Interpreter.Options();
+        GpuDelegate gpuDelegate = null;
+        switch (backend) {
+            case BACKEND_GPU:
+                gpuDelegate = new GpuDelegate();
+                options.addDelegate(gpuDelegate);
+                maxBatchSize = 1;
+                break;
+            case BACKEND_NNAPI:
+                options.setUseNNAPI(true);
+                maxBatchSize = 1;
+                break;
+            case BACKEND_XNNPACK:
+                options.setUseXNNPACK(true);
+                options.setNumThreads(numThreads);
+                break;
+            case BACKEND_CPU:
+                options.setNumThreads(numThreads);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown backend " + backend);
+        }
+        if (variants == null) {
+            variants = gpuDelegate != null ? GPU_VARIANTS : CPU_VARIANTS;
+        }
+
+        MappedByteBuffer model = null;
+        String modelPath = null;
+        for (String variant : variants) {
+            try {
+                model = FileUtil.loadMappedFile(context, variant);
+                modelPath = variant;
+                break;
+            } catch (IOException e) {
+                // Variant not packaged in this build, try the next one.
+                Log.d(TAG, "create: no " + variant);
+            }
+        }
+        if (model == null) {
+            if (gpuDelegate != null) {
+                gpuDelegate.close();
+            }
+            throw new IOException("None of the model variants is available");
+        }
+
+        Interpreter interpreter;
+        try {
+            interpreter = new Interpreter(model, options);
+        } catch (RuntimeException e) {
+            // Delegates report unsupported ops here.
+            if (gpuDelegate != null) {
+                gpuDelegate.close();
+            }
+            throw new IOException("Could not create the " + backend + " interpreter", e);
+        }
+        long loadTimeMs = SystemClock.elapsedRealtime() - start;
+        EmotionModelSession session = new EmotionModelSession(
+                interpreter, model, options, gpuDelegate, backend, modelPath, numThreads, maxBatchSize, loadTimeMs);
+        Log.d(TAG, "create: " + modelPath + " (input " + session.inputFormat + ") on " + backend
+                + (gpuDelegate != null || backend.equals(BACKEND_NNAPI) ? "" : ", " + numThreads + " threads")
+                + ", batch " + maxBatchSize + ", load " + loadTimeMs + " ms");
+        return session;
+    }
+
+    /** Whether the device is in the GPU delegate compatibility list. */
+    public static boolean isGpuSupported() {
+        return new CompatibilityList().isDelegateSupportedOnThisDevice();
+    }
+
+    /**
+     * Factories for every backend this device can run, GPU first. {@code gpuVariants} and
+     * {@code cpuVariants} are as in {@link #create(Context, String[], String[], int, int)}; NNAPI
+     * uses the CPU list since it runs quantized models natively.
+     */
+    public static List<EmotionClassifier.Factory> factories(Context context, String[] gpuVariants,
+                                                            String[] cpuVariants, int numThreads, int maxBatchSize) {
+        List<EmotionClassifier.Factory> factories = new ArrayList<>();
+        if (isGpuSupported()) {
+            factories.add(factory(context, BACKEND_GPU, gpuVariants, numThreads, maxBatchSize));
+        }
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.O_MR1) {
+            factories.add(factory(context, BACKEND_NNAPI, cpuVariants, numThreads, maxBatchSize));
+        }
+        factories.add(factory(context, BACKEND_XNNPACK, cpuVariants, numThreads, maxBatchSize));
+        factories.add(factory(context, BACKEND_CPU, cpuVariants, numThreads, maxBatchSize));
+        return factories;
+    }
+
+    /** Factory calling {@link #create(Context, String, String[], int, int)}. */
+    public static EmotionClassifier.Factory factory(final Context context, final String backend, final String[] variants,
+                                                    final int numThreads, final int maxBatchSize) {
+        return new EmotionClassifier.Factory() {
+            @Override
+            public String getName() {
+                return backend;
+            }
+
+            @Override
+            public EmotionClassifier create() throws IOException {
+                return EmotionModelSession.create(context, backend, variants, numThreads, maxBatchSize);
+            }
+        };
+    }
+
+    /**
+     * Runs one inference over {@code count} faces packed back to back in {@code input}, whose
+     * capacity must be exactly {@code count} input tensors in {@link #getInputFormat()}. Returns the
+     * class confidences per face.
+     */
+    public float[][] run(ByteBuffer input, int count) {
+        float[][] confidences = new float[count][numClasses];
+        run(input, count, confidences);
+        return confidences;
+    }
+
+    /**
+     * Same as {@link #run(ByteBuffer, int)} but writes the confidences to {@code output}, which
+     * must be a [count][numClasses] array, so no result arrays are allocated.
+     */
+    @Override
+    public synchronized void run(ByteBuffer input, int count, float[][] output) {
+        if (closed) {
+            throw new IllegalStateException("Session is closed");
+        }
+        if (count < 1 || count > maxBatchSize) {
+            throw new IllegalArgumentException("Batch size " + count + " not in [1, " + maxBatchSize + "]");
+        }
+        long start = SystemClock.elapsedRealtime();
+        if (count != currentBatchSize) {
+            interpreter.resizeInput(0, new int[]{count, inputSize, inputSize, 3});
+            currentBatchSize = count;
+        }
+        input.rewind();
+        if (quantizedOutputs == null) {
+            interpreter.run(input, output);
+        } else {
+            byte[][] raw = quantizedOutputs[count];
+            interpreter.run(input, raw);
+            for (int i = 0; i < count; i++) {
+                for (int c = 0; c < numClasses; c++) {
+                    output[i][c] = outputFormat.dequantize(raw[i][c]);
+                }
+            }
+        }
+
+        lastInferenceTimeMs = SystemClock.elapsedRealtime() - start;
+        totalInferenceTimeMs += lastInferenceTimeMs;
+        inferenceCount++;
+    }
+
+    /** One of the {@code BACKEND_} names. */
+    @Override
+    public String getName() {
+        return backend;
+    }
+
+    public boolean isGpu() {
+        return gpuDelegate != null;
+    }
+
+    /** Asset path of the variant that was loaded. */
+    public String getModelPath() {
+        return modelPath;
+    }
+
+    /** Element format the input tensor expects; build inputs with a converter of this format. */
+    @Override
+    public TensorFormat getInputFormat() {
+        return inputFormat;
+    }
+
+    public TensorFormat getOutputFormat() {
+        return outputFormat;
+    }
+
+    @Override
+    public synchronized int getNumThreads() {
+        return numThreads;
+    }
+
+    /**
+     * Changes the thread count of the CPU and XNNPACK backends. The thread count is an interpreter
+     * option, and XNNPACK sizes its thread pool when the delegate is created, so the interpreter is
+     * rebuilt from the already mapped model. The old one is closed only once the new one is built.
+     */
+    @Override
+    public synchronized boolean setNumThreads(int numThreads) {
+        if (closed) {
+            throw new IllegalStateException("Session is closed");
+        }
+        if (numThreads < 1) {
+            throw new IllegalArgumentException("numThreads must be at least 1");
+        }
+        if (!backend.equals(BACKEND_CPU) && !backend.equals(BACKEND_XNNPACK)) {
+            return false;
+        }
+        if (numThreads != this.numThreads) {
+            // The old interpreter stays in use if the new one can't be built
+            options.setNumThreads(numThreads);
+            Interpreter rebuilt;
+            try {
+                rebuilt = new Interpreter(model, options);
+            } catch (RuntimeException e) {
+                options.setNumThreads(this.numThreads);
+                throw e;
+            }
+            interpreter.close();
+            interpreter = rebuilt;
+            currentBatchSize = 1;
+        }
+        this.numThreads = numThreads;
+        return true;
+    }
+
+    /** Largest number of faces accepted by {@link #run(ByteBuffer, int)}. */
+    @Override
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** Width and height of the square model input. */
+    @Override
+    public int getInputSize() {
+        return inputSize;
+    }
+
+    @Override
+    public int getNumClasses() {
+        return numClasses;
+    }
+
+    /** Time spent loading the model and setting up the delegate. */
+    public long getLoadTimeMs() {
+        return loadTimeMs;
+    }
+
+    @Override
+    public synchronized long getLastInferenceTimeMs() {
+        return lastInferenceTimeMs;
+    }
+
+    public synchronized long getInferenceCount() {
+        return inferenceCount;
+    }
+
+    public synchronized float getAverageInferenceTimeMs() {
+        return inferenceCount == 0 ? 0f : (float) totalInferenceTimeMs / inferenceCount;
+    }
+
+    /** Releases the interpreter and delegate. Safe to call more than once. */
+    @Override
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        interpreter.close();
+        if (gpuDelegate != null) {
+            gpuDelegate.close();
+        }
+        Log.d(TAG, "close: " + inferenceCount + " inferences, avg " + getAverageInferenceTimeMs() + " ms");
+    }
+}
@@ -0,0 +1,171 @@
+package com.tp.cameraxemotionrecognition;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+import android.util.Log;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Creates the analyzer's model session. Only the interpreter is built on the startup path: with
+ * the backend and thread count saved by an earlier tuning, the device override, or on the very
+ * first start the XNNPACK CPU backend, which needs no graph compilation.
+ *
+ * <p>Timing every backend this device can run and, in automatic mode, every CPU thread count takes
+ * seconds, so {@link #tuneForNextStart()} does it later, on separate interpreters, while the camera
+ * pipeline is idle so the camera, ML Kit and inference threads don't skew the timings. The result
+ * goes to the prefs and later starts create the tuned session directly. It is tied to the build
+ * fingerprint, so a system update that changes the GPU driver or NNAPI tunes again.
+ */
+public class EmotionSessionLoader implements ClassifierLoader.Loader {
+    private static final String TAG = "EmotionSessionLoader";
+    // Cihaza özel zorlama: bu dosyadaki "backend" anahtarı (cpu, xnnpack, nnapi, gpu) ölçümü atlar
+    static final String BACKEND_PREFS = "inference_backend";
+    static final String BACKEND_PREF_KEY = "backend";
+    // CPU thread sayısı "threads" ayarından okunur; 0 (varsayılan) ise ölçümde 1..N arası denenir
+    static final String THREADS_PREF_KEY = "threads";
+    static final int AUTO_THREADS = 0;
+    // Cihaz sınıfına göre denenecek model dosyaları, virgülle ayrılmış asset adları, örn.
+    // "EmotionModel_int8.tflite,EmotionModel.tflite"; yoksa GPU'da FP16, CPU'da INT8 varsa o
+    static final String VARIANTS_PREF_KEY = "variants";
+    // Ölçüm sonucu; sonraki açılışlar ölçmeden bunu kullanır
+    static final String TUNED_BACKEND_KEY = "tuned_backend";
+    static final String TUNED_THREADS_KEY = "tuned_threads";
+    static final String TUNED_FINGERPRINT_KEY = "tuned_fingerprint";
+    // İlk açılışta ölçüm yokken kullanılan backend; grafik derlemesi olmadığı için hızlı açılır
+    private static final String FIRST_START_BACKEND = EmotionModelSession.BACKEND_XNNPACK;
+    // Aynı anda tek ölçüm; aktivite yeniden oluşursa ikinci kez başlamaz
+    private static final AtomicBoolean tuning = new AtomicBoolean();
+    private final int maxAutoThreads = Math.min(8, Runtime.getRuntime().availableProcessors());
+    private final int defaultThreads = Math.min(4, maxAutoThreads);
+    private final int maxBatchSize = 4;
+    // Her backend bu kadar ısınma ve ölçüm çalıştırmasıyla denenir, en hızlısı seçilir
+    private final int backendWarmupRuns = 2;
+    private final int backendTimedRuns = 5;
+    // Daha az thread bu oran kadar yavaşsa yine de seçilir, çekirdekler kameraya kalır
+    private final float threadTolerance = 0.1f;
+
+    private final Context context;
+
+    public EmotionSessionLoader(Context context) {
+        this.context = context.getApplicationContext();
+    }
+
+    @Override
+    public EmotionClassifier load() throws IOException {
+        SharedPreferences prefs = getPrefs();
+        String[] variants = parseVariants(prefs.getString(VARIANTS_PREF_KEY, null));
+        String backend = prefs.getString(BACKEND_PREF_KEY, null);
+        if (backend == null && hasTunedResult(prefs)) {
+            backend = prefs.getString(TUNED_BACKEND_KEY, null);
+        }
+        int numThreads = getThreads(prefs);
+        if (backend != null) {
+            try {
+                return EmotionModelSession.create(context, backend, variants, numThreads, maxBatchSize);
+            } catch (IOException | RuntimeException e) {
+                // Kayıtlı backend artık açılmıyor, ilk açılıştaki gibi devam et ve yeniden ölç
+                Log.w(TAG, "load: " + backend + " failed, using " + FIRST_START_BACKEND, e);
+                prefs.edit().remove(TUNED_FINGERPRINT_KEY).apply();
+            }
+        }
+        try {
+            return EmotionModelSession.create(context, FIRST_START_BACKEND, variants, numThreads, maxBatchSize);
+        } catch (RuntimeException e) {
+            return EmotionModelSession.create(context, EmotionModelSession.BACKEND_CPU, variants, numThreads,
+                    maxBatchSize);
+        }
+    }
+
+    /** Whether {@link #tuneForNextStart()} has anything left to measure on this device. */
+    public boolean needsTuning() {
+        SharedPreferences prefs = getPrefs();
+        boolean fixed = prefs.getString(BACKEND_PREF_KEY, null) != null
+                && prefs.getInt(THREADS_PREF_KEY, AUTO_THREADS) != AUTO_THREADS;
+        return !fixed && !hasTunedResult(prefs);
+    }
+
+    /**
+     * Times the backends and thread counts on interpreters of its own and saves the fastest for
+     * the next start. The published session is left as it is. Slow; call it off the main thread
+     * while no frames are analyzed. Interrupting the thread cancels it without saving anything.
+     * Does nothing if tuning is done or already running.
+     */
+    public void tuneForNextStart() {
+        if (!needsTuning() || !tuning.compareAndSet(false, true)) {
+            return;
+        }
+        EmotionClassifier best = null;
+        try {
+            SharedPreferences prefs = getPrefs();
+            String override = prefs.getString(BACKEND_PREF_KEY, null);
+            int numThreads = prefs.getInt(THREADS_PREF_KEY, AUTO_THREADS);
+            String[] variants = parseVariants(prefs.getString(VARIANTS_PREF_KEY, null));
+
+            BackendSelector selector = new BackendSelector(
+                    FrameScheduler.SYSTEM_CLOCK, backendWarmupRuns, backendTimedRuns);
+            // Otomatikte seçim en fazla 4 thread ile ölçülür, sonra ayarlanır
+            best = selector.select(EmotionModelSession.factories(context, variants, variants,
+                    numThreads != AUTO_THREADS ? numThreads : defaultThreads, maxBatchSize), override);
+            Log.d(TAG, "tuneForNextStart: " + selector.getSummary());
+            if (numThreads == AUTO_THREADS) {
+                ThreadTuner tuner = new ThreadTuner(
+                        FrameScheduler.SYSTEM_CLOCK, backendWarmupRuns, backendTimedRuns, threadTolerance);
+                tuner.tune(best, maxAutoThreads);
+                Log.d(TAG, "tuneForNextStart: threads " + tuner.getSummary());
+            }
+            if (Thread.currentThread().isInterrupted()) {
+                // Yarım kalan ölçüm kaydedilmez, sonraki boşta kalışta baştan yapılır
+                Log.d(TAG, "tuneForNextStart: cancelled");
+                return;
+            }
+            prefs.edit()
+                    .putString(TUNED_BACKEND_KEY, best.getName())
+                    .putInt(TUNED_THREADS_KEY, best.getNumThreads())
+                    .putString(TUNED_FINGERPRINT_KEY, Build.FINGERPRINT)
+                    .apply();
+        } catch (InterruptedIOException e) {
+            Log.d(TAG, "tuneForNextStart: cancelled");
+        } catch (IOException | RuntimeException e) {
+            Log.w(TAG, "tuneForNextStart: ", e);
+        } finally {
+            if (best != null) {
+                best.close();
+            }
+            tuning.set(false);
+        }
+    }
+
+    private SharedPreferences getPrefs() {
+        return context.getSharedPreferences(BACKEND_PREFS, Context.MODE_PRIVATE);
+    }
+
+    private static boolean hasTunedResult(SharedPreferences prefs) {
+        return prefs.getString(TUNED_BACKEND_KEY, null) != null
+                && Build.FINGERPRINT.equals(prefs.getString(TUNED_FINGERPRINT_KEY, null));
+    }
+
+    /** The fixed thread count, else the tuned one, else {@link #defaultThreads}. */
+    private int getThreads(SharedPreferences prefs) {
+        int numThreads = prefs.getInt(THREADS_PREF_KEY, AUTO_THREADS);
+        if (numThreads != AUTO_THREADS) {
+            return numThreads;
+        }
+        return hasTunedResult(prefs) ? prefs.getInt(TUNED_THREADS_KEY, defaultThreads) : defaultThreads;
+    }
+
+    /** Model variants from a comma separated list of asset names, or null for the defaults. */
+    static String[] parseVariants(String value) {
+        if (value == null || value.trim().isEmpty()) {
+            return null;
+        }
+        String[] variants = value.split(",");
+        for (int i = 0; i < variants.length; i++) {
+            variants[i] = variants[i].trim();
+        }
+        return variants;
+    }
+}
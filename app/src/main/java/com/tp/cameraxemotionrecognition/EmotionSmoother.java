@@ -0,0 +1,72 @@
+package com.tp.cameraxemotionrecognition;
+
+/**
+ * Exponential moving average of the emotion scores of one face, with a hysteresis on the label.
+ *
+ * <p>Each {@link #update} blends the new confidence vector into the average with weight
+ * {@code alpha}. The reported label only changes when another class leads the current one by more
+ * than {@code switchMargin} in the smoothed distribution, so single-frame noise doesn't make the
+ * label flicker. All state is kept in a primitive array; updates allocate nothing.
+ */
+public class EmotionSmoother {
+    /** Label before the first update. */
+    public static final int NO_LABEL = -1;
+
+    private final float alpha;
+    private final float switchMargin;
+    private final float[] smoothed;
+    private int label = NO_LABEL;
+    private int updateCount;
+
+    public EmotionSmoother(int numClasses, float alpha, float switchMargin) {
+        if (alpha <= 0f || alpha > 1f) {
+            throw new IllegalArgumentException("alpha must be in (0, 1]");
+        }
+        this.alpha = alpha;
+        this.switchMargin = switchMargin;
+        this.smoothed = new float[numClasses];
+    }
+
+    /** Blends one frame's confidences into the average and updates the label. */
+    public void update(float[] confidences) {
+        if (updateCount == 0) {
+            System.arraycopy(confidences, 0, smoothed, 0, smoothed.length);
+        } else {
+            for (int i = 0; i < smoothed.length; i++) {
+                smoothed[i] += alpha * (confidences[i] - smoothed[i]);
+            }
+        }
+        updateCount++;
+
+        int best = Emotions.argmax(smoothed);
+        if (label == NO_LABEL || (best != label && smoothed[best] - smoothed[label] > switchMargin)) {
+            label = best;
+        }
+    }
+
+    /** Smoothed class distribution. The array is live; callers must not modify it. */
+    public float[] getSmoothed() {
+        return smoothed;
+    }
+
+    public float getScore(int emotion) {
+        return smoothed[emotion];
+    }
+
+    /** Current label with hysteresis applied, or {@link #NO_LABEL}. */
+    public int getLabel() {
+        return label;
+    }
+
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    public void reset() {
+        for (int i = 0; i < smoothed.length; i++) {
+            smoothed[i] = 0f;
+        }
+        label = NO_LABEL;
+        updateCount = 0;
+    }
+}
@@ -0,0 +1,140 @@
+package com.tp.cameraxemotionrecognition;
+
+/**
+ * Majority vote over emotion class indices, optionally weighted by confidence, across the last few
+ * frames.
+ *
+ * <p>Votes are kept as per-frame {@code int[]} counts and {@code float[]} weight sums in a ring of
+ * {@code windowFrames} slots; {@link #beginFrame()} drops the oldest frame. A window of 1 gives the
+ * vote of a single frame. The majority is the class with the most votes, ties broken by the larger
+ * weight sum and then by the lower class index. Nothing is allocated after construction.
+ *
+ * <p>Not thread safe.
+ */
+public class EmotionVotes {
+    /** Majority when there are no votes in the window. */
+    public static final int NO_VOTES = -1;
+
+    private final int numClasses;
+    private final int[][] frameCounts;
+    private final float[][] frameWeights;
+    private final int[] counts;
+    private final float[] weights;
+    private int head;
+    private int totalVotes;
+
+    public EmotionVotes(int numClasses, int windowFrames) {
+        if (windowFrames < 1) {
+            throw new IllegalArgumentException("windowFrames must be at least 1");
+        }
+        this.numClasses = numClasses;
+        this.frameCounts = new int[windowFrames][numClasses];
+        this.frameWeights = new float[windowFrames][numClasses];
+        this.counts = new int[numClasses];
+        this.weights = new float[numClasses];
+    }
+
+    /** Starts a new frame, dropping the votes of the oldest one in the window. */
+    public void beginFrame() {
+        head = (head + 1) % frameCounts.length;
+        int[] oldCounts = frameCounts[head];
+        float[] oldWeights = frameWeights[head];
+        for (int i = 0; i < numClasses; i++) {
+            counts[i] -= oldCounts[i];
+            totalVotes -= oldCounts[i];
+            oldCounts[i] = 0;
+            oldWeights[i] = 0f;
+        }
+        // Ağırlıklar çıkarma ile değil baştan toplanır, float hatası birikmesin
+        for (int i = 0; i < numClasses; i++) {
+            float sum = 0f;
+            for (float[] frame : frameWeights) {
+                sum += frame[i];
+            }
+            weights[i] = sum;
+        }
+    }
+
+    /** Adds one vote of weight 1 for {@code emotion} to the current frame. */
+    public void add(int emotion) {
+        add(emotion, 1f);
+    }
+
+    /** Adds one vote for {@code emotion} with the given weight, e.g. its confidence. */
+    public void add(int emotion, float weight) {
+        frameCounts[head][emotion]++;
+        frameWeights[head][emotion] += weight;
+        counts[emotion]++;
+        weights[emotion] += weight;
+        totalVotes++;
+    }
+
+    /** Class with the most votes in the window, or {@link #NO_VOTES}. */
+    public int getMajority() {
+        if (totalVotes == 0) {
+            return NO_VOTES;
+        }
+        int best = 0;
+        for (int i = 1; i < numClasses; i++) {
+            if (counts[i] > counts[best] || (counts[i] == counts[best] && weights[i] > weights[best])) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** Class with the largest weight sum in the window, or {@link #NO_VOTES}. */
+    public int getWeightedMajority() {
+        if (totalVotes == 0) {
+            return NO_VOTES;
+        }
+        int best = 0;
+        for (int i = 1; i < numClasses; i++) {
+            if (weights[i] > weights[best]) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /** Vote histogram of the window. The array is live; callers must not modify it. */
+    public int[] getCounts() {
+        return counts;
+    }
+
+    /** Weight sums of the window. The array is live; callers must not modify it. */
+    public float[] getWeights() {
+        return weights;
+    }
+
+    public int getCount(int emotion) {
+        return counts[emotion];
+    }
+
+    public float getWeight(int emotion) {
+        return weights[emotion];
+    }
+
+    public int getTotalVotes() {
+        return totalVotes;
+    }
+
+    public int getWindowFrames() {
+        return frameCounts.length;
+    }
+
+    public void reset() {
+        for (int f = 0; f < frameCounts.length; f++) {
+            for (int i = 0; i < numClasses; i++) {
+                frameCounts[f][i] = 0;
+                frameWeights[f][i] = 0f;
+            }
+        }
+        for (int i = 0; i < numClasses; i++) {
+            counts[i] = 0;
+            weights[i] = 0f;
+        }
+        head = 0;
+        totalVotes = 0;
+    }
+}
@@ -0,0 +1,25 @@
+package com.tp.cameraxemotionrecognition;
+
+/** Output classes of the emotion model and helpers over its confidence vectors. */
+public class Emotions {
+    /** Class labels in model output order. */
+    public static final String[] CLASSES = {"anger", "contempt", "disgust", "fear", "happy", "neutral", "sad", "surprise"};
+
+    public static final int NUM_CLASSES = CLASSES.length;
+
+    private Emotions() {
+    }
+
+    /** Index of the highest confidence, the first one on ties. */
+    public static int argmax(float[] confidences) {
+        int maxPos = 0;
+        float maxConfidence = confidences[0];
+        for (int i = 1; i < confidences.length; i++) {
+            if (confidences[i] > maxConfidence) {
+                maxConfidence = confidences[i];
+                maxPos = i;
+            }
+        }
+        return maxPos;
+    }
+}
@@ -5,38 +5,38 @@ import android.content.Context;
 import android.graphics.Bitmap;
 import android.graphics.Rect;
 import android.media.Image;
-import android.os.Handler;
-import android.os.Looper;
 import android.speech.tts.TextToSpeech;
 import android.util.Log;
 import android.widget.ImageView;
 import android.widget.TextView;
 
 import androidx.annotation.NonNull;
+import androidx.annotation.Nullable;
 import androidx.camera.core.ImageAnalysis;
 import androidx.camera.core.ImageProxy;
+import androidx.core.content.ContextCompat;
 
-import com.google.android.gms.tasks.OnCompleteListener;
-import com.google.android.gms.tasks.OnFailureListener;
-import com.google.android.gms.tasks.OnSuccessListener;
-import com.google.android.gms.tasks.Task;
+import com.google.android.gms.tasks.Tasks;
 import com.google.mlkit.vision.common.InputImage;
 import com.google.mlkit.vision.face.Face;
 import com.google.mlkit.vision.face.FaceDetector;
-import com.tp.cameraxemotionrecognition.ml.EmotionModel;
-
-import org.tensorflow.lite.DataType;
-import org.tensorflow.lite.gpu.CompatibilityList;
-import org.tensorflow.lite.support.model.Model;
-import org.tensorflow.lite.support.tensorbuffer.TensorBuffer;
 
+import java.io.File;
 import java.io.IOException;
 import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 
 public class FaceDetectorAnalyzer implements ImageAnalysis.Analyzer{
@@ -46,13 +46,141 @@ public class FaceDetectorAnalyzer implements ImageAnalysis.Analyzer{
     private final ImageView imageView;
     private final TextView textView;
     private final int imageSize = 224;
-    private final String[] classes = {"anger", "contempt", "disgust", "fear", "happy", "neutral", "sad", "surprise"};
-    private final int numThreads = 4;
+    // Model uygulama açılışında arka planda yüklenir; hazır olana kadar frameler sınıflandırılmaz
+    private final ClassifierLoader modelLoader;
+    private final ThreadBudget threadBudget;
+    private final PowerMonitor powerMonitor;
     private final TextToSpeech textToSpeech;
     private static HashMap<String,String> emotionMap;
-    private long delay = 5000L;
+    // Saniyede en fazla analiz edilecek frame sayısı, cihaz yavaşsa otomatik düşer
+    private final float targetFps = 5f;
+    // Hatta aynı anda bulunabilecek frame sayısı; N+1'in tespiti N'in sınıflandırmasıyla çakışır
+    private final int framesInFlight = 3;
+    private final FrameScheduler scheduler = new FrameScheduler(FrameScheduler.SYSTEM_CLOCK, targetFps, framesInFlight);
+    // Aşama kuyruklarının boyu; dolunca en eski frame atılır, hep en yeni frame işlenir
+    private final int stageQueueCapacity = 1;
+    // Aşama istatistikleri bu kadar frame'de bir loglanıp sıfırlanır
+    private final int statsEveryFrames = 30;
+    // Each stage has its own thread; only the final result goes to the UI thread
+    private final ExecutorService detectService = Executors.newSingleThreadExecutor();
+    private final ExecutorService preprocessService = Executors.newSingleThreadExecutor();
+    private final ExecutorService inferenceService = Executors.newSingleThreadExecutor();
+    private final ExecutorService aggregateService = Executors.newSingleThreadExecutor();
+    private final Executor inferenceExecutor = runInlineWhenClosed(inferenceService);
+    private final Executor mainExecutor;
+    private final ThroughputMeter throughputMeter = new ThroughputMeter(FrameScheduler.SYSTEM_CLOCK, 30);
+    private final PipelineStage<FrameJob> detectStage;
+    private final PipelineStage<FrameJob> preprocessStage;
+    private final PipelineStage<FrameJob> classifyStage;
+    private final PipelineStage<FrameJob> aggregateStage;
+    // Metrikler uygulama dizinindeki bu dosyaya periyodik olarak JSON satırı olarak eklenir
+    static final String METRICS_FILE = "metrics.jsonl";
+    private final long metricsDumpIntervalSeconds = 10;
+    private final long metricsMaxFileBytes = 1 << 20;
+    private final ScheduledExecutorService metricsService = Executors.newSingleThreadScheduledExecutor();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final MetricsRegistry.Counter framesReceived = metrics.counter("frames_received");
+    private final MetricsRegistry.Counter framesSkipped = metrics.counter("frames_skipped");
+    private final MetricsRegistry.Counter framesDropped = metrics.counter("frames_dropped");
+    private final MetricsRegistry.Counter framesAnalyzed = metrics.counter("frames_analyzed");
+    private final MetricsRegistry.Counter framesUnchanged = metrics.counter("frames_unchanged");
+    private final MetricsRegistry.Counter framesModelLoading = metrics.counter("frames_model_loading");
+    private final MetricsRegistry.Counter facesDetected = metrics.counter("faces_detected");
+    private final MetricsRegistry.Counter facesClassified = metrics.counter("faces_classified");
+    private final MetricsRegistry.Counter facesTooSmall = metrics.counter("faces_rejected_small");
+    private final MetricsRegistry.Counter facesOffAngle = metrics.counter("faces_rejected_angle");
+    private final MetricsRegistry.Counter facesBlurred = metrics.counter("faces_rejected_blur");
+    private final MetricsRegistry.Histogram yuvWrapLatency = metrics.histogram("yuv_wrap");
+    private final MetricsRegistry.Histogram sceneGateLatency = metrics.histogram("scene_gate");
+    private final MetricsRegistry.Histogram detectLatency = metrics.histogram("detect");
+    private final MetricsRegistry.Histogram qualityLatency = metrics.histogram("face_quality");
+    private final MetricsRegistry.Histogram trackLatency = metrics.histogram("track");
+    // Kırpma, ölçekleme ve tensör doldurma tek geçişte yapıldığı için yüz başına tek ölçüm
+    private final MetricsRegistry.Histogram cropTensorLatency = metrics.histogram("crop_tensor");
+    private final MetricsRegistry.Histogram inferenceLatency = metrics.histogram("inference");
+    private final MetricsRegistry.Histogram aggregateLatency = metrics.histogram("aggregate");
+    private final MetricsRegistry.Histogram ttsDispatchLatency = metrics.histogram("tts_dispatch");
+    private final MetricsRegistry.Histogram frameLatency = metrics.histogram("frame");
+    // Kamera açılışından ilk sınıflandırma sonucuna kadar geçen süre, hedef 1 saniyenin altı
+    private final long createdNanos = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+    private volatile long firstResultMs = -1;
+    private volatile Runnable firstFrameListener;
+    // Uyarlamalı çözünürlükte her tespit sonrası en küçük yüz boyu bildirilir
+    private volatile DetectionResolutionController resolutionController;
+    private volatile int lastFrameShortSide;
+    // Sahne değişmediyse tespit ve sınıflandırma atlanır; yüz varken en geç 1 s'de bir yine bakılır
+    private final SceneChangeGate sceneChangeGate = new SceneChangeGate.Builder()
+            .setFacesRefreshMs(1000)
+            .setEmptyRefreshMs(3000)
+            .build();
+    // Recycled jobs; the scheduler keeps at most framesInFlight of them in use
+    private final ArrayDeque<FrameJob> jobPool = new ArrayDeque<>();
+    // Guarded by this; taken from the loader by the first frame that finds it ready
+    private EmotionClassifier session;
+    private YuvTensorConverter preprocessConverter;
+    // Sabit duran yüzler her frame'de yeniden sınıflandırılmaz
+    private final int reclassifyBudget = 8;
+    // Çok küçük, bulanık veya yan dönmüş yüzler kırpılıp modele gönderilmez; sadece ön işleme thread'i
+    private final FaceQualityGate qualityGate = new FaceQualityGate.Builder()
+            .setMinFaceArea(48 * 48)
+            .setMaxAngles(35f, 25f, 30f)
+            .setMinSharpness(20f)
+            .build();
+    // Guarded by itself; updated in preprocess, scored in aggregate
+    private final FaceTracker tracker = new FaceTracker.Builder()
+            .setReclassifyEveryFrames(10)
+            .setTtlMs(5000)
+            .setReclassifyBudget(reclassifyBudget)
+            .build();
+    // Seslendirilen çoğunluk son birkaç frame'in oylarından hesaplanır
+    private final int votesWindowFrames = 3;
+    private final EmotionVotes votes = new EmotionVotes(Emotions.NUM_CLASSES, votesWindowFrames);
+    // Hata ayıklama için ilk yüzün model girdisi ekranda gösterilir; kapalıyken hiç Bitmap oluşmaz
+    private final boolean debugFacePreview = false;
+    // Guarded by itself; bitmaps the aggregate thread may draw into, the shown one is never here
+    private final ArrayDeque<Bitmap> freePreviews = new ArrayDeque<>();
+    // Only touched on the aggregate thread
+    private int[] previewPixels;
+    // Only touched on the main thread
+    private Bitmap shownPreview;
+    // Only touched on the aggregate thread; the text is rebuilt only when these change
+    private int[] frameEmotions = new int[8];
+    private int[] shownEmotions = new int[8];
+    private int shownEmotionCount;
+    private int shownFaceCount = -1;
+    private int shownMajority = EmotionVotes.NO_VOTES;
+    // Latest result for the main thread; one update is posted at a time and shows the newest
+    private volatile String uiText;
+    private volatile String uiEmotionToSpeak;
+    private volatile long uiDispatchNanos;
+    private final AtomicBoolean uiUpdatePending = new AtomicBoolean();
+    // Only touched on the main thread
+    private String shownText;
+    private final Runnable uiUpdate = new Runnable() {
+        @Override
+        public void run() {
+            uiUpdatePending.set(false);
+            String text = uiText;
+            if (text != shownText) {
+                textView.setText(text);
+                shownText = text;
+            }
+            // TTS motoru hala konuşmuyorsa konuşsun.
+            if (!textToSpeech.isSpeaking()) {
+                textToSpeech.speak(uiEmotionToSpeak, TextToSpeech.QUEUE_FLUSH, null, null);
+            }
+            // UI thread'e geçiş dahil, konuşma komutu verilene kadar geçen süre
+            ttsDispatchLatency.record(uiDispatchNanos, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+        }
+    };
+    private volatile boolean closed;
 
-    public FaceDetectorAnalyzer(FaceDetector faceDetector, Context context, ImageView imageView, TextView textView, TextToSpeech textToSpeech){
+    /**
+     * Creates the analyzer. Frames that arrive before {@code modelLoader} is ready are closed
+     * without classification. The analyzer takes over the loader and closes it in {@link #close()}.
+     */
+    public FaceDetectorAnalyzer(FaceDetector faceDetector, ClassifierLoader modelLoader, Context context,
+                                ImageView imageView, TextView textView, TextToSpeech textToSpeech){
         emotionMap = new HashMap<>();
         emotionMap.put("anger", "kızgın");
         emotionMap.put("contempt", "küçümseyici");
@@ -64,152 +192,664 @@ public class FaceDetectorAnalyzer implements ImageAnalysis.Analyzer{
         emotionMap.put("surprise", "mutlu");
 
         this.faceDetector = faceDetector;
+        this.modelLoader = modelLoader;
         this.context = context;
         this.imageView = imageView;
         this.textView = textView;
         this.textToSpeech = textToSpeech;
-    }
+        this.mainExecutor = ContextCompat.getMainExecutor(context);
 
-    public String classify(Bitmap image) {
-        String classWithConf = null;
-        String emotion = null;
+        // Tercih edilen thread sayısı model hazır olunca yükleyicinin seçtiğiyle değiştirilir
+        this.threadBudget = new ThreadBudget(1);
+        this.powerMonitor = new PowerMonitor(context, threadBudget, new Runnable() {
+            @Override
+            public void run() {
+                postThreadBudget();
+            }
+        });
+        powerMonitor.start();
 
-        try {
-            // TODO her seferinde yapmak yerine detector oluştuğunda oluştur
-            // Initialize interpreter with GPU delegate
-            Model.Options options;
-            CompatibilityList compatList = new CompatibilityList();
-
-            if(compatList.isDelegateSupportedOnThisDevice()){
-                // if the device has a supported GPU, add the GPU delegate
-                options = new Model.Options.Builder().setDevice(Model.Device.GPU).build();
-                Log.d(TAG, "classify: GPU usable");
-            } else {
-                // if the GPU is not supported, run on specified amount of threads
-                options = new Model.Options.Builder().setNumThreads(numThreads).build();
-                Log.d(TAG, "classify: GPU is not usable setting thread count to " + numThreads);
+        PipelineStage.DropListener<FrameJob> dropJob = new PipelineStage.DropListener<FrameJob>() {
+            @Override
+            public void onDropped(FrameJob job) {
+                finishJob(job, false);
+            }
+        };
+        detectStage = new PipelineStage<>("detect", stageQueueCapacity, runInlineWhenClosed(detectService),
+                new PipelineStage.Handler<FrameJob>() {
+                    @Override
+                    public void process(FrameJob job) {
+                        detect(job);
+                    }
+                }, dropJob, FrameScheduler.SYSTEM_CLOCK);
+        preprocessStage = new PipelineStage<>("preprocess", stageQueueCapacity, runInlineWhenClosed(preprocessService),
+                new PipelineStage.Handler<FrameJob>() {
+                    @Override
+                    public void process(FrameJob job) {
+                        preprocess(job);
+                    }
+                }, dropJob, FrameScheduler.SYSTEM_CLOCK);
+        classifyStage = new PipelineStage<>("classify", stageQueueCapacity, inferenceExecutor,
+                new PipelineStage.Handler<FrameJob>() {
+                    @Override
+                    public void process(FrameJob job) {
+                        classify(job);
+                    }
+                }, dropJob, FrameScheduler.SYSTEM_CLOCK);
+        aggregateStage = new PipelineStage<>("aggregate", stageQueueCapacity, runInlineWhenClosed(aggregateService),
+                new PipelineStage.Handler<FrameJob>() {
+                    @Override
+                    public void process(FrameJob job) {
+                        aggregate(job);
+                    }
+                }, dropJob, FrameScheduler.SYSTEM_CLOCK);
+
+        for (final PipelineStage<FrameJob> stage : getPipelineStages()) {
+            metrics.gauge(stage.getName() + "_queue_depth", new MetricsRegistry.Gauge() {
+                @Override
+                public long getValue() {
+                    return stage.getQueueDepth();
+                }
+            });
+            metrics.gauge(stage.getName() + "_occupancy_pct", new MetricsRegistry.Gauge() {
+                @Override
+                public long getValue() {
+                    return Math.round(stage.getOccupancy() * 100);
+                }
+            });
+        }
+        metrics.gauge("frames_in_flight", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return scheduler.getInFlight();
+            }
+        });
+        metrics.gauge("analysis_short_side", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return lastFrameShortSide;
             }
+        });
+        metrics.gauge("model_ready", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return modelLoader.isReady() ? 1 : 0;
+            }
+        });
+        metrics.gauge("time_to_first_result_ms", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return firstResultMs;
+            }
+        });
+        metricsService.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                dumpMetrics();
+            }
+        }, metricsDumpIntervalSeconds, metricsDumpIntervalSeconds, TimeUnit.SECONDS);
+    }
 
-            EmotionModel model = EmotionModel.newInstance(context, options);
+    private static Executor runInlineWhenClosed(final ExecutorService service) {
+        return new Executor() {
+            @Override
+            public void execute(@NonNull Runnable command) {
+                try {
+                    service.execute(command);
+                } catch (RejectedExecutionException e) {
+                    // Analyzer kapandı; frame'in yine de kapatılması için burada çalıştır
+                    command.run();
+                }
+            }
+        };
+    }
 
-            // Creates inputs for reference.
-            TensorBuffer inputFeature0 = TensorBuffer.createFixedSize(new int[]{1, 224, 224, 3}, DataType.FLOAT32);
+    /**
+     * A frame on its way through the stages, recycled through {@link #jobPool} along with its frame
+     * wrapper, lists and arena. Only ML Kit's input image and face list are new for every frame.
+     */
+    private static class FrameJob {
+        long ticket;
+        long startNanos;
+        ImageProxy imageProxy;
+        // Her kamera frame'inde yeniden sarılır, düzlem nesneleri iş ile birlikte havuzda kalır
+        final YuvFrame frame = new YuvFrame();
+        InputImage image;
+        List<Face> faces;
+        // Tracks of all faces, in the order of faces, and the ones sent to the model
+        final List<FaceTracker.Track> tracks = new ArrayList<>();
+        final List<FaceTracker.Track> toClassify = new ArrayList<>();
+        // Yüz tensörleri ve skorları; ön işlemeden toplamaya kadar bu frame'in
+        FrameBufferArena arena;
+        int batchSize;
+        boolean classified;
+        // Quality score per face, 0 for faces the gate rejected
+        float[] qualities = new float[0];
 
-            // 4 byte float, imagesize * imagesize, 3 layer RGB
-            ByteBuffer byteBuffer = ByteBuffer.allocateDirect(4 * imageSize * imageSize * 3);
-            byteBuffer.order(ByteOrder.nativeOrder());
+        /** Gives the camera frame back; later stages only need the tensors and face boxes. */
+        void releaseImage() {
+            if (imageProxy != null) {
+                frame.release();
+                imageProxy.close();
+                imageProxy = null;
+                image = null;
+            }
+        }
+    }
 
-            int[] intValues = new int[imageSize * imageSize];
-            image.getPixels(intValues, 0, image.getWidth(), 0, 0, image.getWidth(), image.getHeight());
-            int pixel = 0;
+    /**
+     * Returns the shared classifier, or null while {@link #modelLoader} is still loading and
+     * warming it up. Never blocks on the model.
+     *
+     * @throws IOException if the model failed to load or the analyzer is closed
+     */
+    @Nullable
+    private synchronized EmotionClassifier getSession() throws IOException {
+        if (closed) {
+            throw new IOException("Analyzer is closed");
+        }
+        if (session == null) {
+            session = modelLoader.getIfReady();
+            if (session == null) {
+                return null;
+            }
+            Log.d(TAG, "getSession: model " + modelLoader);
+            // Yükleyici sabit ya da ayarlanmış thread sayısını uyguladı, bütçe onu tavan alır
+            threadBudget.setPreferredThreads(session.getNumThreads());
+            postThreadBudget();
+            // Girdi tipi yüklenen modelin tensöründen okunur, quantized modelde byte yazılır
+            preprocessConverter = new YuvTensorConverter(imageSize, session.getInputFormat());
+        }
+        return session;
+    }
 
-            // piksellerden rgb çıkart
-            for (int i = 0; i < imageSize; i++) {
-                for (int j = 0; j < imageSize; j++) {
-                    int val = intValues[pixel++]; //RGB
-                    // Modelde rescaling layer yoksa 255'e böl [0 - 255] aralığına al
-                    byteBuffer.putFloat(((val >> 16) & 0xFF) * (1.f / 1));
-                    byteBuffer.putFloat(((val >> 8) & 0xFF) * (1.f / 1));
-                    byteBuffer.putFloat((val & 0xFF) * (1.f / 1));
+    /**
+     * Queues {@link #applyThreadBudget()} on the inference thread, so the interpreter is only
+     * rebuilt between two inferences, on the thread that runs them.
+     */
+    private void postThreadBudget() {
+        inferenceExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                applyThreadBudget();
+            }
+        });
+    }
+
+    /**
+     * Moves the session to the thread count the budget allows under the current thermal and
+     * battery state. Runs on the inference thread, see {@link #postThreadBudget()}.
+     */
+    private synchronized void applyThreadBudget() {
+        if (session == null || closed) {
+            return;
+        }
+        int threads = threadBudget.getThreads();
+        if (threads != session.getNumThreads() && session.setNumThreads(threads)) {
+            Log.d(TAG, "applyThreadBudget: " + threadBudget);
+        }
+    }
+
+    /**
+     * Drops the frames waiting in the pipeline, releases the model session on the inference thread
+     * once the running stages are done, and stops the stage threads. Called when the camera
+     * lifecycle ends.
+     */
+    public void close() {
+        closed = true;
+        powerMonitor.stop();
+        // Bekleyen frameler kapatılır; işlenmekte olanlar kapalı aşamaya verilince atılır
+        detectStage.close();
+        preprocessStage.close();
+        classifyStage.close();
+        aggregateStage.close();
+        inferenceService.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (FaceDetectorAnalyzer.this) {
+                    session = null;
                 }
+                // Yükleme sürüyorsa model yüklenince bırakılır
+                modelLoader.close();
             }
+        });
+        // Son durum da dosyaya yazılsın
+        metricsService.execute(new Runnable() {
+            @Override
+            public void run() {
+                dumpMetrics();
+            }
+        });
+        metricsService.shutdown();
+        detectService.shutdown();
+        preprocessService.shutdown();
+        inferenceService.shutdown();
+        aggregateService.shutdown();
+    }
 
-            inputFeature0.loadBuffer(byteBuffer);
+    /**
+     * Runs {@code listener} once, on the aggregate thread, when the first frame has gone through
+     * every stage with the model loaded, e.g. to measure startup.
+     */
+    public void setFirstFrameListener(Runnable listener) {
+        firstFrameListener = listener;
+    }
 
-            // Runs model inference and gets result.
-            EmotionModel.Outputs outputs = model.process(inputFeature0);
-            TensorBuffer outputFeature0 = outputs.getOutputFeature0AsTensorBuffer();
+    /**
+     * Reports the smallest face of every detected frame to {@code controller}, which decides the
+     * analysis resolution; null turns adaptive resolution off.
+     */
+    public void setResolutionController(@Nullable DetectionResolutionController controller) {
+        resolutionController = controller;
+    }
 
-            // model sonuçlarını al
-            float[] confidences = outputFeature0.getFloatArray();
+    /** Frames per second the whole pipeline completed recently. */
+    public float getThroughputFps() {
+        return throughputMeter.getFps();
+    }
 
-            // en yüksek confidence skorunu bul
-            int maxPos = 0;
-            float maxConfidence = 0f;
-            for (int i = 0; i < confidences.length; i++) {
-                if(confidences[i] > maxConfidence){
-                    maxConfidence = confidences[i];
-                    maxPos = i;
-                }
+    /** Acquire stage: admits a frame to the pipeline or closes it right away. */
+    @Override
+    public void analyze(@NonNull ImageProxy imageProxy) {
+        // Analiz hızına yetişilemeyen frameleri bekletmeden hemen kapat
+        framesReceived.increment();
+        final long ticket = scheduler.acquire();
+        if (ticket == FrameScheduler.SKIPPED) {
+            framesSkipped.increment();
+            imageProxy.close();
+            return;
+        }
+
+        //image.getFormat() // YUV_420_888 - 35
+        @SuppressLint("UnsafeOptInUsageError") Image mediaImage = imageProxy.getImage();
+        if (mediaImage == null) {
+            framesSkipped.increment();
+            imageProxy.close();
+            scheduler.finish(ticket);
+            return;
+        }
+
+        FrameJob job;
+        synchronized (jobPool) {
+            job = jobPool.poll();
+        }
+        if (job == null) {
+            job = new FrameJob();
+        }
+
+        // Frame bir kez sarılır, içindeki tüm yüzler aynı nesneyi kullanır
+        long start = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+        BitmapUtils.wrapYuvFrame(imageProxy, job.frame);
+        long wrapped = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+        yuvWrapLatency.record(start, wrapped);
+        FrameMetadata metadata = job.frame.getMetadata();
+        boolean changed = sceneChangeGate.shouldAnalyze(
+                job.frame.getYPlane(), metadata.getWidth(), metadata.getHeight());
+        sceneGateLatency.record(wrapped, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+        if (!changed) {
+            // Son analiz edilen frame'den farkı yok, önceki sonuç ekranda kalır
+            framesUnchanged.increment();
+            job.frame.release();
+            imageProxy.close();
+            scheduler.cancel(ticket);
+            synchronized (jobPool) {
+                jobPool.add(job);
             }
+            return;
+        }
+
+        job.ticket = ticket;
+        job.startNanos = start;
+        job.imageProxy = imageProxy;
+        job.image = InputImage.fromMediaImage(mediaImage, imageProxy.getImageInfo().getRotationDegrees());
+        detectStage.offer(job);
+    }
 
-            emotion = classes[maxPos];
-            classWithConf = classes[maxPos] + " %" + maxConfidence * 100 + "\n";
-            textView.setText(classWithConf); // TODO remove
+    /** Detect stage: runs ML Kit and waits for it on the stage thread. */
+    private void detect(FrameJob job) {
+        long start = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+        try {
+            job.faces = Tasks.await(faceDetector.process(job.image));
+            detectLatency.record(start, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+        } catch (ExecutionException e) {
+            Log.e(TAG, "detect: ", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        if (job.faces == null) {
+            finishJob(job, false);
+            return;
+        }
+        facesDetected.add(job.faces.size());
+        sceneChangeGate.setFacesPresent(!job.faces.isEmpty());
+        int frameShortSide = Math.min(job.image.getWidth(), job.image.getHeight());
+        lastFrameShortSide = frameShortSide;
+        DetectionResolutionController controller = resolutionController;
+        if (controller != null) {
+            int smallest = DetectionResolutionController.NO_FACES;
+            for (Face face : job.faces) {
+                Rect box = face.getBoundingBox();
+                int side = Math.min(box.width(), box.height());
+                smallest = smallest == DetectionResolutionController.NO_FACES ? side : Math.min(smallest, side);
+            }
+            controller.onFrame(frameShortSide, smallest);
+        }
+        preprocessStage.offer(job);
+    }
 
-            // Releases model resources if no longer used.
-            model.close();
+    /**
+     * Preprocess stage: matches the faces to tracks, writes the ones whose cached emotion is
+     * missing or stale into the job's tensors and closes the camera frame.
+     */
+    private void preprocess(FrameJob job) {
+        EmotionClassifier session;
+        try {
+            session = getSession();
         } catch (IOException e) {
+            Log.e(TAG, "preprocess: ", e);
+            finishJob(job, false);
+            return;
+        }
+        if (session == null) {
+            // Model ısınırken beklenmez; yüzler izleyiciye girmez, model hazır olunca yeni sayılır
+            framesModelLoading.increment();
+            finishJob(job, false);
+            return;
+        }
+
+        List<Face> faces = job.faces;
+        long qualityStart = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+        if (job.qualities.length < faces.size()) {
+            job.qualities = new float[faces.size()];
+        }
+        for (int i = 0; i < faces.size(); i++) {
+            Face face = faces.get(i);
+            Rect faceRect = face.getBoundingBox();
+            int result = qualityGate.check(job.frame, faceRect.left, faceRect.top, faceRect.right, faceRect.bottom,
+                    face.getHeadEulerAngleY(), face.getHeadEulerAngleX(), face.getHeadEulerAngleZ());
+            if (result == FaceQualityGate.TOO_SMALL) {
+                facesTooSmall.increment();
+            } else if (result == FaceQualityGate.OFF_ANGLE) {
+                facesOffAngle.increment();
+            } else if (result == FaceQualityGate.BLURRED) {
+                facesBlurred.increment();
+            }
+            job.qualities[i] = result == FaceQualityGate.ACCEPTED ? qualityGate.getLastScore() : 0f;
+        }
+        qualityLatency.record(qualityStart, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+
+        long trackStart = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+        synchronized (tracker) {
+            tracker.beginFrame();
+            for (int i = 0; i < faces.size(); i++) {
+                Rect faceRect = faces.get(i).getBoundingBox();
+                Integer trackingId = faces.get(i).getTrackingId();
+                FaceTracker.Track track = tracker.update(trackingId != null ? trackingId : FaceTracker.NO_TRACKING_ID,
+                        faceRect.left, faceRect.top, faceRect.right, faceRect.bottom);
+                tracker.setQuality(track, job.qualities[i]);
+                job.tracks.add(track);
+            }
+            // Sadece yeni, hareket etmiş veya süresi dolmuş yüzler, en kalitelisinden başlayarak modele gönderilir
+            tracker.selectForClassification(job.toClassify);
+            tracker.endFrame();
+        }
+        trackLatency.record(trackStart, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+
+        int faceCount = job.toClassify.size();
+        int batchSize = session.getMaxBatchSize();
+        if (faceCount > 0) {
+            // Çoğu frame tek batch'e sığar; ikinci batch ancak ihtiyaç olunca ayrılır
+            int batches = (faceCount + batchSize - 1) / batchSize;
+            if (job.arena == null) {
+                job.arena = new FrameBufferArena(
+                        imageSize, batchSize, batches, session.getNumClasses(), session.getInputFormat());
+            } else {
+                job.arena.ensureBatches(batches);
+            }
+        }
+        job.batchSize = batchSize;
+        for (int start = 0, batch = 0; start < faceCount; start += batchSize, batch++) {
+            int count = Math.min(batchSize, faceCount - start);
+            ByteBuffer input = job.arena.getInput(batch, count);
+            // Yüzü JPEG/Bitmap ara adımı olmadan doğrudan YUV düzlemlerinden tensöre çevir
+            for (int i = 0; i < count; i++) {
+                long cropStart = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+                Rect faceRect = faces.get(job.toClassify.get(start + i).getSlot()).getBoundingBox();
+                job.frame.convertFace(preprocessConverter,
+                        faceRect.left, faceRect.top, faceRect.right, faceRect.bottom, input);
+                cropTensorLatency.record(cropStart, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+            }
+        }
+
+        // Yüzler tensörde, kamera bir sonraki frame'i verebilir
+        job.releaseImage();
+        classifyStage.offer(job);
+    }
+
+    /** Classify stage: runs the model over the job's batches on the inference thread. */
+    private void classify(FrameJob job) {
+        int faceCount = job.toClassify.size();
+        try {
+            EmotionClassifier session = getSession();
+            if (session == null) {
+                throw new IllegalStateException("Model not loaded");
+            }
+            for (int start = 0, batch = 0; start < faceCount; start += job.batchSize, batch++) {
+                int count = Math.min(job.batchSize, faceCount - start);
+                long runStart = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+                session.run(job.arena.getInput(batch, count), count, job.arena.getOutput(batch, count));
+                inferenceLatency.record(runStart, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+                facesClassified.add(count);
+            }
+            job.classified = true;
+            if (faceCount > 0 && firstResultMs < 0) {
+                firstResultMs = (FrameScheduler.SYSTEM_CLOCK.nanoTime() - createdNanos) / 1_000_000L;
+                Log.d(TAG, "classify: first result " + firstResultMs + " ms after start, model " + modelLoader);
+            }
+        } catch (IOException | IllegalStateException e) {
+            // Skorlar olmadan da önbellekteki duygularla toplanır
             Log.e(TAG, "classify: ", e);
         }
-        return emotion;
+        aggregateStage.offer(job);
     }
 
-    @Override
-    public void analyze(@NonNull ImageProxy imageProxy) {
-        // 5 saniyede bir analiz et
-        Handler handler = new Handler(Looper.getMainLooper());
-        handler.postDelayed(new Runnable() {
+    /**
+     * Aggregate stage: feeds the scores to the tracks, votes over the labels of every face of the
+     * frame, weighted by their smoothed score, and shows and speaks the majority. The text is only
+     * rebuilt when the face count, a label or the majority changed.
+     */
+    private void aggregate(FrameJob job) {
+        long start = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+        int emotionCount = 0;
+        votes.beginFrame();
+        synchronized (tracker) {
+            if (job.classified) {
+                // Skorlar iz başına yumuşatılır, etiket tek frame'lik gürültüyle değişmez
+                int faceCount = job.toClassify.size();
+                for (int i = 0; i < faceCount; i++) {
+                    int batch = i / job.batchSize;
+                    int count = Math.min(job.batchSize, faceCount - batch * job.batchSize);
+                    tracker.setScores(job.toClassify.get(i), job.arena.getOutput(batch, count)[i % job.batchSize]);
+                }
+            } else {
+                cancelClassifications(job);
+            }
+            for (FaceTracker.Track track : job.tracks) {
+                int emotion = track.getEmotion();
+                if (emotion != FaceTracker.NO_EMOTION) {
+                    if (emotionCount == frameEmotions.length) {
+                        frameEmotions = Arrays.copyOf(frameEmotions, 2 * emotionCount);
+                    }
+                    frameEmotions[emotionCount++] = emotion;
+                    votes.add(emotion, track.getSmoother().getScore(emotion));
+                }
+            }
+        }
+
+        if (debugFacePreview && job.classified && !job.toClassify.isEmpty()) {
+            showFacePreview(job);
+        }
+
+        int majority = votes.getMajority();
+        if (resultChanged(job.faces.size(), emotionCount, majority)) {
+            StringBuilder text = new StringBuilder("Faces: ").append(job.faces.size()).append("\n[");
+            for (int i = 0; i < emotionCount; i++) {
+                text.append(i > 0 ? ", " : "").append(Emotions.CLASSES[shownEmotions[i]]);
+            }
+            uiText = text.append(']').toString();
+            String mostFrequentEmotion = majority != EmotionVotes.NO_VOTES ? Emotions.CLASSES[majority] : "";
+
+            // TTS mevcut metot çağırımı - API LEVEL > LOLLIPOP
+            uiEmotionToSpeak = emotionMap.get(mostFrequentEmotion);
+            Log.d(TAG, "aggregate: Çoğunluk " + uiEmotionToSpeak);
+        }
+
+        // Sadece nihai sonuç UI thread'e gönderilir; bekleyen güncelleme varsa o en yeniyi gösterir
+        if (uiUpdatePending.compareAndSet(false, true)) {
+            uiDispatchNanos = FrameScheduler.SYSTEM_CLOCK.nanoTime();
+            mainExecutor.execute(uiUpdate);
+        }
+        aggregateLatency.record(start, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+        finishJob(job, true);
+    }
+
+    /**
+     * Compares the frame's face count, labels in {@link #frameEmotions} and majority with the
+     * shown ones and, if anything differs, makes them the shown ones. Aggregate thread only.
+     */
+    private boolean resultChanged(int faceCount, int emotionCount, int majority) {
+        boolean changed = faceCount != shownFaceCount || emotionCount != shownEmotionCount || majority != shownMajority;
+        for (int i = 0; !changed && i < emotionCount; i++) {
+            changed = frameEmotions[i] != shownEmotions[i];
+        }
+        if (changed) {
+            int[] previous = shownEmotions;
+            shownEmotions = frameEmotions;
+            frameEmotions = previous.length >= shownEmotions.length ? previous : new int[shownEmotions.length];
+            shownFaceCount = faceCount;
+            shownEmotionCount = emotionCount;
+            shownMajority = majority;
+        }
+        return changed;
+    }
+
+    /**
+     * Shows the model input of the first classified face of {@code job}. Two bitmaps take turns:
+     * the aggregate thread only draws into one the UI has handed back, and skips the preview while
+     * there is none, so a bitmap is never written while it is on screen.
+     */
+    private void showFacePreview(FrameJob job) {
+        if (previewPixels == null) {
+            previewPixels = new int[imageSize * imageSize];
+            synchronized (freePreviews) {
+                freePreviews.add(Bitmap.createBitmap(imageSize, imageSize, Bitmap.Config.ARGB_8888));
+                freePreviews.add(Bitmap.createBitmap(imageSize, imageSize, Bitmap.Config.ARGB_8888));
+            }
+        }
+        final Bitmap preview;
+        synchronized (freePreviews) {
+            preview = freePreviews.poll();
+        }
+        if (preview == null) {
+            return;
+        }
+        int count = Math.min(job.batchSize, job.toClassify.size());
+        BitmapUtils.tensorToBitmap(job.arena.getInput(0, count), imageSize,
+                preprocessConverter.getFormat(), previewPixels, preview);
+        mainExecutor.execute(new Runnable() {
             @Override
             public void run() {
-                //image.getFormat() // YUV_420_888 - 35
-                @SuppressLint("UnsafeOptInUsageError") Image mediaImage = imageProxy.getImage();
-                if (mediaImage != null) {
-                    InputImage image = InputImage.fromMediaImage(mediaImage, imageProxy.getImageInfo().getRotationDegrees());
-                    Log.d(TAG, "analyze: W:" + image.getWidth() + " H:" + image.getHeight());
-                    Task<List<Face>> result = faceDetector.process(image)
-                            .addOnSuccessListener(new OnSuccessListener<List<Face>>() {
-                                @Override
-                                public void onSuccess(List<Face> faces) {
-                                    if(faces != null){
-                                        ArrayList<String> emotionsList = new ArrayList<>();
-                                        for(Face face : faces){
-                                            Rect faceRect = face.getBoundingBox();
-//                                    Log.d(TAG, "onSuccess: " + faceRect);
-                                            @SuppressLint("UnsafeOptInUsageError") Bitmap fullImage = BitmapUtils.getBitmap(imageProxy);
-                                            // TODO fullImage can be null
-                                            Bitmap croppedImage = Utils.cropBitmap(fullImage, faceRect);
-//                                    Log.d(TAG, "onSuccess: cropped image: w: " + croppedImage.getWidth()
-//                                            + " h:" + croppedImage.getHeight());
-                                            Bitmap resizedImage = Bitmap.createScaledBitmap(croppedImage, imageSize, imageSize, false);
-                                            // TODO debug bittikten sonra sil
-                                            imageView.setImageBitmap(resizedImage);
-                                            emotionsList.add(classify(resizedImage));
-                                        }
-                                        CharSequence[] charSequences = emotionsList.toArray(new CharSequence[emotionsList.size()]);
-                                        String text = "Faces: " + faces.size() + "\n" + Arrays.toString(charSequences);
-                                        textView.setText(text);
-                                        CharSequence mostFrequentEmotion = Utils.mostFrequentWord(emotionsList);
-
-                                        // TTS mevcut metot çağırımı - API LEVEL > LOLLIPOP
-                                        String textToSPEAK = "Çoğunluk " + emotionMap.get(mostFrequentEmotion);
-                                        Log.d(TAG, "onSuccess: " + textToSPEAK);
-
-                                        // TTS motoru hala konuşmuyorsa konuşsun.
-                                        if(!textToSpeech.isSpeaking()){
-                                            textToSpeech.speak(emotionMap.get(mostFrequentEmotion), TextToSpeech.QUEUE_FLUSH, null, null );
-                                        }
-                                    }
-                                }
-                            })
-                            .addOnFailureListener(new OnFailureListener() {
-                                @Override
-                                public void onFailure(@NonNull Exception e) {
-                                    Log.e(TAG, "onFailure: ", e);
-                                }
-                            }).addOnCompleteListener(new OnCompleteListener<List<Face>>() {
-                                @Override
-                                public void onComplete(@NonNull Task<List<Face>> task) {
-                                    // Sadece son frame tutulduğu için frame içinde face detection
-                                    // başarılı veya başarısız olmadan yeni frame almak için.
-                                    // Aksi takdirde image already closed hatası (metot sonunda çağrılırsa),
-                                    // yeni frame alamama (failure ve success eventleri içinde çağrılırsa)
-                                    // gerçekleşir.
-                                    imageProxy.close();
-                                }
-                            });
+                imageView.setImageBitmap(preview);
+                Bitmap previous = shownPreview;
+                shownPreview = preview;
+                if (previous != null) {
+                    synchronized (freePreviews) {
+                        freePreviews.add(previous);
+                    }
                 }
             }
-        }, delay);
+        });
+    }
+
+    /**
+     * Ends a job that completed or was dropped by a stage: closes its frame if a stage still held
+     * it, frees its scheduler slot and returns it to the pool.
+     */
+    private void finishJob(FrameJob job, boolean completed) {
+        job.releaseImage();
+        scheduler.finish(job.ticket);
+        if (completed) {
+            framesAnalyzed.increment();
+            Runnable listener = firstFrameListener;
+            if (listener != null) {
+                firstFrameListener = null;
+                listener.run();
+            }
+            frameLatency.record(job.startNanos, FrameScheduler.SYSTEM_CLOCK.nanoTime());
+            throughputMeter.mark();
+            if (scheduler.getCompletedCount() % statsEveryFrames == 0) {
+                logStageStats();
+            }
+        } else {
+            framesDropped.increment();
+            synchronized (tracker) {
+                cancelClassifications(job);
+            }
+            // Atılan frame referans olamaz, yoksa getirdiği değişiklik sonraki framelerde görünmez
+            sceneChangeGate.reset();
+        }
+        job.faces = null;
+        job.tracks.clear();
+        job.toClassify.clear();
+        job.classified = false;
+        synchronized (jobPool) {
+            jobPool.add(job);
+        }
+    }
+
+    /** Makes the tracks {@code job} selected eligible again in later frames. Guarded by tracker. */
+    private void cancelClassifications(FrameJob job) {
+        for (int i = 0; i < job.toClassify.size(); i++) {
+            tracker.cancelClassification(job.toClassify.get(i));
+        }
+    }
+
+    /** Logs queue depth, occupancy and drops of every stage and starts a new window. */
+    private void logStageStats() {
+        Log.d(TAG, "stages: " + detectStage + "; " + preprocessStage + "; " + classifyStage + "; " + aggregateStage);
+        detectStage.resetStats();
+        preprocessStage.resetStats();
+        classifyStage.resetStats();
+        aggregateStage.resetStats();
+    }
+
+    /** Detect, preprocess, classify and aggregate, in pipeline order, for reporting. */
+    public List<PipelineStage<?>> getStages() {
+        return new ArrayList<PipelineStage<?>>(getPipelineStages());
+    }
+
+    private List<PipelineStage<FrameJob>> getPipelineStages() {
+        return Arrays.asList(detectStage, preprocessStage, classifyStage, aggregateStage);
+    }
+
+    /** Current values of every latency histogram, counter and gauge of the analyzer. */
+    public MetricsRegistry.Snapshot getMetricsSnapshot() {
+        return metrics.snapshot();
+    }
+
+    /** The analyzer's metrics, e.g. to register more gauges. */
+    public MetricsRegistry getMetrics() {
+        return metrics;
+    }
+
+    /** Appends a snapshot to {@link #METRICS_FILE} in the app's files directory. */
+    private void dumpMetrics() {
+        try {
+            MetricsRegistry.Snapshot snapshot = metrics.dump(
+                    new File(context.getFilesDir(), METRICS_FILE), metricsMaxFileBytes);
+            Log.d(TAG, "dumpMetrics: " + snapshot.toJson());
+        } catch (IOException e) {
+            Log.e(TAG, "dumpMetrics: ", e);
+        }
     }
 }
@@ -0,0 +1,197 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Rejects faces that aren't worth a model run and scores the rest, before any crop is made.
+ *
+ * <p>A face is rejected when its box is smaller than {@code minFaceArea} pixels, when its head
+ * pose is further from frontal than the yaw, pitch or roll limits, or when it is blurred. Sharpness
+ * is the variance of a 4-neighbour Laplacian sampled on a fixed grid over the face in the Y plane,
+ * so it costs the same for any face size; the Laplacian step grows with the face so a large face
+ * is judged at about the detail the model sees after the resize.
+ *
+ * <p>Accepted faces get a quality score in (0, 1], the product of size, pose and sharpness terms,
+ * which {@link FaceTracker} uses to spend the per-frame inference budget on the best faces first.
+ * Not thread safe.
+ */
+public class FaceQualityGate {
+    public static final int ACCEPTED = 0;
+    public static final int TOO_SMALL = 1;
+    public static final int OFF_ANGLE = 2;
+    public static final int BLURRED = 3;
+
+    private final int minFaceArea;
+    private final float maxYaw;
+    private final float maxPitch;
+    private final float maxRoll;
+    private final float minSharpness;
+    private final int sharpnessGrid;
+    private final int sharpnessScale;
+    private final int[] sensorRect = new int[4];
+
+    private float lastScore;
+    private float lastSharpness;
+    private final long[] rejected = new long[4];
+
+    private FaceQualityGate(Builder builder) {
+        this.minFaceArea = builder.minFaceArea;
+        this.maxYaw = builder.maxYaw;
+        this.maxPitch = builder.maxPitch;
+        this.maxRoll = builder.maxRoll;
+        this.minSharpness = builder.minSharpness;
+        this.sharpnessGrid = builder.sharpnessGrid;
+        this.sharpnessScale = builder.sharpnessScale;
+    }
+
+    /**
+     * Checks one face. Cheap checks go first, the luma plane is only read for faces that pass the
+     * size and pose limits. On {@link #ACCEPTED}, {@link #getLastScore()} holds the quality score.
+     *
+     * @param frame frame the face was detected in
+     * @param yaw   head angle about the vertical axis in degrees, {@code Face.getHeadEulerAngleY()}
+     * @param pitch angle about the horizontal axis, {@code getHeadEulerAngleX()}
+     * @param roll  angle in the image plane, {@code getHeadEulerAngleZ()}
+     * @return {@link #ACCEPTED} or the reason for rejecting the face
+     */
+    public int check(YuvFrame frame, int left, int top, int right, int bottom, float yaw, float pitch, float roll) {
+        lastScore = 0f;
+        lastSharpness = 0f;
+        long area = (long) Math.max(0, right - left) * Math.max(0, bottom - top);
+        if (area < minFaceArea) {
+            return reject(TOO_SMALL);
+        }
+        float pose = Math.max(Math.abs(yaw) / maxYaw, Math.max(Math.abs(pitch) / maxPitch, Math.abs(roll) / maxRoll));
+        if (pose > 1f) {
+            return reject(OFF_ANGLE);
+        }
+        if (minSharpness > 0f) {
+            FrameMetadata metadata = frame.getMetadata();
+            frame.getCoordinates().toSensorRect(left, top, right, bottom, sensorRect);
+            lastSharpness = sharpness(frame.getYPlane(), metadata.getWidth(), metadata.getHeight(),
+                    sensorRect[0], sensorRect[1], sensorRect[2], sensorRect[3], sharpnessGrid, sharpnessScale);
+            if (lastSharpness < minSharpness) {
+                return reject(BLURRED);
+            }
+        }
+        // Sınırın iki katı ve üstü tam puan; poz sınırdayken puan yarıya iner
+        float size = Math.min(1f, (float) Math.sqrt(area / (4.0 * minFaceArea)));
+        float sharp = minSharpness > 0f ? Math.min(1f, lastSharpness / (2f * minSharpness)) : 1f;
+        lastScore = size * (1f - 0.5f * pose) * sharp;
+        return ACCEPTED;
+    }
+
+    private int reject(int reason) {
+        rejected[reason]++;
+        return reason;
+    }
+
+    /** Quality score of the last accepted face, 0 after a rejection. */
+    public float getLastScore() {
+        return lastScore;
+    }
+
+    /** Laplacian variance of the last face that got that far, 0 otherwise. */
+    public float getLastSharpness() {
+        return lastSharpness;
+    }
+
+    /** Faces rejected for {@code reason} so far. */
+    public long getRejectedCount(int reason) {
+        return rejected[reason];
+    }
+
+    /**
+     * Variance of the Laplacian over a {@code grid} by {@code grid} sample of the sensor-space
+     * rectangle, with neighbours {@code short side / scale} pixels apart, at least one.
+     */
+    static float sharpness(YuvPlane yPlane, int width, int height, int left, int top, int right, int bottom,
+                           int grid, int scale) {
+        int step = Math.max(1, Math.min(right - left, bottom - top) / scale);
+        // Komşular kare dışına taşmasın diye örnekler kenardan step kadar içeride
+        int l = Math.max(left, step);
+        int t = Math.max(top, step);
+        int r = Math.min(right, width - step);
+        int b = Math.min(bottom, height - step);
+        if (r <= l || b <= t) {
+            return 0f;
+        }
+        ByteBuffer buffer = yPlane.getBuffer();
+        int rowStride = yPlane.getRowStride();
+        int pixelStride = yPlane.getPixelStride();
+        long sum = 0;
+        long sumSquares = 0;
+        for (int gy = 0; gy < grid; gy++) {
+            int y = t + (int) ((gy + 0.5f) * (b - t) / grid);
+            for (int gx = 0; gx < grid; gx++) {
+                int x = l + (int) ((gx + 0.5f) * (r - l) / grid);
+                int center = y * rowStride + x * pixelStride;
+                int laplacian = (buffer.get(center - step * pixelStride) & 0xFF)
+                        + (buffer.get(center + step * pixelStride) & 0xFF)
+                        + (buffer.get(center - step * rowStride) & 0xFF)
+                        + (buffer.get(center + step * rowStride) & 0xFF)
+                        - 4 * (buffer.get(center) & 0xFF);
+                sum += laplacian;
+                sumSquares += (long) laplacian * laplacian;
+            }
+        }
+        int samples = grid * grid;
+        double mean = (double) sum / samples;
+        return (float) ((double) sumSquares / samples - mean * mean);
+    }
+
+    @Override
+    public String toString() {
+        return "rejected: small " + rejected[TOO_SMALL] + ", angle " + rejected[OFF_ANGLE]
+                + ", blur " + rejected[BLURRED];
+    }
+
+    public static class Builder {
+        private int minFaceArea = 48 * 48;
+        private float maxYaw = 35f;
+        private float maxPitch = 25f;
+        private float maxRoll = 30f;
+        private float minSharpness = 20f;
+        private int sharpnessGrid = 24;
+        private int sharpnessScale = 112;
+
+        /** Smallest box, in frame pixels, worth upscaling to the model input. */
+        public Builder setMinFaceArea(int minFaceArea) {
+            this.minFaceArea = Math.max(1, minFaceArea);
+            return this;
+        }
+
+        /** Largest head angles, in degrees either way, at which expressions are still readable. */
+        public Builder setMaxAngles(float maxYaw, float maxPitch, float maxRoll) {
+            if (maxYaw <= 0f || maxPitch <= 0f || maxRoll <= 0f) {
+                throw new IllegalArgumentException("Angle limits must be positive");
+            }
+            this.maxYaw = maxYaw;
+            this.maxPitch = maxPitch;
+            this.maxRoll = maxRoll;
+            return this;
+        }
+
+        /** Laplacian variance below which a face counts as blurred; 0 turns the check off. */
+        public Builder setMinSharpness(float minSharpness) {
+            this.minSharpness = Math.max(0f, minSharpness);
+            return this;
+        }
+
+        /** Samples per side of the sharpness grid. */
+        public Builder setSharpnessGrid(int sharpnessGrid) {
+            this.sharpnessGrid = Math.max(2, sharpnessGrid);
+            return this;
+        }
+
+        /** Face size, in samples, the sharpness is measured at; about half the model input. */
+        public Builder setSharpnessScale(int sharpnessScale) {
+            this.sharpnessScale = Math.max(1, sharpnessScale);
+            return this;
+        }
+
+        public FaceQualityGate build() {
+            return new FaceQualityGate(this);
+        }
+    }
+}
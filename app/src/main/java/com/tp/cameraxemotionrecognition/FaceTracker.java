@@ -0,0 +1,400 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Follows faces across analyzed frames and caches the last emotion of each one, so a face that
+ * stays put is only classified again every few frames.
+ *
+ * <p>Faces are matched by the ML Kit tracking id when there is one, otherwise by the best bounding
+ * box overlap (IoU) with a track that hasn't been matched in this frame yet. A track is
+ * re-classified when it has no cached emotion, every {@code reclassifyEveryFrames} frames, when the
+ * cached emotion is older than the TTL, or when the face moved so that its box overlaps the box it
+ * was classified at by less than {@code motionIou}. At most {@code reclassifyBudget} tracks are
+ * re-classified per frame: the highest {@link #setQuality quality} first, and among equal quality
+ * new and stalest tracks first. A track with quality 0 keeps its cached emotion.
+ *
+ * <p>Scores passed to {@link #setScores} are smoothed per track by an {@link EmotionSmoother}, so
+ * the cached emotion is the stable label rather than the last frame's argmax.
+ *
+ * <p>Selection and scores may be frames apart when several frames are in flight. A selected track
+ * is pending until its scores arrive or {@link #cancelClassification} gives it back, and is not
+ * selected again meanwhile; the frame, time and box it was selected at are what its cached
+ * emotion is aged and compared against.
+ *
+ * <p>Per frame: {@link #beginFrame()}, {@link #update} and optionally {@link #setQuality} for every
+ * face, {@link #selectForClassification}, then {@link #endFrame()}. {@link #setScores} or {@link
+ * #cancelClassification} for the selected tracks may come in the same or a later frame. Not thread
+ * safe.
+ */
+public class FaceTracker {
+    /** Passed to {@link #update} when the detector gave no tracking id. */
+    public static final int NO_TRACKING_ID = Integer.MIN_VALUE;
+    /** Emotion of a track that was never classified. */
+    public static final int NO_EMOTION = -1;
+
+    /** One followed face. */
+    public static class Track {
+        private final long id;
+        private final int trackingId;
+        private final EmotionSmoother smoother;
+        private int left, top, right, bottom;
+        private int slot;
+        private long seenFrame;
+        private float quality = 1f;
+
+        private int emotion = NO_EMOTION;
+        private long classifiedFrame;
+        private long classifiedNanos;
+        private int classifiedLeft, classifiedTop, classifiedRight, classifiedBottom;
+
+        private boolean pending;
+        private long selectedFrame;
+        private long selectedNanos;
+        private int selectedLeft, selectedTop, selectedRight, selectedBottom;
+
+        private Track(long id, int trackingId, EmotionSmoother smoother) {
+            this.id = id;
+            this.trackingId = trackingId;
+            this.smoother = smoother;
+        }
+
+        public long getId() {
+            return id;
+        }
+
+        /** Order of the {@link #update} call that matched this track in the current frame. */
+        public int getSlot() {
+            return slot;
+        }
+
+        /** Smoothed score history of this face. */
+        public EmotionSmoother getSmoother() {
+            return smoother;
+        }
+
+        /** Quality of the face in the current frame, 1 unless {@link #setQuality} said otherwise. */
+        public float getQuality() {
+            return quality;
+        }
+
+        /** Cached emotion class index, or {@link #NO_EMOTION}. */
+        public int getEmotion() {
+            return emotion;
+        }
+
+        public int getLeft() {
+            return left;
+        }
+
+        public int getTop() {
+            return top;
+        }
+
+        public int getRight() {
+            return right;
+        }
+
+        public int getBottom() {
+            return bottom;
+        }
+    }
+
+    private final FrameScheduler.Clock clock;
+    private final float matchIou;
+    private final int maxMissedFrames;
+    private final int reclassifyEveryFrames;
+    private final long ttlNanos;
+    private final float motionIou;
+    private final int reclassifyBudget;
+    private final float smoothingAlpha;
+    private final float switchMargin;
+
+    private final List<Track> tracks = new ArrayList<>();
+    private long frame;
+    private int slots;
+    private long nextId;
+    private long classifiedCount;
+    private long cachedCount;
+    private long lowQualityCount;
+
+    private FaceTracker(Builder builder) {
+        this.clock = builder.clock;
+        this.matchIou = builder.matchIou;
+        this.maxMissedFrames = builder.maxMissedFrames;
+        this.reclassifyEveryFrames = builder.reclassifyEveryFrames;
+        this.ttlNanos = builder.ttlNanos;
+        this.motionIou = builder.motionIou;
+        this.reclassifyBudget = builder.reclassifyBudget;
+        this.smoothingAlpha = builder.smoothingAlpha;
+        this.switchMargin = builder.switchMargin;
+    }
+
+    public void beginFrame() {
+        frame++;
+        slots = 0;
+    }
+
+    /** Matches a detected face to a track, creating one if nothing matches. */
+    public Track update(int trackingId, int left, int top, int right, int bottom) {
+        Track match = null;
+        if (trackingId != NO_TRACKING_ID) {
+            for (int i = 0; i < tracks.size(); i++) {
+                if (tracks.get(i).trackingId == trackingId) {
+                    match = tracks.get(i);
+                    break;
+                }
+            }
+        } else {
+            float bestIou = matchIou;
+            for (int i = 0; i < tracks.size(); i++) {
+                Track track = tracks.get(i);
+                if (track.seenFrame == frame || track.trackingId != NO_TRACKING_ID) {
+                    continue;
+                }
+                float iou = iou(track.left, track.top, track.right, track.bottom, left, top, right, bottom);
+                if (iou >= bestIou) {
+                    bestIou = iou;
+                    match = track;
+                }
+            }
+        }
+        if (match == null) {
+            match = new Track(nextId++, trackingId,
+                    new EmotionSmoother(Emotions.NUM_CLASSES, smoothingAlpha, switchMargin));
+            tracks.add(match);
+        }
+        match.left = left;
+        match.top = top;
+        match.right = right;
+        match.bottom = bottom;
+        match.seenFrame = frame;
+        match.slot = slots++;
+        match.quality = 1f;
+        return match;
+    }
+
+    /**
+     * Sets how worth classifying the face of {@code track} is in this frame, from 0, never, to 1.
+     * Call after {@link #update}, which resets it to 1.
+     */
+    public void setQuality(Track track, float quality) {
+        track.quality = quality;
+    }
+
+    /**
+     * Whether the cached emotion of {@code track} is missing or out of date, and no classification
+     * of it is pending. A pending one older than the TTL counts as lost.
+     */
+    public boolean needsClassification(Track track) {
+        if (track.pending && clock.nanoTime() - track.selectedNanos < ttlNanos) {
+            return false;
+        }
+        if (track.emotion == NO_EMOTION) {
+            return true;
+        }
+        return frame - track.classifiedFrame >= reclassifyEveryFrames
+                || clock.nanoTime() - track.classifiedNanos >= ttlNanos
+                || iou(track.classifiedLeft, track.classifiedTop, track.classifiedRight, track.classifiedBottom,
+                track.left, track.top, track.right, track.bottom) < motionIou;
+    }
+
+    /**
+     * Fills {@code out} with the tracks of this frame that need classification, limited to the
+     * per-frame budget: best quality first, then never classified tracks, then the ones classified
+     * longest ago. Tracks with quality 0 are left out.
+     */
+    public void selectForClassification(List<Track> out) {
+        out.clear();
+        for (int i = 0; i < tracks.size(); i++) {
+            Track track = tracks.get(i);
+            if (track.seenFrame != frame) {
+                continue;
+            }
+            if (!needsClassification(track)) {
+                cachedCount++;
+                continue;
+            }
+            if (track.quality <= 0f) {
+                // Kalitesiz yüz modele gitmez, varsa önbellekteki duygusu kalır
+                lowQualityCount++;
+                continue;
+            }
+            // Insertion sort by priority, the lists hold a handful of faces.
+            int pos = out.size();
+            while (pos > 0 && comesBefore(track, out.get(pos - 1))) {
+                pos--;
+            }
+            out.add(pos, track);
+        }
+        while (out.size() > reclassifyBudget) {
+            // Over budget faces keep their cached emotion, if any, this frame.
+            out.remove(out.size() - 1);
+        }
+        long now = clock.nanoTime();
+        for (int i = 0; i < out.size(); i++) {
+            Track track = out.get(i);
+            track.pending = true;
+            track.selectedFrame = frame;
+            track.selectedNanos = now;
+            track.selectedLeft = track.left;
+            track.selectedTop = track.top;
+            track.selectedRight = track.right;
+            track.selectedBottom = track.bottom;
+        }
+    }
+
+    /** Gives back a selected track whose scores won't come, e.g. its frame was dropped. */
+    public void cancelClassification(Track track) {
+        track.pending = false;
+    }
+
+    /** Feeds the confidences just computed for {@code track} into its smoother and caches the label. */
+    public void setScores(Track track, float[] confidences) {
+        track.smoother.update(confidences);
+        setEmotion(track, track.smoother.getLabel());
+    }
+
+    /**
+     * Caches an emotion computed for {@code track} without going through the smoother. A pending
+     * track is stamped with the frame it was selected in, others with the current frame.
+     */
+    public void setEmotion(Track track, int emotion) {
+        track.emotion = emotion;
+        if (track.pending) {
+            track.pending = false;
+            track.classifiedFrame = track.selectedFrame;
+            track.classifiedNanos = track.selectedNanos;
+            track.classifiedLeft = track.selectedLeft;
+            track.classifiedTop = track.selectedTop;
+            track.classifiedRight = track.selectedRight;
+            track.classifiedBottom = track.selectedBottom;
+        } else {
+            track.classifiedFrame = frame;
+            track.classifiedNanos = clock.nanoTime();
+            track.classifiedLeft = track.left;
+            track.classifiedTop = track.top;
+            track.classifiedRight = track.right;
+            track.classifiedBottom = track.bottom;
+        }
+        classifiedCount++;
+    }
+
+    /** Drops tracks that haven't been seen for more than {@code maxMissedFrames} frames. */
+    public void endFrame() {
+        // Indeksle, sondan başa; her frame'de iterator oluşmasın
+        for (int i = tracks.size() - 1; i >= 0; i--) {
+            if (frame - tracks.get(i).seenFrame > maxMissedFrames) {
+                tracks.remove(i);
+            }
+        }
+    }
+
+    public int getTrackCount() {
+        return tracks.size();
+    }
+
+    /** Number of times a track was classified. */
+    public long getClassifiedCount() {
+        return classifiedCount;
+    }
+
+    /** Number of times a cached emotion was reused instead. */
+    public long getCachedCount() {
+        return cachedCount;
+    }
+
+    /** Number of times a track needing classification was left out for quality 0. */
+    public long getLowQualityCount() {
+        return lowQualityCount;
+    }
+
+    private static boolean comesBefore(Track a, Track b) {
+        if (a.quality != b.quality) {
+            return a.quality > b.quality;
+        }
+        return priority(a) < priority(b);
+    }
+
+    private static long priority(Track track) {
+        return track.emotion == NO_EMOTION ? Long.MIN_VALUE : track.classifiedFrame;
+    }
+
+    /** Intersection over union of two boxes. */
+    public static float iou(int l1, int t1, int r1, int b1, int l2, int t2, int r2, int b2) {
+        long w = Math.min(r1, r2) - Math.max(l1, l2);
+        long h = Math.min(b1, b2) - Math.max(t1, t2);
+        if (w <= 0 || h <= 0) {
+            return 0f;
+        }
+        long intersection = w * h;
+        long union = (long) (r1 - l1) * (b1 - t1) + (long) (r2 - l2) * (b2 - t2) - intersection;
+        return union <= 0 ? 0f : (float) intersection / union;
+    }
+
+    /** Builder of {@link FaceTracker}. */
+    public static class Builder {
+
+        private FrameScheduler.Clock clock = FrameScheduler.SYSTEM_CLOCK;
+        private float matchIou = 0.3f;
+        private int maxMissedFrames = 5;
+        private int reclassifyEveryFrames = 10;
+        private long ttlNanos = 5_000_000_000L;
+        private float motionIou = 0.6f;
+        private int reclassifyBudget = Integer.MAX_VALUE;
+        private float smoothingAlpha = 0.5f;
+        private float switchMargin = 0.15f;
+
+        public Builder setClock(FrameScheduler.Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /** Minimum overlap for a face without tracking id to continue a track. */
+        public Builder setMatchIou(float matchIou) {
+            this.matchIou = matchIou;
+            return this;
+        }
+
+        public Builder setMaxMissedFrames(int maxMissedFrames) {
+            this.maxMissedFrames = maxMissedFrames;
+            return this;
+        }
+
+        public Builder setReclassifyEveryFrames(int reclassifyEveryFrames) {
+            this.reclassifyEveryFrames = reclassifyEveryFrames;
+            return this;
+        }
+
+        public Builder setTtlMs(long ttlMs) {
+            this.ttlNanos = ttlMs * 1_000_000L;
+            return this;
+        }
+
+        /** Overlap with the box at the last classification below which the face counts as moved. */
+        public Builder setMotionIou(float motionIou) {
+            this.motionIou = motionIou;
+            return this;
+        }
+
+        public Builder setReclassifyBudget(int reclassifyBudget) {
+            this.reclassifyBudget = reclassifyBudget;
+            return this;
+        }
+
+        /**
+         * Weight of a new score vector in the per-track average, and the lead another class needs
+         * over the current label before the label changes.
+         */
+        public Builder setSmoothing(float alpha, float switchMargin) {
+            this.smoothingAlpha = alpha;
+            this.switchMargin = switchMargin;
+            return this;
+        }
+
+        public FaceTracker build() {
+            return new FaceTracker(this);
+        }
+    }
+}
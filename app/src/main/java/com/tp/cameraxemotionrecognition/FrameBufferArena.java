@@ -0,0 +1,112 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+
+/**
+ * Preallocated buffers for the analysis loop, so steady-state frames allocate no tensors or
+ * outputs.
+ *
+ * <p>Each batch has one direct input buffer sized for the largest batch, shared by views whose
+ * capacity is exactly N input tensors, as the interpreter requires. Output arrays are kept the same
+ * way. An arena can hold several batches side by side, so a frame whose faces need more than one
+ * inference keeps all its inputs and outputs until it is done. Batches are added with
+ * {@link #ensureBatches(int)} when a frame first needs them, since most frames fit in one.
+ * {@link #getAllocationCount()} counts every buffer the arena created, so a caller can check it
+ * stays flat once the first frames have been processed.
+ *
+ * <p>Not thread safe; use it from one thread at a time, e.g. the inference thread, or hand it from
+ * stage to stage along with the frame that owns it.
+ */
+public class FrameBufferArena {
+
+    private final int imageSize;
+    private final int tensorBytes;
+    private final int maxBatchSize;
+    private final int numClasses;
+    private ByteBuffer[][] inputViews = new ByteBuffer[0][];
+    private float[][][][] outputs = new float[0][][][];
+    private int allocationCount;
+
+    public FrameBufferArena(int imageSize, int maxBatchSize, int numClasses) {
+        this(imageSize, maxBatchSize, numClasses, TensorFormat.FLOAT);
+    }
+
+    /** Arena whose input buffers hold tensors in {@code inputFormat}, 1 byte per channel if quantized. */
+    public FrameBufferArena(int imageSize, int maxBatchSize, int numClasses, TensorFormat inputFormat) {
+        this(imageSize, maxBatchSize, 1, numClasses, inputFormat);
+    }
+
+    /** Arena starting with {@code maxBatches} batches of up to {@code maxBatchSize} tensors each. */
+    public FrameBufferArena(int imageSize, int maxBatchSize, int maxBatches, int numClasses, TensorFormat inputFormat) {
+        this.imageSize = imageSize;
+        this.tensorBytes = YuvTensorConverter.getTensorBytes(imageSize, inputFormat);
+        this.maxBatchSize = maxBatchSize;
+        this.numClasses = numClasses;
+        ensureBatches(maxBatches);
+    }
+
+    /** Adds batches until the arena holds at least {@code batches}; existing ones are kept as they are. */
+    public void ensureBatches(int batches) {
+        int old = inputViews.length;
+        if (batches <= old) {
+            return;
+        }
+        inputViews = Arrays.copyOf(inputViews, batches);
+        outputs = Arrays.copyOf(outputs, batches);
+        for (int batch = old; batch < batches; batch++) {
+            ByteBuffer input = ByteBuffer.allocateDirect(maxBatchSize * tensorBytes);
+            allocationCount++;
+            inputViews[batch] = new ByteBuffer[maxBatchSize + 1];
+            outputs[batch] = new float[maxBatchSize + 1][][];
+            for (int count = 1; count <= maxBatchSize; count++) {
+                ByteBuffer view = input.duplicate();
+                view.limit(count * tensorBytes);
+                inputViews[batch][count] = view.slice().order(ByteOrder.nativeOrder());
+                outputs[batch][count] = new float[count][numClasses];
+                allocationCount++;
+            }
+        }
+    }
+
+    public int getImageSize() {
+        return imageSize;
+    }
+
+    public int getMaxBatchSize() {
+        return maxBatchSize;
+    }
+
+    /** Batches the arena holds now. */
+    public int getMaxBatches() {
+        return inputViews.length;
+    }
+
+    /** Cleared input buffer with a capacity of exactly {@code count} tensors. */
+    public ByteBuffer getInput(int count) {
+        return getInput(0, count);
+    }
+
+    /** Same as {@link #getInput(int)} for batch {@code batch}, which doesn't overlap the others. */
+    public ByteBuffer getInput(int batch, int count) {
+        ByteBuffer view = inputViews[batch][count];
+        view.clear();
+        return view;
+    }
+
+    /** Output array for {@code count} faces; overwritten by the next inference of that size. */
+    public float[][] getOutput(int count) {
+        return outputs[0][count];
+    }
+
+    /** Output array for {@code count} faces of batch {@code batch}. */
+    public float[][] getOutput(int batch, int count) {
+        return outputs[batch][count];
+    }
+
+    /** Number of buffers created since construction. */
+    public int getAllocationCount() {
+        return allocationCount;
+    }
+}
@@ -0,0 +1,166 @@
+package com.tp.cameraxemotionrecognition;
+
+/**
+ * Maps pixel indices and rectangles between the upright image ML Kit reports faces in and the
+ * sensor-space buffer of a frame, as described by a {@link FrameMetadata}.
+ *
+ * <p>The upright image is the sensor image rotated clockwise by {@link FrameMetadata#getRotation()}
+ * and then, if {@link FrameMetadata#isMirrored()}, flipped horizontally. Both directions are
+ * integer affine maps, so crops can be sampled straight from the unrotated buffer instead of
+ * rotating the whole frame first. The per-axis coefficients are exposed for inner loops, e.g.
+ * {@code sensorX = getSensorX0() + getSensorXPerX() * x + getSensorXPerY() * y}.
+ *
+ * <p>Rectangles are half open, {@code [left, right) x [top, bottom)}, like {@code Rect}.
+ */
+public class FrameCoordinates {
+
+    private final int uprightWidth;
+    private final int uprightHeight;
+
+    // upright (x, y) -> sensor (sensorX0 + sensorXPerX * x + sensorXPerY * y, ...)
+    private final int sensorXPerX, sensorXPerY, sensorX0;
+    private final int sensorYPerX, sensorYPerY, sensorY0;
+    // sensor (sx, sy) -> upright (uprightX0 + uprightXPerSensorX * sx + uprightXPerSensorY * sy, ...)
+    private final int uprightXPerSensorX, uprightXPerSensorY, uprightX0;
+    private final int uprightYPerSensorX, uprightYPerSensorY, uprightY0;
+
+    public FrameCoordinates(FrameMetadata metadata) {
+        int width = metadata.getWidth();
+        int height = metadata.getHeight();
+        int rotation = metadata.getRotation();
+        boolean swapAxes = rotation == 90 || rotation == 270;
+        uprightWidth = swapAxes ? height : width;
+        uprightHeight = swapAxes ? width : height;
+
+        // Unmirrored upright (x, y) -> sensor (c1 + a * x + b * y, c2 + d * x + e * y).
+        int a, b, c1, d, e, c2;
+        switch (rotation) {
+            case 0:
+                a = 1; b = 0; c1 = 0;
+                d = 0; e = 1; c2 = 0;
+                break;
+            case 90:
+                a = 0; b = 1; c1 = 0;
+                d = -1; e = 0; c2 = height - 1;
+                break;
+            case 180:
+                a = -1; b = 0; c1 = width - 1;
+                d = 0; e = -1; c2 = height - 1;
+                break;
+            case 270:
+                a = 0; b = -1; c1 = width - 1;
+                d = 1; e = 0; c2 = 0;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported rotation: " + rotation);
+        }
+        if (metadata.isMirrored()) {
+            // x -> uprightWidth - 1 - x before rotating back.
+            c1 += a * (uprightWidth - 1);
+            c2 += d * (uprightWidth - 1);
+            a = -a;
+            d = -d;
+        }
+        sensorXPerX = a;
+        sensorXPerY = b;
+        sensorX0 = c1;
+        sensorYPerX = d;
+        sensorYPerY = e;
+        sensorY0 = c2;
+
+        // The linear part is a signed permutation, so its inverse is its transpose.
+        uprightXPerSensorX = a;
+        uprightXPerSensorY = d;
+        uprightX0 = -(a * c1 + d * c2);
+        uprightYPerSensorX = b;
+        uprightYPerSensorY = e;
+        uprightY0 = -(b * c1 + e * c2);
+    }
+
+    public int getUprightWidth() {
+        return uprightWidth;
+    }
+
+    public int getUprightHeight() {
+        return uprightHeight;
+    }
+
+    public int toSensorX(int x, int y) {
+        return sensorX0 + sensorXPerX * x + sensorXPerY * y;
+    }
+
+    public int toSensorY(int x, int y) {
+        return sensorY0 + sensorYPerX * x + sensorYPerY * y;
+    }
+
+    public int toUprightX(int sensorX, int sensorY) {
+        return uprightX0 + uprightXPerSensorX * sensorX + uprightXPerSensorY * sensorY;
+    }
+
+    public int toUprightY(int sensorX, int sensorY) {
+        return uprightY0 + uprightYPerSensorX * sensorX + uprightYPerSensorY * sensorY;
+    }
+
+    /** Whether the upright pixel {@code x, y} is inside the frame. */
+    public boolean isInside(int x, int y) {
+        return x >= 0 && x < uprightWidth && y >= 0 && y < uprightHeight;
+    }
+
+    /** Writes the sensor-space rectangle covering the upright one to {@code out} as l, t, r, b. */
+    public void toSensorRect(int left, int top, int right, int bottom, int[] out) {
+        int x1 = toSensorX(left, top);
+        int y1 = toSensorY(left, top);
+        int x2 = toSensorX(right - 1, bottom - 1);
+        int y2 = toSensorY(right - 1, bottom - 1);
+        out[0] = Math.min(x1, x2);
+        out[1] = Math.min(y1, y2);
+        out[2] = Math.max(x1, x2) + 1;
+        out[3] = Math.max(y1, y2) + 1;
+    }
+
+    /** Writes the upright rectangle covering the sensor-space one to {@code out} as l, t, r, b. */
+    public void toUprightRect(int left, int top, int right, int bottom, int[] out) {
+        int x1 = toUprightX(left, top);
+        int y1 = toUprightY(left, top);
+        int x2 = toUprightX(right - 1, bottom - 1);
+        int y2 = toUprightY(right - 1, bottom - 1);
+        out[0] = Math.min(x1, x2);
+        out[1] = Math.min(y1, y2);
+        out[2] = Math.max(x1, x2) + 1;
+        out[3] = Math.max(y1, y2) + 1;
+    }
+
+    public int getSensorXPerX() {
+        return sensorXPerX;
+    }
+
+    public int getSensorXPerY() {
+        return sensorXPerY;
+    }
+
+    public int getSensorX0() {
+        return sensorX0;
+    }
+
+    public int getSensorYPerX() {
+        return sensorYPerX;
+    }
+
+    public int getSensorYPerY() {
+        return sensorYPerY;
+    }
+
+    public int getSensorY0() {
+        return sensorY0;
+    }
+
+    /** Change of the upright x for one step right in the sensor buffer. */
+    public int getUprightXPerSensorX() {
+        return uprightXPerSensorX;
+    }
+
+    /** Change of the upright y for one step right in the sensor buffer. */
+    public int getUprightYPerSensorX() {
+        return uprightYPerSensorX;
+    }
+}
@@ -22,6 +22,7 @@ public class FrameMetadata {
     private final int width;
     private final int height;
     private final int rotation;
+    private final boolean mirrored;
 
     public int getWidth() {
         return width;
@@ -35,10 +36,19 @@ public class FrameMetadata {
         return rotation;
     }
 
-    private FrameMetadata(int width, int height, int rotation) {
+    /**
+     * Whether coordinates in the upright image are flipped horizontally, as in a mirrored front
+     * camera preview.
+     */
+    public boolean isMirrored() {
+        return mirrored;
+    }
+
+    private FrameMetadata(int width, int height, int rotation, boolean mirrored) {
         this.width = width;
         this.height = height;
         this.rotation = rotation;
+        this.mirrored = mirrored;
     }
 
     /** Builder of {@link FrameMetadata}. */
@@ -47,6 +57,7 @@ public class FrameMetadata {
         private int width;
         private int height;
         private int rotation;
+        private boolean mirrored;
 
         public Builder setWidth(int width) {
             this.width = width;
@@ -63,8 +74,13 @@ public class FrameMetadata {
             return this;
         }
 
+        public Builder setMirrored(boolean mirrored) {
+            this.mirrored = mirrored;
+            return this;
+        }
+
         public FrameMetadata build() {
-            return new FrameMetadata(width, height, rotation);
+            return new FrameMetadata(width, height, rotation, mirrored);
         }
     }
 }
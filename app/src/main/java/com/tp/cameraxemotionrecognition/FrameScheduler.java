@@ -0,0 +1,124 @@
+package com.tp.cameraxemotionrecognition;
+
+/**
+ * Decides which camera frames get analyzed.
+ *
+ * <p>A frame is accepted when fewer than {@code maxInFlight} frames are being analyzed and the
+ * adaptive interval has passed since the last accepted frame. The interval is the larger of the
+ * target rate's interval and the smoothed analysis latency, so slow devices settle at the rate
+ * they can sustain instead of queueing work. Rejected frames should be closed right away.
+ */
+public class FrameScheduler {
+    /** Returned by {@link #acquire()} when the frame should be skipped. */
+    public static final long SKIPPED = Long.MIN_VALUE;
+
+    /** Monotonic time source, replaceable in tests. */
+    public interface Clock {
+        long nanoTime();
+    }
+
+    public static final Clock SYSTEM_CLOCK = new Clock() {
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+
+    // Weight of the newest latency sample in the moving average.
+    private static final double LATENCY_SMOOTHING = 0.2;
+
+    private final Clock clock;
+    private final long targetIntervalNanos;
+    private final int maxInFlight;
+
+    private double smoothedLatencyNanos;
+    private boolean hasLastStart;
+    private long lastStartNanos;
+    private int inFlight;
+    private long received;
+    private long skipped;
+    private long completed;
+
+    /**
+     * @param targetFps   upper bound on analyzed frames per second
+     * @param maxInFlight frames allowed to be analyzed at the same time
+     */
+    public FrameScheduler(Clock clock, float targetFps, int maxInFlight) {
+        if (targetFps <= 0 || maxInFlight < 1) {
+            throw new IllegalArgumentException("targetFps must be > 0 and maxInFlight >= 1");
+        }
+        this.clock = clock;
+        this.targetIntervalNanos = (long) (1_000_000_000d / targetFps);
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Called for every incoming frame. Returns a ticket to pass to {@link #finish(long)} once the
+     * frame is analyzed, or {@link #SKIPPED} if the frame should be dropped.
+     */
+    public synchronized long acquire() {
+        received++;
+        long now = clock.nanoTime();
+        long interval = getIntervalNanos();
+        if (inFlight >= maxInFlight || (hasLastStart && now - lastStartNanos < interval)) {
+            skipped++;
+            return SKIPPED;
+        }
+        // Advance from the previous start so camera frame spacing doesn't lower the average rate,
+        // but restart from now after a pause instead of bursting to catch up.
+        lastStartNanos = hasLastStart && now - lastStartNanos < 2 * interval ? lastStartNanos + interval : now;
+        hasLastStart = true;
+        inFlight++;
+        return now;
+    }
+
+    /** Marks the frame of {@code ticket} as done and feeds its latency into the rate control. */
+    public synchronized void finish(long ticket) {
+        if (ticket == SKIPPED) {
+            return;
+        }
+        long latency = clock.nanoTime() - ticket;
+        smoothedLatencyNanos = completed == 0
+                ? latency
+                : smoothedLatencyNanos + LATENCY_SMOOTHING * (latency - smoothedLatencyNanos);
+        completed++;
+        inFlight--;
+    }
+
+    /**
+     * Gives back the slot of an accepted frame that turned out not to need analysis, e.g. an
+     * unchanged scene. Its latency isn't recorded, so it doesn't speed up the adaptive rate.
+     */
+    public synchronized void cancel(long ticket) {
+        if (ticket == SKIPPED) {
+            return;
+        }
+        inFlight--;
+    }
+
+    /** Current minimum time between two accepted frames. */
+    public synchronized long getIntervalNanos() {
+        // With several frames in flight their latencies overlap.
+        return Math.max(targetIntervalNanos, (long) (smoothedLatencyNanos / maxInFlight));
+    }
+
+    public synchronized long getSmoothedLatencyNanos() {
+        return (long) smoothedLatencyNanos;
+    }
+
+    public synchronized int getInFlight() {
+        return inFlight;
+    }
+
+    public synchronized long getReceivedCount() {
+        return received;
+    }
+
+    public synchronized long getSkippedCount() {
+        return skipped;
+    }
+
+    public synchronized long getCompletedCount() {
+        return completed;
+    }
+}
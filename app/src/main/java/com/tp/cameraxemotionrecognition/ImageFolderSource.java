@@ -0,0 +1,67 @@
+package com.tp.cameraxemotionrecognition;
+
+import android.content.ContentResolver;
+import android.graphics.Bitmap;
+import android.net.Uri;
+
+import java.io.File;
+import java.io.FileFilter;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Locale;
+
+/** The photos of one folder, in file name order, upright according to their EXIF orientation. */
+public class ImageFolderSource implements BatchClassifier.FrameSource {
+    private static final String[] EXTENSIONS = {".jpg", ".jpeg", ".png", ".webp", ".bmp", ".heic"};
+
+    private final ContentResolver contentResolver;
+    private final File[] files;
+
+    public ImageFolderSource(ContentResolver contentResolver, File folder) throws IOException {
+        File[] images = folder.listFiles(new FileFilter() {
+            @Override
+            public boolean accept(File file) {
+                String name = file.getName().toLowerCase(Locale.US);
+                for (String extension : EXTENSIONS) {
+                    if (file.isFile() && name.endsWith(extension)) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        });
+        if (images == null) {
+            throw new IOException("Can't list " + folder);
+        }
+        Arrays.sort(images);
+        this.contentResolver = contentResolver;
+        this.files = images;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return files.length;
+    }
+
+    @Override
+    public ArgbFrame decode(int index) throws IOException {
+        File file = files[index];
+        Bitmap bitmap = BitmapUtils.getBitmapFromContentUri(contentResolver, Uri.fromFile(file));
+        if (bitmap == null) {
+            throw new IOException("Can't decode " + file.getName());
+        }
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return new ArgbFrame(file.getName(), ArgbFrame.NO_TIME, width, height, pixels);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -3,10 +3,12 @@ package com.tp.cameraxemotionrecognition;
 import android.Manifest;
 import android.content.Intent;
 import android.content.pm.PackageManager;
+import android.content.res.Configuration;
 import android.net.Uri;
 import android.os.Bundle;
 import android.speech.tts.TextToSpeech;
 import android.util.Log;
+import android.util.Size;
 import android.widget.ImageView;
 import android.widget.TextView;
 import android.widget.Toast;
@@ -26,11 +28,15 @@ import com.google.mlkit.vision.face.FaceDetection;
 import com.google.mlkit.vision.face.FaceDetector;
 import com.google.mlkit.vision.face.FaceDetectorOptions;
 
+import java.io.File;
+import java.io.IOException;
 import java.util.List;
 import java.util.Locale;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 
 public class MainActivity extends AppCompatActivity {
     private static final String TAG = "MainActivity";
@@ -43,6 +49,36 @@ public class MainActivity extends AppCompatActivity {
     private FaceDetectorOptions faceDetectorOptions;
     private FaceDetector faceDetector;
     private TextToSpeech textToSpeech;
+    private FaceDetectorAnalyzer faceDetectorAnalyzer;
+    private ExecutorService analysisExecutor;
+    private ImageAnalysis imageAnalyzer;
+    // Tespit profili "detection" ayar dosyasındaki "profile" anahtarından okunur:
+    // fast, balanced, accurate ya da adaptive (varsayılan, balanced ayarlarıyla çözünürlüğü uyarlar)
+    static final String DETECTION_PREFS = "detection";
+    static final String DETECTION_PROFILE_KEY = "profile";
+    static final String PROFILE_ADAPTIVE = "adaptive";
+    private DetectionProfile detectionProfile;
+    private DetectionResolutionController resolutionController;
+    private ProcessCameraProvider cameraProvider;
+    private final CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
+    // Isınma turu sayısı; model 1'lik batch ile bu kadar çalışınca kullanıma açılır
+    private final int modelWarmupRuns = 2;
+    private ClassifierLoader modelLoader;
+    private EmotionSessionLoader sessionLoader;
+    // Backend ve thread ölçümü kamera dururken yapılır; kamera açılınca veya aktivite kapanınca iptal
+    private final ExecutorService tuningService = Executors.newSingleThreadExecutor();
+    private Future<?> tuning;
+    // Açılış adımları; her adım bağımlı olduğu adımlar biter bitmez kendi thread'inde başlar
+    static final String STEP_MODEL = "model";
+    static final String STEP_FACE_DETECTOR = "face_detector";
+    static final String STEP_TTS = "tts";
+    static final String STEP_CAMERA_PERMISSION = "camera_permission";
+    static final String STEP_CAMERA_PROVIDER = "camera_provider";
+    static final String STEP_BIND_CAMERA = "bind_camera";
+    static final String STEP_FIRST_ANALYSIS = "first_analysis";
+    static final String STARTUP_TRACE_FILE = "startup.jsonl";
+    private ExecutorService startupService;
+    private StartupOrchestrator.Callback permissionCallback;
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -52,14 +88,153 @@ public class MainActivity extends AppCompatActivity {
         // Layout elemanlarını tanıt
         initComponents();
 
-        // TTS motorunu yapılandır
-        initTTS();
+        // Configure Face Detector
+        // Tracking id'leri yüz başına duygu önbelleği için kullanılır
+        initDetectionProfile();
+        faceDetectorOptions = buildFaceDetectorOptions(detectionProfile);
+
+        // Model, dedektör, TTS ve kamera birbirini beklemeden başlar; kamera bağlama sadece
+        // kamera, izin ve dedektörü bekler, model hazır olmadan gelen frameler atlanır
+        sessionLoader = new EmotionSessionLoader(this);
+        modelLoader = new ClassifierLoader(sessionLoader, modelWarmupRuns, FrameScheduler.SYSTEM_CLOCK);
+        startupService = Executors.newFixedThreadPool(2);
+        Executor mainExecutor = ContextCompat.getMainExecutor(this);
+        new StartupOrchestrator(FrameScheduler.SYSTEM_CLOCK,
+                new StartupTrace(new File(getFilesDir(), STARTUP_TRACE_FILE)))
+                .add(STEP_MODEL, startupService, new StartupOrchestrator.Step() {
+                    @Override
+                    public void start(StartupOrchestrator.Callback callback) {
+                        if (!modelLoader.load()) {
+                            callback.failed(new IOException("Model " + modelLoader));
+                            return;
+                        }
+                        callback.done();
+                        // Model kullanımda; büyük batch ısınması açılışı bekletmez
+                        modelLoader.warmUpLargerBatches();
+                    }
+                })
+                .add(STEP_FACE_DETECTOR, startupService, new StartupOrchestrator.Step() {
+                    @Override
+                    public void start(StartupOrchestrator.Callback callback) {
+                        faceDetector = FaceDetection.getClient(faceDetectorOptions);
+                        callback.done();
+                    }
+                })
+                // Ana thread adımları sırayla başlar; TTS nesnesi kamera bağlanmadan önce oluşur
+                .add(STEP_TTS, mainExecutor, new StartupOrchestrator.Step() {
+                    @Override
+                    public void start(StartupOrchestrator.Callback callback) {
+                        initTTS(callback);
+                    }
+                })
+                .add(STEP_CAMERA_PERMISSION, mainExecutor, new StartupOrchestrator.Step() {
+                    @Override
+                    public void start(StartupOrchestrator.Callback callback) {
+                        checkCameraPermission(callback);
+                    }
+                })
+                .add(STEP_CAMERA_PROVIDER, mainExecutor, new StartupOrchestrator.Step() {
+                    @Override
+                    public void start(StartupOrchestrator.Callback callback) {
+                        startCameraProvider(callback);
+                    }
+                })
+                .add(STEP_BIND_CAMERA, mainExecutor, new StartupOrchestrator.Step() {
+                    @Override
+                    public void start(StartupOrchestrator.Callback callback) throws ExecutionException, InterruptedException {
+                        bindCamera(cameraProviderFuture.get());
+                        callback.done();
+                    }
+                }, STEP_CAMERA_PROVIDER, STEP_CAMERA_PERMISSION, STEP_FACE_DETECTOR)
+                .add(STEP_FIRST_ANALYSIS, mainExecutor, new StartupOrchestrator.Step() {
+                    @Override
+                    public void start(final StartupOrchestrator.Callback callback) {
+                        faceDetectorAnalyzer.setFirstFrameListener(new Runnable() {
+                            @Override
+                            public void run() {
+                                callback.done();
+                            }
+                        });
+                    }
+                }, STEP_BIND_CAMERA, STEP_MODEL)
+                .start();
+    }
+
+    private void initDetectionProfile(){
+        String name = getSharedPreferences(DETECTION_PREFS, MODE_PRIVATE)
+                .getString(DETECTION_PROFILE_KEY, PROFILE_ADAPTIVE);
+        detectionProfile = DetectionProfile.forName(name);
+        if (detectionProfile == null) {
+            if (!PROFILE_ADAPTIVE.equals(name)) {
+                Log.w(TAG, "Unknown detection profile " + name + ", using " + PROFILE_ADAPTIVE);
+            }
+            resolutionController = new DetectionResolutionController.Builder().build();
+            detectionProfile = analysisProfile(DetectionProfile.BALANCED, resolutionController.getShortSide());
+            resolutionController.setListener(new DetectionResolutionController.Listener() {
+                @Override
+                public void onLevelChanged(int level, final int shortSide) {
+                    // Tespit thread'inden çağrılır; kamera ana thread'de yeniden bağlanır
+                    runOnUiThread(new Runnable() {
+                        @Override
+                        public void run() {
+                            detectionProfile = analysisProfile(detectionProfile, shortSide);
+                            rebindAnalysis();
+                        }
+                    });
+                }
+            });
+        }
+        Log.d(TAG, "Detection profile " + detectionProfile + (resolutionController != null ? ", adaptive" : ""));
+    }
 
-        // kamera kullanımı için izin var mı kontrol et
-        checkCameraPermission();
+    /** {@code profile} at a 4:3 analysis size with the given short side. */
+    private static DetectionProfile analysisProfile(DetectionProfile profile, int shortSide){
+        return profile.withAnalysisSize(shortSide * 4 / 3, shortSide);
+    }
 
-        // Configure Face Detector
-        faceDetectorOptions = new FaceDetectorOptions.Builder().build();
+    private static FaceDetectorOptions buildFaceDetectorOptions(DetectionProfile profile){
+        FaceDetectorOptions.Builder builder = new FaceDetectorOptions.Builder()
+                .setPerformanceMode(profile.getPerformanceMode() == DetectionProfile.PERFORMANCE_ACCURATE
+                        ? FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE : FaceDetectorOptions.PERFORMANCE_MODE_FAST)
+                .setMinFaceSize(profile.getMinFaceSize())
+                .setLandmarkMode(profile.isLandmarks()
+                        ? FaceDetectorOptions.LANDMARK_MODE_ALL : FaceDetectorOptions.LANDMARK_MODE_NONE)
+                .setContourMode(profile.isContours()
+                        ? FaceDetectorOptions.CONTOUR_MODE_ALL : FaceDetectorOptions.CONTOUR_MODE_NONE);
+        if (profile.isTracking()) {
+            builder.enableTracking();
+        }
+        return builder.build();
+    }
+
+    /** Analysis use case at the profile's resolution, in the orientation of the display. */
+    private ImageAnalysis buildImageAnalysis(DetectionProfile profile){
+        int width = profile.getAnalysisWidth();
+        int height = profile.getAnalysisHeight();
+        // Hedef çözünürlük ekran yönünde verilir, dikeyde en ve boy yer değiştirir
+        if (getResources().getConfiguration().orientation == Configuration.ORIENTATION_PORTRAIT) {
+            int swap = width;
+            width = height;
+            height = swap;
+        }
+        return new ImageAnalysis.Builder()
+                .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
+                .setTargetResolution(new Size(width, height))
+                .build();
+    }
+
+    /** Replaces the analysis use case with one at the current profile's resolution; the preview stays. */
+    private void rebindAnalysis(){
+        if (cameraProvider == null || imageAnalyzer == null || isDestroyed()) {
+            return;
+        }
+        ImageAnalysis previous = imageAnalyzer;
+        imageAnalyzer = buildImageAnalysis(detectionProfile);
+        imageAnalyzer.setAnalyzer(analysisExecutor, faceDetectorAnalyzer);
+        previous.clearAnalyzer();
+        cameraProvider.unbind(previous);
+        cameraProvider.bindToLifecycle(MainActivity.this, cameraSelector, imageAnalyzer);
+        Log.d(TAG, "rebindAnalysis: " + detectionProfile + ", " + resolutionController);
     }
 
     private void initComponents(){
@@ -68,10 +243,16 @@ public class MainActivity extends AppCompatActivity {
         textView = findViewById(R.id.textView);
     }
 
-    private void initTTS(){
+    private void initTTS(final StartupOrchestrator.Callback callback){
         textToSpeech = new TextToSpeech(getApplicationContext(), new TextToSpeech.OnInitListener() {
             @Override
             public void onInit(int status) {
+                if (status == TextToSpeech.ERROR) {
+                    callback.failed(new IllegalStateException("TTS engine failed to start"));
+                } else {
+                    callback.done();
+                }
+
                 // Çünkü java Türkçe lokalizasyona sahip değil
                 Locale locale = new Locale("tr_TR");
 
@@ -112,74 +293,122 @@ public class MainActivity extends AppCompatActivity {
         }, "com.google.android.tts");
     }
 
-    private void startCamera(){
+    private void startCameraProvider(final StartupOrchestrator.Callback callback){
         cameraProviderFuture = ProcessCameraProvider.getInstance(this);
 
         cameraProviderFuture.addListener(() -> {
             try {
-                // lifecycle bind için
-                ProcessCameraProvider cameraProvider = cameraProviderFuture.get();
-
-                // Preview'in kendisi
-                Preview preview = new Preview.Builder().build();
-
-                preview.setSurfaceProvider(previewView.getSurfaceProvider());
+                cameraProviderFuture.get();
+                callback.done();
+            } catch (InterruptedException | ExecutionException e) {
+                callback.failed(e);
+            }
+        }, ContextCompat.getMainExecutor(this));
+    }
 
-                // ImageAnalyzer use case builder
-                ImageAnalysis imageAnalyzer = new ImageAnalysis.Builder()
-                        .setBackpressureStrategy(ImageAnalysis.STRATEGY_KEEP_ONLY_LATEST)
-                        .build();
+    private void bindCamera(ProcessCameraProvider cameraProvider){
+        this.cameraProvider = cameraProvider;
+        // Preview'in kendisi
+        Preview preview = new Preview.Builder().build();
 
-                // https://stackoverflow.com/questions/58373986/takepicture-require-executor-on-camerax-1-0-0-alpha06
-                Executor executor = Executors.newSingleThreadExecutor();
-                faceDetector = FaceDetection.getClient(faceDetectorOptions);
-                FaceDetectorAnalyzer faceDetectorAnalyzer = new FaceDetectorAnalyzer(
-                        faceDetector,
-                        this,
-                        imageView,
-                        textView,
-                        textToSpeech);
-                imageAnalyzer.setAnalyzer(executor, faceDetectorAnalyzer);
+        preview.setSurfaceProvider(previewView.getSurfaceProvider());
 
-                // Default olarak arka kamerayı al
-                CameraSelector cameraSelector = CameraSelector.DEFAULT_BACK_CAMERA;
+        // ImageAnalyzer use case builder; çözünürlük tespit profilinden
+        imageAnalyzer = buildImageAnalysis(detectionProfile);
 
-                // unbind before rebind (pop before push gibi)
-                cameraProvider.unbindAll();
+        // https://stackoverflow.com/questions/58373986/takepicture-require-executor-on-camerax-1-0-0-alpha06
+        // Sadece frame kabulü; tespit, ön işleme ve sınıflandırma analyzer'ın aşama thread'lerinde
+        analysisExecutor = Executors.newSingleThreadExecutor();
+        faceDetectorAnalyzer = new FaceDetectorAnalyzer(
+                faceDetector,
+                modelLoader,
+                this,
+                imageView,
+                textView,
+                textToSpeech);
+        faceDetectorAnalyzer.setResolutionController(resolutionController);
+        imageAnalyzer.setAnalyzer(analysisExecutor, faceDetectorAnalyzer);
 
-                // bind uses cases (owner, cameraselector, usecase, usecase, usecase)
-                cameraProvider.bindToLifecycle(MainActivity.this, cameraSelector, preview, imageAnalyzer);
+        // Default olarak arka kamerayı al (cameraSelector)
 
-            } catch (InterruptedException | ExecutionException e) {
-               Log.e(TAG, "Lifecycle bind failed", e);
-            }
+        // unbind before rebind (pop before push gibi)
+        cameraProvider.unbindAll();
 
-        }, ContextCompat.getMainExecutor(this));
+        // bind uses cases (owner, cameraselector, usecase, usecase, usecase)
+        cameraProvider.bindToLifecycle(MainActivity.this, cameraSelector, preview, imageAnalyzer);
     }
 
-    private void checkCameraPermission(){
+    private void checkCameraPermission(StartupOrchestrator.Callback callback){
         if(ActivityCompat.checkSelfPermission(MainActivity.this, Manifest.permission.CAMERA) != PackageManager.PERMISSION_GRANTED){
+            // Adım kullanıcı cevap verince biter
+            permissionCallback = callback;
             ActivityCompat.requestPermissions(MainActivity.this, CAMERA_PERMISSION, CAMERA_PERMISSION_CODE);
         } else{
-            startCamera();
+            callback.done();
         }
     }
 
     @Override
     public void onRequestPermissionsResult(int requestCode, @NonNull String[] permissions, @NonNull int[] grantResults) {
         super.onRequestPermissionsResult(requestCode, permissions, grantResults);
-        if(requestCode == CAMERA_PERMISSION_CODE){
+        if(requestCode == CAMERA_PERMISSION_CODE && permissionCallback != null){
             if(grantResults.length > 0 && grantResults[0] == PackageManager.PERMISSION_GRANTED){
-                startCamera();
+                permissionCallback.done();
             }
             else{
                 Toast.makeText(this, "Kullanıcı kameraya izin vermedi.", Toast.LENGTH_SHORT).show();
+                permissionCallback.failed(new SecurityException("Camera permission denied"));
             }
+            permissionCallback = null;
+        }
+    }
+
+    @Override
+    protected void onStart() {
+        super.onStart();
+        // Kamera yeniden çalışacak, ölçüm sürüyorsa sonuçları artık güvenilmez
+        cancelTuning();
+    }
+
+    @Override
+    protected void onStop() {
+        super.onStop();
+        // Kamera lifecycle ile durdu, analiz hattı boşta; ölçüm şimdi yapılırsa çekişme olmaz
+        if(!isFinishing() && !isChangingConfigurations() && sessionLoader.needsTuning()){
+            tuning = tuningService.submit(new Runnable() {
+                @Override
+                public void run() {
+                    sessionLoader.tuneForNextStart();
+                }
+            });
+        }
+    }
+
+    /** Stops a running backend and thread measurement; it saves nothing and runs again on the next stop. */
+    private void cancelTuning(){
+        if(tuning != null){
+            tuning.cancel(true);
+            tuning = null;
         }
     }
 
     @Override
     protected void onDestroy() {
+        cancelTuning();
+        tuningService.shutdownNow();
+        if(startupService != null){
+            startupService.shutdown();
+        }
+        if(faceDetectorAnalyzer != null){
+            faceDetectorAnalyzer.close();
+        } else if(modelLoader != null){
+            // Kamera hiç açılmadıysa model analyzer'a verilmedi
+            modelLoader.close();
+        }
+        if(analysisExecutor != null){
+            imageAnalyzer.clearAnalyzer();
+            analysisExecutor.shutdown();
+        }
         if(textToSpeech != null){
             textToSpeech.stop();
             textToSpeech.shutdown();
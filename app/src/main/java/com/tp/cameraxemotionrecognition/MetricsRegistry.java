@@ -0,0 +1,252 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Latency histograms, counters and gauges of the analysis pipeline.
+ *
+ * <p>Metrics are created by name once, at setup, and the hot path keeps the returned objects:
+ * {@link Histogram#record}, {@link Counter#increment} and {@link Counter#add} only update atomics in
+ * place and allocate nothing, so measuring doesn't change what is measured. They may be called from
+ * any thread. {@link #snapshot()} copies every value into a {@link Snapshot}, which can be shown,
+ * logged or appended to a file as one JSON line by {@link #dump}.
+ *
+ * <p>Histograms bucket microseconds on a log scale with 4 buckets per power of two, so
+ * percentiles are accurate to about 20%, from 1 us to about an hour.
+ */
+public class MetricsRegistry {
+
+    /** Value read when a snapshot is taken, e.g. a queue depth. */
+    public interface Gauge {
+        long getValue();
+    }
+
+    public static class Counter {
+        private final AtomicLong value = new AtomicLong();
+
+        public void increment() {
+            value.incrementAndGet();
+        }
+
+        public void add(long delta) {
+            value.addAndGet(delta);
+        }
+
+        public long get() {
+            return value.get();
+        }
+    }
+
+    public static class Histogram {
+        // Values below this many microseconds get a bucket each.
+        private static final int LINEAR = 4;
+        static final int BUCKETS = 128;
+
+        private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong sumNanos = new AtomicLong();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        /** Records one duration. */
+        public void record(long nanos) {
+            if (nanos < 0) {
+                nanos = 0;
+            }
+            counts.incrementAndGet(bucket(nanos / 1000));
+            count.incrementAndGet();
+            sumNanos.addAndGet(nanos);
+            long max = maxNanos.get();
+            while (nanos > max && !maxNanos.compareAndSet(max, nanos)) {
+                max = maxNanos.get();
+            }
+        }
+
+        /** Records the time from {@code startNanos} to {@code endNanos}, both from the same clock. */
+        public void record(long startNanos, long endNanos) {
+            record(endNanos - startNanos);
+        }
+
+        static int bucket(long micros) {
+            if (micros < LINEAR) {
+                return (int) micros;
+            }
+            int exponent = 63 - Long.numberOfLeadingZeros(micros);
+            int sub = (int) (micros >> (exponent - 2)) - 4;
+            return Math.min(BUCKETS - 1, LINEAR + (exponent - 2) * 4 + sub);
+        }
+
+        /** Smallest value in microseconds that falls in the bucket after {@code bucket}. */
+        static long bucketUpperBound(int bucket) {
+            if (bucket < LINEAR) {
+                return bucket + 1;
+            }
+            int exponent = (bucket - LINEAR) / 4 + 2;
+            int sub = (bucket - LINEAR) % 4;
+            return (long) (5 + sub) << (exponent - 2);
+        }
+    }
+
+    /** Summary of one histogram at snapshot time. Percentiles are bucket upper bounds. */
+    public static class HistogramSnapshot {
+        public final long count;
+        public final long meanMicros;
+        public final long p50Micros;
+        public final long p90Micros;
+        public final long p99Micros;
+        public final long maxMicros;
+
+        HistogramSnapshot(Histogram histogram) {
+            long[] counts = new long[Histogram.BUCKETS];
+            long total = 0;
+            for (int i = 0; i < counts.length; i++) {
+                counts[i] = histogram.counts.get(i);
+                total += counts[i];
+            }
+            count = total;
+            meanMicros = total == 0 ? 0 : histogram.sumNanos.get() / total / 1000;
+            p50Micros = percentile(counts, total, 0.5);
+            p90Micros = percentile(counts, total, 0.9);
+            p99Micros = percentile(counts, total, 0.99);
+            maxMicros = histogram.maxNanos.get() / 1000;
+        }
+
+        private static long percentile(long[] counts, long total, double fraction) {
+            if (total == 0) {
+                return 0;
+            }
+            long rank = (long) Math.ceil(fraction * total);
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Histogram.bucketUpperBound(i);
+                }
+            }
+            return Histogram.bucketUpperBound(counts.length - 1);
+        }
+    }
+
+    /** Values of every metric at one point in time, in registration order. */
+    public static class Snapshot {
+        public final long timeMillis;
+        public final Map<String, Long> counters = new LinkedHashMap<>();
+        public final Map<String, Long> gauges = new LinkedHashMap<>();
+        public final Map<String, HistogramSnapshot> histograms = new LinkedHashMap<>();
+
+        Snapshot(long timeMillis) {
+            this.timeMillis = timeMillis;
+        }
+
+        /** One line of JSON; latencies are in microseconds. */
+        public String toJson() {
+            StringBuilder json = new StringBuilder();
+            json.append("{\"time_ms\":").append(timeMillis);
+            appendValues(json, "counters", counters);
+            appendValues(json, "gauges", gauges);
+            json.append(",\"histograms\":{");
+            boolean first = true;
+            for (Map.Entry<String, HistogramSnapshot> entry : histograms.entrySet()) {
+                HistogramSnapshot h = entry.getValue();
+                json.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":{")
+                        .append("\"count\":").append(h.count)
+                        .append(",\"mean_us\":").append(h.meanMicros)
+                        .append(",\"p50_us\":").append(h.p50Micros)
+                        .append(",\"p90_us\":").append(h.p90Micros)
+                        .append(",\"p99_us\":").append(h.p99Micros)
+                        .append(",\"max_us\":").append(h.maxMicros)
+                        .append('}');
+                first = false;
+            }
+            return json.append("}}").toString();
+        }
+
+        private static void appendValues(StringBuilder json, String name, Map<String, Long> values) {
+            json.append(",\"").append(name).append("\":{");
+            boolean first = true;
+            for (Map.Entry<String, Long> entry : values.entrySet()) {
+                json.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":").append(entry.getValue());
+                first = false;
+            }
+            json.append('}');
+        }
+    }
+
+    private final Map<String, Counter> counters = new LinkedHashMap<>();
+    private final Map<String, Gauge> gauges = new LinkedHashMap<>();
+    private final Map<String, Histogram> histograms = new LinkedHashMap<>();
+
+    /** Returns the counter called {@code name}, creating it on first use. */
+    public synchronized Counter counter(String name) {
+        Counter counter = counters.get(name);
+        if (counter == null) {
+            counter = new Counter();
+            counters.put(name, counter);
+        }
+        return counter;
+    }
+
+    /** Returns the histogram called {@code name}, creating it on first use. */
+    public synchronized Histogram histogram(String name) {
+        Histogram histogram = histograms.get(name);
+        if (histogram == null) {
+            histogram = new Histogram();
+            histograms.put(name, histogram);
+        }
+        return histogram;
+    }
+
+    /** Registers {@code gauge} under {@code name}, replacing any gauge of that name. */
+    public synchronized void gauge(String name, Gauge gauge) {
+        gauges.put(name, gauge);
+    }
+
+    public synchronized List<String> getHistogramNames() {
+        return Collections.unmodifiableList(new ArrayList<>(histograms.keySet()));
+    }
+
+    public synchronized Snapshot snapshot() {
+        Snapshot snapshot = new Snapshot(System.currentTimeMillis());
+        for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+            snapshot.counters.put(entry.getKey(), entry.getValue().get());
+        }
+        for (Map.Entry<String, Gauge> entry : gauges.entrySet()) {
+            snapshot.gauges.put(entry.getKey(), entry.getValue().getValue());
+        }
+        for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+            snapshot.histograms.put(entry.getKey(), new HistogramSnapshot(entry.getValue()));
+        }
+        return snapshot;
+    }
+
+    /**
+     * Appends a snapshot to {@code file} as one JSON line. When the file has grown past
+     * {@code maxBytes} it is moved to {@code <name>.1} first, so at most two files are kept.
+     */
+    public Snapshot dump(File file, long maxBytes) throws IOException {
+        if (file.length() > maxBytes) {
+            File previous = new File(file.getPath() + ".1");
+            if ((previous.exists() && !previous.delete()) || !file.renameTo(previous)) {
+                throw new IOException("Could not rotate " + file);
+            }
+        }
+        Snapshot snapshot = snapshot();
+        Writer writer = new FileWriter(file, true);
+        try {
+            writer.write(snapshot.toJson());
+            writer.write('\n');
+        } finally {
+            writer.close();
+        }
+        return snapshot;
+    }
+}
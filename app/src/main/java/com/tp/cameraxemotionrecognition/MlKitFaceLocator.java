@@ -0,0 +1,90 @@
+package com.tp.cameraxemotionrecognition;
+
+import android.graphics.Bitmap;
+import android.graphics.Rect;
+
+import com.google.android.gms.tasks.Tasks;
+import com.google.mlkit.vision.common.InputImage;
+import com.google.mlkit.vision.face.Face;
+import com.google.mlkit.vision.face.FaceDetection;
+import com.google.mlkit.vision.face.FaceDetector;
+import com.google.mlkit.vision.face.FaceDetectorOptions;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+
+/**
+ * ML Kit face detection for {@link BatchClassifier}. Offline there is no frame deadline, so it
+ * uses the accurate mode, and no tracking since frames may be far apart.
+ *
+ * <p>A single detector runs one image at a time on its own executor, which would serialize the
+ * batch workers on detection, the slowest stage. So each worker thread gets a detector of its
+ * own that runs on the calling thread; {@link #close()} closes all of them once the workers are
+ * done.
+ */
+public class MlKitFaceLocator implements BatchClassifier.FaceLocator, Closeable {
+    // Tespit çağıran worker thread'inde çalışır, Tasks.await zaten onu bekliyor
+    private static final Executor CALLER_EXECUTOR = new Executor() {
+        @Override
+        public void execute(Runnable command) {
+            command.run();
+        }
+    };
+
+    // Guarded by itself
+    private final List<FaceDetector> detectors = new ArrayList<>();
+    private final ThreadLocal<FaceDetector> threadDetector = new ThreadLocal<FaceDetector>() {
+        @Override
+        protected FaceDetector initialValue() {
+            FaceDetector detector = FaceDetection.getClient(new FaceDetectorOptions.Builder()
+                    .setPerformanceMode(FaceDetectorOptions.PERFORMANCE_MODE_ACCURATE)
+                    .setExecutor(CALLER_EXECUTOR)
+                    .build());
+            synchronized (detectors) {
+                detectors.add(detector);
+            }
+            return detector;
+        }
+    };
+
+    @Override
+    public int[] locate(ArgbFrame frame) throws IOException {
+        Bitmap bitmap = Bitmap.createBitmap(frame.getPixels(), frame.getWidth(), frame.getHeight(),
+                Bitmap.Config.ARGB_8888);
+        List<Face> faces;
+        try {
+            faces = Tasks.await(threadDetector.get().process(InputImage.fromBitmap(bitmap, 0)));
+        } catch (ExecutionException e) {
+            throw new IOException("Face detection failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted", e);
+        } finally {
+            bitmap.recycle();
+        }
+        int[] rects = new int[faces.size() * 4];
+        for (int i = 0; i < faces.size(); i++) {
+            Rect box = faces.get(i).getBoundingBox();
+            rects[4 * i] = box.left;
+            rects[4 * i + 1] = box.top;
+            rects[4 * i + 2] = box.right;
+            rects[4 * i + 3] = box.bottom;
+        }
+        return rects;
+    }
+
+    /** Closes the detectors of all threads; call it only after the last {@link #locate} returned. */
+    @Override
+    public void close() {
+        synchronized (detectors) {
+            for (FaceDetector detector : detectors) {
+                detector.close();
+            }
+            detectors.clear();
+        }
+    }
+}
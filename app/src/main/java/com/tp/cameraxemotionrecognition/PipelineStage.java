@@ -0,0 +1,211 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.Executor;
+
+/**
+ * One step of the analysis pipeline: a bounded queue drained in order on its own executor.
+ *
+ * <p>When the queue is full, {@link #offer} drops the oldest waiting item rather than blocking or
+ * rejecting the new one, so a slow stage works on the freshest frames and never holds up the
+ * stage before it. Dropped items, and items offered after {@link #close()}, go to the drop
+ * listener, which must release whatever they hold. At most one item is processed at a time.
+ *
+ * <p>Each stage reports its queue depth and its occupancy, the fraction of wall time it spent
+ * processing since the last {@link #resetStats()}. A stage close to 100% is the bottleneck.
+ * {@code offer} and the getters may be called from any thread.
+ */
+public class PipelineStage<T> {
+
+    /** Work of the stage; usually hands the item to the next stage. */
+    public interface Handler<T> {
+        void process(T item);
+    }
+
+    /** Releases an item that will not be processed. */
+    public interface DropListener<T> {
+        void onDropped(T item);
+    }
+
+    private final String name;
+    private final int capacity;
+    private final Executor executor;
+    private final Handler<T> handler;
+    private final DropListener<T> dropListener;
+    private final FrameScheduler.Clock clock;
+    private final ArrayDeque<T> queue;
+    private final Runnable drain = new Runnable() {
+        @Override
+        public void run() {
+            drain();
+        }
+    };
+
+    // Guarded by this
+    private boolean draining;
+    private boolean closed;
+    private long offered;
+    private long processed;
+    private long dropped;
+    private int maxDepth;
+    private long busyNanos;
+    private long busySinceNanos = -1;
+    private long statsStartNanos;
+
+    public PipelineStage(String name, int capacity, Executor executor, Handler<T> handler,
+                         DropListener<T> dropListener, FrameScheduler.Clock clock) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be at least 1");
+        }
+        this.name = name;
+        this.capacity = capacity;
+        this.executor = executor;
+        this.handler = handler;
+        this.dropListener = dropListener;
+        this.clock = clock;
+        this.queue = new ArrayDeque<>(capacity);
+        this.statsStartNanos = clock.nanoTime();
+    }
+
+    /** Queues {@code item}, dropping the oldest waiting item if the queue is full. */
+    public void offer(T item) {
+        T drop = null;
+        boolean schedule = false;
+        synchronized (this) {
+            if (closed) {
+                drop = item;
+            } else {
+                offered++;
+                if (queue.size() == capacity) {
+                    drop = queue.pollFirst();
+                    dropped++;
+                }
+                queue.addLast(item);
+                maxDepth = Math.max(maxDepth, queue.size());
+                if (!draining) {
+                    draining = true;
+                    schedule = true;
+                }
+            }
+        }
+        // Dinleyici kilit dışında çağrılır, frame kapatma işi kuyruğu bekletmesin
+        if (drop != null) {
+            dropListener.onDropped(drop);
+        }
+        if (schedule) {
+            executor.execute(drain);
+        }
+    }
+
+    private void drain() {
+        boolean emptied = false;
+        try {
+            while (true) {
+                T item;
+                synchronized (this) {
+                    item = queue.pollFirst();
+                    if (item == null) {
+                        draining = false;
+                        emptied = true;
+                        return;
+                    }
+                    busySinceNanos = clock.nanoTime();
+                }
+                try {
+                    handler.process(item);
+                } finally {
+                    synchronized (this) {
+                        busyNanos += clock.nanoTime() - busySinceNanos;
+                        busySinceNanos = -1;
+                        processed++;
+                    }
+                }
+            }
+        } finally {
+            if (!emptied) {
+                // The handler threw; let the next item run on a fresh task.
+                boolean reschedule;
+                synchronized (this) {
+                    reschedule = !queue.isEmpty();
+                    draining = reschedule;
+                }
+                if (reschedule) {
+                    executor.execute(drain);
+                }
+            }
+        }
+    }
+
+    /**
+     * Stops accepting items and drops the waiting ones. An item being processed finishes
+     * normally; whatever it offers to a closed stage is dropped there.
+     */
+    public void close() {
+        ArrayDeque<T> waiting;
+        synchronized (this) {
+            closed = true;
+            waiting = new ArrayDeque<>(queue);
+            dropped += queue.size();
+            queue.clear();
+        }
+        for (T item : waiting) {
+            dropListener.onDropped(item);
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /** Items waiting, not counting the one being processed. */
+    public synchronized int getQueueDepth() {
+        return queue.size();
+    }
+
+    /** Largest queue depth since the last {@link #resetStats()}. */
+    public synchronized int getMaxQueueDepth() {
+        return maxDepth;
+    }
+
+    public synchronized long getOfferedCount() {
+        return offered;
+    }
+
+    public synchronized long getProcessedCount() {
+        return processed;
+    }
+
+    /** Items dropped because the queue was full or the stage closed. */
+    public synchronized long getDroppedCount() {
+        return dropped;
+    }
+
+    /** Fraction of the time since the last {@link #resetStats()} spent processing, 0 to 1. */
+    public synchronized float getOccupancy() {
+        long now = clock.nanoTime();
+        long busy = busyNanos + (busySinceNanos >= 0 ? now - busySinceNanos : 0);
+        long elapsed = now - statsStartNanos;
+        return elapsed <= 0 ? 0f : Math.min(1f, (float) busy / elapsed);
+    }
+
+    /** Starts a new window for the max queue depth and occupancy. Counts are kept. */
+    public synchronized void resetStats() {
+        long now = clock.nanoTime();
+        statsStartNanos = now;
+        busyNanos = 0;
+        if (busySinceNanos >= 0) {
+            busySinceNanos = now;
+        }
+        maxDepth = queue.size();
+    }
+
+    @Override
+    public synchronized String toString() {
+        return name + " " + queue.size() + "/" + capacity + " (max " + maxDepth + "), busy "
+                + Math.round(getOccupancy() * 100) + "%, dropped " + dropped + "/" + offered;
+    }
+}
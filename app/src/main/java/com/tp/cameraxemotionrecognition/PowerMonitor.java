@@ -0,0 +1,113 @@
+package com.tp.cameraxemotionrecognition;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.os.BatteryManager;
+import android.os.Build;
+import android.os.PowerManager;
+import android.util.Log;
+
+import androidx.annotation.NonNull;
+import androidx.annotation.RequiresApi;
+
+/**
+ * Feeds thermal status, battery saver and low battery changes into a {@link ThreadBudget} and
+ * calls {@code onChange} after each one, on the main thread. Thermal status needs API 29; older
+ * devices only report the battery signals.
+ */
+public class PowerMonitor {
+    private static final String TAG = "PowerMonitor";
+    // ACTION_BATTERY_LOW is sent at this level on most devices.
+    private static final int LOW_BATTERY_PERCENT = 15;
+
+    private final Context context;
+    private final ThreadBudget budget;
+    private final Runnable onChange;
+    private final PowerManager powerManager;
+    private final BroadcastReceiver receiver = new BroadcastReceiver() {
+        @Override
+        public void onReceive(Context context, Intent intent) {
+            String action = intent.getAction();
+            if (PowerManager.ACTION_POWER_SAVE_MODE_CHANGED.equals(action)) {
+                budget.setPowerSave(powerManager.isPowerSaveMode());
+            } else if (Intent.ACTION_BATTERY_LOW.equals(action)) {
+                budget.setBatteryLow(true);
+            } else if (Intent.ACTION_BATTERY_OKAY.equals(action)) {
+                budget.setBatteryLow(false);
+            } else {
+                return;
+            }
+            changed(action);
+        }
+    };
+    private Object thermalListener;
+    private boolean started;
+
+    public PowerMonitor(Context context, ThreadBudget budget, Runnable onChange) {
+        this.context = context.getApplicationContext();
+        this.budget = budget;
+        this.onChange = onChange;
+        this.powerManager = (PowerManager) this.context.getSystemService(Context.POWER_SERVICE);
+    }
+
+    /** Reads the current state into the budget and starts listening. */
+    public void start() {
+        if (started) {
+            return;
+        }
+        started = true;
+        budget.setPowerSave(powerManager.isPowerSaveMode());
+        BatteryManager batteryManager = (BatteryManager) context.getSystemService(Context.BATTERY_SERVICE);
+        int percent = batteryManager.getIntProperty(BatteryManager.BATTERY_PROPERTY_CAPACITY);
+        // Pil şarjda olsa bile düşükse kısılır, BATTERY_OKAY gelene kadar
+        budget.setBatteryLow(percent > 0 && percent <= LOW_BATTERY_PERCENT);
+
+        IntentFilter filter = new IntentFilter();
+        filter.addAction(PowerManager.ACTION_POWER_SAVE_MODE_CHANGED);
+        filter.addAction(Intent.ACTION_BATTERY_LOW);
+        filter.addAction(Intent.ACTION_BATTERY_OKAY);
+        context.registerReceiver(receiver, filter);
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            startThermal();
+        }
+        changed("start");
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void startThermal() {
+        budget.setThermalStatus(powerManager.getCurrentThermalStatus());
+        PowerManager.OnThermalStatusChangedListener listener = new PowerManager.OnThermalStatusChangedListener() {
+            @Override
+            public void onThermalStatusChanged(int status) {
+                budget.setThermalStatus(status);
+                changed("thermal");
+            }
+        };
+        powerManager.addThermalStatusListener(listener);
+        thermalListener = listener;
+    }
+
+    public void stop() {
+        if (!started) {
+            return;
+        }
+        started = false;
+        context.unregisterReceiver(receiver);
+        if (thermalListener != null && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            stopThermal();
+        }
+    }
+
+    @RequiresApi(Build.VERSION_CODES.Q)
+    private void stopThermal() {
+        powerManager.removeThermalStatusListener((PowerManager.OnThermalStatusChangedListener) thermalListener);
+        thermalListener = null;
+    }
+
+    private void changed(@NonNull String reason) {
+        Log.d(TAG, reason + ": " + budget);
+        onChange.run();
+    }
+}
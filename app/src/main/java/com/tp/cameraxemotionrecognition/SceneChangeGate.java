@@ -0,0 +1,225 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Skips detection and classification for frames that look like the last analyzed one.
+ *
+ * <p>Each frame is reduced to a signature: a small grid of mean luma values sampled straight from
+ * the Y plane, about 7000 reads with the default 32x24 grid and 3x3 samples per cell instead of a
+ * full conversion. A frame is analyzed when enough
+ * grid cells differ from the signature of the last analyzed frame, after removing the change in
+ * mean brightness so auto exposure alone doesn't count as motion. Otherwise it is skipped, unless
+ * the refresh interval has passed since the last analyzed frame; the interval is shorter while the
+ * last analysis found faces, since expressions change without much motion.
+ *
+ * <p>Compared against the last analyzed frame rather than the previous one, slow drift such as
+ * daylight still adds up to a change at some point. Thread safe.
+ */
+public class SceneChangeGate {
+    private final int columns;
+    private final int rows;
+    private final int samplesPerCell;
+    private final int cellThreshold;
+    private final int minChangedCells;
+    private final long facesRefreshNanos;
+    private final long emptyRefreshNanos;
+    private final FrameScheduler.Clock clock;
+
+    // Guarded by this
+    private int[] reference;
+    private int[] signature;
+    private int referenceWidth;
+    private int referenceHeight;
+    private long lastAnalyzedNanos;
+    private boolean facesPresent = true;
+    private int lastChangedCells;
+    private long analyzed;
+    private long unchanged;
+
+    private SceneChangeGate(Builder builder) {
+        this.columns = builder.columns;
+        this.rows = builder.rows;
+        this.samplesPerCell = builder.samplesPerCell;
+        this.cellThreshold = builder.cellThreshold;
+        this.minChangedCells = builder.minChangedCells;
+        this.facesRefreshNanos = builder.facesRefreshMs * 1_000_000L;
+        this.emptyRefreshNanos = builder.emptyRefreshMs * 1_000_000L;
+        this.clock = builder.clock;
+        this.signature = new int[columns * rows];
+    }
+
+    /**
+     * Decides whether a frame should be analyzed. If so, its signature becomes the reference the
+     * next frames are compared with.
+     *
+     * @param yPlane luma plane of the frame
+     * @param width  frame width in pixels, in sensor orientation
+     * @param height frame height in pixels, in sensor orientation
+     */
+    public synchronized boolean shouldAnalyze(YuvPlane yPlane, int width, int height) {
+        computeSignature(yPlane, width, height, columns, rows, samplesPerCell, signature);
+        long now = clock.nanoTime();
+        boolean analyze;
+        if (reference == null || width != referenceWidth || height != referenceHeight) {
+            // İlk frame veya çözünürlük değişti, karşılaştırılacak bir şey yok
+            lastChangedCells = signature.length;
+            analyze = true;
+        } else {
+            lastChangedCells = countChangedCells(reference, signature, cellThreshold);
+            analyze = lastChangedCells >= minChangedCells
+                    || now - lastAnalyzedNanos >= (facesPresent ? facesRefreshNanos : emptyRefreshNanos);
+        }
+        if (!analyze) {
+            unchanged++;
+            return false;
+        }
+        int[] previous = reference;
+        reference = signature;
+        signature = previous != null ? previous : new int[columns * rows];
+        referenceWidth = width;
+        referenceHeight = height;
+        lastAnalyzedNanos = now;
+        analyzed++;
+        return true;
+    }
+
+    /** Reports whether the last analyzed frame had faces, which picks the refresh interval. */
+    public synchronized void setFacesPresent(boolean facesPresent) {
+        this.facesPresent = facesPresent;
+    }
+
+    /** Forgets the reference so the next frame is analyzed. */
+    public synchronized void reset() {
+        reference = null;
+    }
+
+    /** Cells that differed in the last frame checked. */
+    public synchronized int getLastChangedCells() {
+        return lastChangedCells;
+    }
+
+    public synchronized long getAnalyzedCount() {
+        return analyzed;
+    }
+
+    /** Frames skipped as unchanged so far. */
+    public synchronized long getUnchangedCount() {
+        return unchanged;
+    }
+
+    /**
+     * Writes the mean luma of each cell of a {@code columns} by {@code rows} grid over the plane to
+     * {@code out}, from {@code samplesPerCell} by {@code samplesPerCell} evenly spread samples per
+     * cell.
+     */
+    static void computeSignature(YuvPlane yPlane, int width, int height, int columns, int rows,
+                                 int samplesPerCell, int[] out) {
+        ByteBuffer buffer = yPlane.getBuffer();
+        int rowStride = yPlane.getRowStride();
+        int pixelStride = yPlane.getPixelStride();
+        int samplesX = columns * samplesPerCell;
+        int samplesY = rows * samplesPerCell;
+        int samples = samplesPerCell * samplesPerCell;
+        for (int i = 0; i < out.length; i++) {
+            out[i] = 0;
+        }
+        for (int sy = 0; sy < samplesY; sy++) {
+            // Örnek noktaları hücre merkezlerine yayılır, kenar pikselleri okunmaz
+            int y = (int) ((sy + 0.5f) * height / samplesY);
+            int rowOffset = y * rowStride;
+            int cellRow = (sy / samplesPerCell) * columns;
+            for (int sx = 0; sx < samplesX; sx++) {
+                int x = (int) ((sx + 0.5f) * width / samplesX);
+                out[cellRow + sx / samplesPerCell] += buffer.get(rowOffset + x * pixelStride) & 0xFF;
+            }
+        }
+        for (int i = 0; i < out.length; i++) {
+            out[i] /= samples;
+        }
+    }
+
+    /**
+     * Counts the cells whose luma moved more than {@code threshold} from {@code reference}, after
+     * subtracting the mean change over all cells.
+     */
+    static int countChangedCells(int[] reference, int[] signature, int threshold) {
+        long shift = 0;
+        for (int i = 0; i < signature.length; i++) {
+            shift += signature[i] - reference[i];
+        }
+        int meanShift = (int) (shift / signature.length);
+        int changed = 0;
+        for (int i = 0; i < signature.length; i++) {
+            if (Math.abs(signature[i] - reference[i] - meanShift) > threshold) {
+                changed++;
+            }
+        }
+        return changed;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return "analyzed " + analyzed + ", unchanged " + unchanged + ", last change " + lastChangedCells
+                + "/" + signature.length + " cells";
+    }
+
+    public static class Builder {
+        private int columns = 32;
+        private int rows = 24;
+        private int samplesPerCell = 3;
+        private int cellThreshold = 12;
+        private int minChangedCells = 4;
+        private long facesRefreshMs = 1000;
+        private long emptyRefreshMs = 3000;
+        private FrameScheduler.Clock clock = FrameScheduler.SYSTEM_CLOCK;
+
+        /** Size of the signature grid; a 20 px face at 640x480 still covers a cell of 32x24. */
+        public Builder setGrid(int columns, int rows) {
+            if (columns < 1 || rows < 1) {
+                throw new IllegalArgumentException("Grid must have at least one cell");
+            }
+            this.columns = columns;
+            this.rows = rows;
+            return this;
+        }
+
+        public Builder setSamplesPerCell(int samplesPerCell) {
+            this.samplesPerCell = Math.max(1, samplesPerCell);
+            return this;
+        }
+
+        /** Luma difference, out of 255, above which a cell counts as changed. */
+        public Builder setCellThreshold(int cellThreshold) {
+            this.cellThreshold = cellThreshold;
+            return this;
+        }
+
+        /** Changed cells needed to analyze a frame before its refresh interval. */
+        public Builder setMinChangedCells(int minChangedCells) {
+            this.minChangedCells = Math.max(1, minChangedCells);
+            return this;
+        }
+
+        /** Longest time without analysis while the last analyzed frame had faces. */
+        public Builder setFacesRefreshMs(long facesRefreshMs) {
+            this.facesRefreshMs = facesRefreshMs;
+            return this;
+        }
+
+        /** Longest time without analysis while the last analyzed frame had no faces. */
+        public Builder setEmptyRefreshMs(long emptyRefreshMs) {
+            this.emptyRefreshMs = emptyRefreshMs;
+            return this;
+        }
+
+        public Builder setClock(FrameScheduler.Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public SceneChangeGate build() {
+            return new SceneChangeGate(this);
+        }
+    }
+}
@@ -0,0 +1,299 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Runs the app's startup steps, e.g. camera provider, face detector, TTS binding and model
+ * loading, as a dependency graph: every step starts on its own executor as soon as the steps it
+ * depends on are done, so independent steps overlap instead of running one after another.
+ *
+ * <p>A step may finish asynchronously: it gets a {@link Callback} and calls {@link Callback#done()}
+ * whenever its work completes, e.g. from a camera future listener. A step that fails, or throws
+ * from {@link Step#start}, skips every step that depends on it. Each step leaves a {@link Span}
+ * with its start and end relative to {@link #start()}, which the listener can log or forward to a
+ * tracing tool.
+ */
+public class StartupOrchestrator {
+
+    /** Work of one step. */
+    public interface Step {
+        /** Starts the step; {@code callback} must be called once, now or later, from any thread. */
+        void start(Callback callback) throws Exception;
+    }
+
+    public interface Callback {
+        void done();
+
+        void failed(Throwable error);
+    }
+
+    /** Progress of the startup; called on whichever thread finished or started a step. */
+    public interface Listener {
+        void onStepStarted(String name);
+
+        void onStepFinished(Span span);
+
+        /** Every step is done, failed or skipped; {@code spans} are in finishing order. */
+        void onFinished(List<Span> spans);
+    }
+
+    /** Timing and outcome of one step. Times are nanoseconds since {@link #start()}. */
+    public static class Span {
+        public static final int DONE = 0;
+        public static final int FAILED = 1;
+        public static final int SKIPPED = 2;
+
+        public final String name;
+        public final long startNanos;
+        public final long endNanos;
+        public final int result;
+        /** Why the step failed, or null. */
+        public final Throwable error;
+
+        Span(String name, long startNanos, long endNanos, int result, Throwable error) {
+            this.name = name;
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+            this.result = result;
+            this.error = error;
+        }
+
+        public long getDurationMillis() {
+            return (endNanos - startNanos) / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            switch (result) {
+                case FAILED:
+                    return name + " failed at " + endNanos / 1_000_000 + " ms (" + error + ")";
+                case SKIPPED:
+                    return name + " skipped";
+                default:
+                    return name + " " + startNanos / 1_000_000 + "-" + endNanos / 1_000_000 + " ms";
+            }
+        }
+    }
+
+    private static class Node {
+        final String name;
+        final Executor executor;
+        final Step step;
+        final String[] dependsOn;
+        final List<Node> dependents = new ArrayList<>();
+        int pending;
+        long startNanos = -1;
+        boolean finished;
+
+        Node(String name, Executor executor, Step step, String[] dependsOn) {
+            this.name = name;
+            this.executor = executor;
+            this.step = step;
+            this.dependsOn = dependsOn;
+        }
+    }
+
+    private final FrameScheduler.Clock clock;
+    private final Listener listener;
+    // Guarded by this
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+    private final List<Span> spans = new ArrayList<>();
+    private long startNanos = -1;
+
+    public StartupOrchestrator(FrameScheduler.Clock clock, Listener listener) {
+        this.clock = clock;
+        this.listener = listener;
+    }
+
+    /**
+     * Adds a step that runs on {@code executor} once every step named in {@code dependsOn} is
+     * done. Steps may be added in any order, but only before {@link #start()}.
+     */
+    public synchronized StartupOrchestrator add(String name, Executor executor, Step step, String... dependsOn) {
+        if (startNanos >= 0) {
+            throw new IllegalStateException("Already started");
+        }
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate step " + name);
+        }
+        nodes.put(name, new Node(name, executor, step, dependsOn));
+        return this;
+    }
+
+    /**
+     * Checks the graph and starts every step without dependencies.
+     *
+     * @throws IllegalArgumentException if a step depends on an unknown step or on itself, directly
+     *                                  or through others
+     */
+    public void start() {
+        List<Node> ready = new ArrayList<>();
+        synchronized (this) {
+            if (startNanos >= 0) {
+                throw new IllegalStateException("Already started");
+            }
+            for (Node node : nodes.values()) {
+                for (String dependency : node.dependsOn) {
+                    if (!nodes.containsKey(dependency)) {
+                        throw new IllegalArgumentException(node.name + " depends on unknown step " + dependency);
+                    }
+                }
+            }
+            for (Node node : nodes.values()) {
+                for (String dependency : node.dependsOn) {
+                    nodes.get(dependency).dependents.add(node);
+                }
+                node.pending = node.dependsOn.length;
+            }
+            checkAcyclic();
+            startNanos = clock.nanoTime();
+            for (Node node : nodes.values()) {
+                if (node.pending == 0) {
+                    ready.add(node);
+                }
+            }
+        }
+        for (Node node : ready) {
+            schedule(node);
+        }
+        if (ready.isEmpty()) {
+            listener.onFinished(getSpans());
+        }
+    }
+
+    private void checkAcyclic() {
+        // Kahn: bağımlılıkları bitenler sırayla çıkarılır, kalan varsa döngü vardır
+        Map<Node, Integer> pending = new LinkedHashMap<>();
+        ArrayDeque<Node> free = new ArrayDeque<>();
+        for (Node node : nodes.values()) {
+            pending.put(node, node.pending);
+            if (node.pending == 0) {
+                free.add(node);
+            }
+        }
+        int visited = 0;
+        while (!free.isEmpty()) {
+            Node node = free.poll();
+            visited++;
+            for (Node dependent : node.dependents) {
+                int left = pending.get(dependent) - 1;
+                pending.put(dependent, left);
+                if (left == 0) {
+                    free.add(dependent);
+                }
+            }
+        }
+        if (visited != nodes.size()) {
+            for (Node node : nodes.values()) {
+                node.dependents.clear();
+            }
+            throw new IllegalArgumentException("Startup steps depend on each other in a cycle");
+        }
+    }
+
+    private void schedule(final Node node) {
+        node.executor.execute(new Runnable() {
+            @Override
+            public void run() {
+                synchronized (StartupOrchestrator.this) {
+                    node.startNanos = clock.nanoTime() - startNanos;
+                }
+                listener.onStepStarted(node.name);
+                Callback callback = new Callback() {
+                    @Override
+                    public void done() {
+                        finish(node, Span.DONE, null);
+                    }
+
+                    @Override
+                    public void failed(Throwable error) {
+                        finish(node, Span.FAILED, error);
+                    }
+                };
+                try {
+                    node.step.start(callback);
+                } catch (Exception e) {
+                    callback.failed(e);
+                }
+            }
+        });
+    }
+
+    private void finish(Node node, int result, Throwable error) {
+        List<Span> finished = new ArrayList<>();
+        List<Node> ready = new ArrayList<>();
+        boolean all;
+        synchronized (this) {
+            if (node.finished) {
+                return;
+            }
+            long now = clock.nanoTime() - startNanos;
+            finish(node, new Span(node.name, node.startNanos, now, result, error), finished);
+            for (Node dependent : node.dependents) {
+                if (result != Span.DONE) {
+                    skip(dependent, now, finished);
+                } else if (--dependent.pending == 0 && !dependent.finished) {
+                    ready.add(dependent);
+                }
+            }
+            all = spans.size() == nodes.size();
+        }
+        // Dinleyici ve sonraki adımlar kilit dışında çağrılır
+        for (Span span : finished) {
+            listener.onStepFinished(span);
+        }
+        for (Node next : ready) {
+            schedule(next);
+        }
+        if (all) {
+            listener.onFinished(getSpans());
+        }
+    }
+
+    private void finish(Node node, Span span, List<Span> finished) {
+        node.finished = true;
+        spans.add(span);
+        finished.add(span);
+    }
+
+    private void skip(Node node, long now, List<Span> finished) {
+        if (node.finished) {
+            return;
+        }
+        finish(node, new Span(node.name, now, now, Span.SKIPPED, null), finished);
+        for (Node dependent : node.dependents) {
+            skip(dependent, now, finished);
+        }
+    }
+
+    /** {@code spans} as one line of JSON, times in milliseconds since start. */
+    public static String toJson(long timeMillis, List<Span> spans) {
+        StringBuilder json = new StringBuilder();
+        json.append("{\"time_ms\":").append(timeMillis).append(",\"steps\":{");
+        for (int i = 0; i < spans.size(); i++) {
+            Span span = spans.get(i);
+            json.append(i == 0 ? "" : ",").append('"').append(span.name).append("\":{")
+                    .append("\"start_ms\":").append(span.startNanos / 1_000_000)
+                    .append(",\"end_ms\":").append(span.endNanos / 1_000_000)
+                    .append(",\"result\":\"")
+                    .append(span.result == Span.DONE ? "done" : span.result == Span.FAILED ? "failed" : "skipped")
+                    .append("\"}");
+        }
+        return json.append("}}").toString();
+    }
+
+    /** Spans of the steps finished so far, in finishing order. */
+    public synchronized List<Span> getSpans() {
+        return Collections.unmodifiableList(new ArrayList<>(spans));
+    }
+
+    public synchronized boolean isFinished() {
+        return startNanos >= 0 && spans.size() == nodes.size();
+    }
+}
@@ -0,0 +1,68 @@
+package com.tp.cameraxemotionrecognition;
+
+import android.os.Build;
+import android.os.Trace;
+import android.util.Log;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.List;
+
+/**
+ * Records the startup steps: every span goes to logcat and, from API 29 on, to the system trace
+ * as an async section, so a Perfetto capture shows the steps overlapping. When startup is over
+ * the whole trace is appended to a JSON lines file, one line per app start, to follow cold start
+ * time across restarts.
+ */
+public class StartupTrace implements StartupOrchestrator.Listener {
+    private static final String TAG = "StartupTrace";
+    private static final String SECTION_PREFIX = "startup:";
+    private static final long MAX_FILE_BYTES = 256 * 1024;
+
+    private final File file;
+
+    public StartupTrace(File file) {
+        this.file = file;
+    }
+
+    @Override
+    public void onStepStarted(String name) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            // Adım adları tekil, cookie olarak hash'leri yeterli
+            Trace.beginAsyncSection(SECTION_PREFIX + name, name.hashCode());
+        }
+    }
+
+    @Override
+    public void onStepFinished(StartupOrchestrator.Span span) {
+        if (span.result != StartupOrchestrator.Span.SKIPPED && Build.VERSION.SDK_INT >= Build.VERSION_CODES.Q) {
+            Trace.endAsyncSection(SECTION_PREFIX + span.name, span.name.hashCode());
+        }
+        if (span.result == StartupOrchestrator.Span.FAILED) {
+            Log.w(TAG, "step " + span, span.error);
+        } else {
+            Log.d(TAG, "step " + span);
+        }
+    }
+
+    @Override
+    public void onFinished(List<StartupOrchestrator.Span> spans) {
+        Log.i(TAG, "startup: " + spans);
+        if (file.length() > MAX_FILE_BYTES && !file.delete()) {
+            Log.w(TAG, "Could not delete " + file);
+        }
+        try {
+            Writer writer = new FileWriter(file, true);
+            try {
+                writer.write(StartupOrchestrator.toJson(System.currentTimeMillis(), spans));
+                writer.write('\n');
+            } finally {
+                writer.close();
+            }
+        } catch (IOException e) {
+            Log.e(TAG, "onFinished: ", e);
+        }
+    }
+}
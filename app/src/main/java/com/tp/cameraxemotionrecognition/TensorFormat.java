@@ -0,0 +1,101 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Element type and quantization of a model input or output tensor.
+ *
+ * <p>Float models take RGB values in [0, 255] as 4 byte floats. Quantized models take one byte per
+ * channel, {@code q = round(value / scale) + zeroPoint}, so the input builders write bytes directly
+ * through a 256 entry lookup table instead of converting every channel to a float. Output bytes are
+ * turned back into confidences with {@link #dequantize}.
+ */
+public class TensorFormat {
+    public static final int FLOAT32 = 0;
+    public static final int UINT8 = 1;
+    public static final int INT8 = 2;
+
+    /** Float tensor, the format of the original model. */
+    public static final TensorFormat FLOAT = new TensorFormat(FLOAT32, 1f, 0);
+
+    private final int type;
+    private final float scale;
+    private final int zeroPoint;
+    private final byte[] quantized;
+
+    private TensorFormat(int type, float scale, int zeroPoint) {
+        this.type = type;
+        this.scale = scale;
+        this.zeroPoint = zeroPoint;
+        if (type == FLOAT32) {
+            quantized = null;
+            return;
+        }
+        int min = type == UINT8 ? 0 : -128;
+        int max = type == UINT8 ? 255 : 127;
+        quantized = new byte[256];
+        for (int value = 0; value < 256; value++) {
+            int q = Math.round(value / scale) + zeroPoint;
+            quantized[value] = (byte) Math.max(min, Math.min(max, q));
+        }
+    }
+
+    /**
+     * Quantized {@code UINT8} or {@code INT8} tensor. A scale of 0, which converters write when a
+     * tensor has no quantization parameters, is treated as raw values with scale 1.
+     */
+    public static TensorFormat quantized(int type, float scale, int zeroPoint) {
+        if (type != UINT8 && type != INT8) {
+            throw new IllegalArgumentException("Not a quantized type: " + type);
+        }
+        return scale == 0f ? new TensorFormat(type, 1f, 0) : new TensorFormat(type, scale, zeroPoint);
+    }
+
+    public int getType() {
+        return type;
+    }
+
+    public boolean isQuantized() {
+        return type != FLOAT32;
+    }
+
+    public float getScale() {
+        return scale;
+    }
+
+    public int getZeroPoint() {
+        return zeroPoint;
+    }
+
+    public int getBytesPerChannel() {
+        return type == FLOAT32 ? 4 : 1;
+    }
+
+    /** Writes one channel value in [0, 255] at the current position of {@code out}. */
+    public void put(ByteBuffer out, int value) {
+        if (quantized == null) {
+            out.putFloat(value);
+        } else {
+            out.put(quantized[value]);
+        }
+    }
+
+    /** Reads channel {@code index} of {@code tensor} back as a value in [0, 255], e.g. for previews. */
+    public int get(ByteBuffer tensor, int index) {
+        float value = quantized == null
+                ? tensor.getFloat(4 * index)
+                : dequantize(tensor.get(index));
+        return Math.max(0, Math.min(255, Math.round(value)));
+    }
+
+    /** Real value of a quantized element. */
+    public float dequantize(byte raw) {
+        int q = type == UINT8 ? raw & 0xFF : raw;
+        return (q - zeroPoint) * scale;
+    }
+
+    @Override
+    public String toString() {
+        return type == FLOAT32 ? "float32" : (type == UINT8 ? "uint8" : "int8") + " (" + scale + ", " + zeroPoint + ")";
+    }
+}
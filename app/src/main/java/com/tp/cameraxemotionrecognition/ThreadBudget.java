@@ -0,0 +1,77 @@
+package com.tp.cameraxemotionrecognition;
+
+/**
+ * Inference thread count allowed under the current thermal and battery conditions.
+ *
+ * <p>The preferred count is the configured or tuned one. It is halved when the device reports
+ * moderate thermal throttling, in battery saver or on low battery, halved once more when both
+ * apply, and dropped to a single thread from severe throttling on. Signals may arrive on any
+ * thread.
+ */
+public class ThreadBudget {
+    // Same values as PowerManager.THERMAL_STATUS_*, which needs API 29.
+    public static final int THERMAL_STATUS_NONE = 0;
+    public static final int THERMAL_STATUS_LIGHT = 1;
+    public static final int THERMAL_STATUS_MODERATE = 2;
+    public static final int THERMAL_STATUS_SEVERE = 3;
+
+    private int preferredThreads;
+    private int thermalStatus = THERMAL_STATUS_NONE;
+    private boolean powerSave;
+    private boolean batteryLow;
+
+    public ThreadBudget(int preferredThreads) {
+        setPreferredThreads(preferredThreads);
+    }
+
+    /** Thread count to use when nothing is throttled. */
+    public synchronized void setPreferredThreads(int preferredThreads) {
+        if (preferredThreads < 1) {
+            throw new IllegalArgumentException("preferredThreads must be at least 1");
+        }
+        this.preferredThreads = preferredThreads;
+    }
+
+    public synchronized int getPreferredThreads() {
+        return preferredThreads;
+    }
+
+    /** One of the {@code THERMAL_STATUS_} values, or a higher {@code PowerManager} status. */
+    public synchronized void setThermalStatus(int thermalStatus) {
+        this.thermalStatus = thermalStatus;
+    }
+
+    public synchronized void setPowerSave(boolean powerSave) {
+        this.powerSave = powerSave;
+    }
+
+    public synchronized void setBatteryLow(boolean batteryLow) {
+        this.batteryLow = batteryLow;
+    }
+
+    /** Thread count to run inference with now. */
+    public synchronized int getThreads() {
+        if (thermalStatus >= THERMAL_STATUS_SEVERE) {
+            return 1;
+        }
+        int threads = preferredThreads;
+        if (thermalStatus >= THERMAL_STATUS_MODERATE) {
+            threads /= 2;
+        }
+        if (powerSave || batteryLow) {
+            threads /= 2;
+        }
+        return Math.max(1, threads);
+    }
+
+    /** Whether any signal currently lowers the thread count below the preferred one. */
+    public synchronized boolean isThrottled() {
+        return getThreads() < preferredThreads;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return getThreads() + "/" + preferredThreads + " threads (thermal " + thermalStatus
+                + (powerSave ? ", power save" : "") + (batteryLow ? ", battery low" : "") + ")";
+    }
+}
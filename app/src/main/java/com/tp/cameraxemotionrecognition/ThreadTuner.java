@@ -0,0 +1,106 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.util.Arrays;
+
+/**
+ * Chooses the CPU thread count of a classifier during warm-up.
+ *
+ * <p>Every count from 1 to {@code maxThreads} is timed like {@link BackendSelector} times backends.
+ * The result is the smallest count within {@code tolerance} of the fastest one: past the point
+ * where more threads stop paying off, extra threads only take cores from the camera and ML Kit,
+ * which is what 4 threads on a 4 core phone did.
+ *
+ * <p>Backends that do not run on CPU threads are left as they are.
+ */
+public class ThreadTuner {
+    private final FrameScheduler.Clock clock;
+    private final int warmupRuns;
+    private final int timedRuns;
+    private final float tolerance;
+    private long[] averageNanos = new long[0];
+    private int tunedThreads;
+
+    /**
+     * @param tolerance fraction by which a smaller thread count may be slower than the fastest
+     *                  count and still be chosen, e.g. 0.1
+     */
+    public ThreadTuner(FrameScheduler.Clock clock, int warmupRuns, int timedRuns, float tolerance) {
+        if (warmupRuns < 0 || timedRuns < 1 || tolerance < 0) {
+            throw new IllegalArgumentException("warmupRuns and tolerance must be >= 0 and timedRuns >= 1");
+        }
+        this.clock = clock;
+        this.warmupRuns = warmupRuns;
+        this.timedRuns = timedRuns;
+        this.tolerance = tolerance;
+    }
+
+    /**
+     * Times {@code classifier} on 1 to {@code maxThreads} threads, leaves it on the chosen count
+     * and returns that count. Returns {@link EmotionClassifier#getNumThreads()} unchanged if the
+     * backend cannot change its threads. If the thread is interrupted, no further counts are timed
+     * and the choice is made among those timed so far.
+     */
+    public int tune(EmotionClassifier classifier, int maxThreads) {
+        if (maxThreads < 1) {
+            throw new IllegalArgumentException("maxThreads must be at least 1");
+        }
+        averageNanos = new long[maxThreads + 1];
+        if (!classifier.setNumThreads(1)) {
+            tunedThreads = classifier.getNumThreads();
+            return tunedThreads;
+        }
+
+        long fastest = Long.MAX_VALUE;
+        int timed = 0;
+        for (int threads = 1; threads <= maxThreads; threads++) {
+            if (threads > 1) {
+                if (Thread.currentThread().isInterrupted()) {
+                    averageNanos = Arrays.copyOf(averageNanos, threads);
+                    break;
+                }
+                classifier.setNumThreads(threads);
+            }
+            averageNanos[threads] = BackendSelector.averageRunNanos(clock, classifier, warmupRuns, timedRuns);
+            fastest = Math.min(fastest, averageNanos[threads]);
+            timed = threads;
+        }
+
+        tunedThreads = timed;
+        for (int threads = 1; threads <= timed; threads++) {
+            if (averageNanos[threads] <= fastest * (1 + tolerance)) {
+                tunedThreads = threads;
+                break;
+            }
+        }
+        classifier.setNumThreads(tunedThreads);
+        return tunedThreads;
+    }
+
+    /** Thread count the last {@link #tune} chose. */
+    public int getTunedThreads() {
+        return tunedThreads;
+    }
+
+    /** Average time measured on {@code threads} threads by the last {@link #tune}, or 0. */
+    public long getAverageNanos(int threads) {
+        return threads < averageNanos.length ? averageNanos[threads] : 0;
+    }
+
+    /** One line summary of the last tuning for logging, e.g. {@code "1: 20.0 ms, 2: 11.2 ms -> 2"}. */
+    public String getSummary() {
+        StringBuilder summary = new StringBuilder();
+        for (int threads = 1; threads < averageNanos.length; threads++) {
+            if (averageNanos[threads] == 0) {
+                continue;
+            }
+            if (summary.length() > 0) {
+                summary.append(", ");
+            }
+            summary.append(threads).append(": ").append((averageNanos[threads] / 1000) / 1000f).append(" ms");
+        }
+        if (summary.length() == 0) {
+            summary.append("fixed");
+        }
+        return summary.append(" -> ").append(tunedThreads).toString();
+    }
+}
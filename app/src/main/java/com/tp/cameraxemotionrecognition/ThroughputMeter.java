@@ -0,0 +1,40 @@
+package com.tp.cameraxemotionrecognition;
+
+/**
+ * Sustained rate of completed frames over a sliding window of the most recent completions.
+ */
+public class ThroughputMeter {
+
+    private final FrameScheduler.Clock clock;
+    private final long[] timestamps;
+    private int next;
+    private int count;
+
+    public ThroughputMeter(FrameScheduler.Clock clock, int window) {
+        if (window < 2) {
+            throw new IllegalArgumentException("window must be at least 2");
+        }
+        this.clock = clock;
+        this.timestamps = new long[window];
+    }
+
+    /** Records one completed frame. */
+    public synchronized void mark() {
+        timestamps[next] = clock.nanoTime();
+        next = (next + 1) % timestamps.length;
+        if (count < timestamps.length) {
+            count++;
+        }
+    }
+
+    /** Frames per second over the window, 0 until two frames are recorded. */
+    public synchronized float getFps() {
+        if (count < 2) {
+            return 0f;
+        }
+        int newest = (next - 1 + timestamps.length) % timestamps.length;
+        int oldest = (next - count + timestamps.length) % timestamps.length;
+        long span = timestamps[newest] - timestamps[oldest];
+        return span <= 0 ? 0f : (count - 1) * 1_000_000_000f / span;
+    }
+}
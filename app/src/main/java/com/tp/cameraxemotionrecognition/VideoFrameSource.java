@@ -0,0 +1,91 @@
+package com.tp.cameraxemotionrecognition;
+
+import android.graphics.Bitmap;
+import android.media.MediaMetadataRetriever;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Frames of a recorded video, one every {@code intervalMs}. Seeking a retriever is serial, so each
+ * worker thread gets its own {@link MediaMetadataRetriever} on the same file.
+ */
+public class VideoFrameSource implements BatchClassifier.FrameSource {
+    private final File file;
+    private final long intervalMs;
+    private final int frameCount;
+    private final List<MediaMetadataRetriever> retrievers = new ArrayList<>();
+    private final ThreadLocal<MediaMetadataRetriever> retriever = new ThreadLocal<MediaMetadataRetriever>() {
+        @Override
+        protected MediaMetadataRetriever initialValue() {
+            MediaMetadataRetriever created = new MediaMetadataRetriever();
+            created.setDataSource(file.getAbsolutePath());
+            synchronized (retrievers) {
+                retrievers.add(created);
+            }
+            return created;
+        }
+    };
+
+    public VideoFrameSource(File file, long intervalMs) throws IOException {
+        if (intervalMs <= 0) {
+            throw new IllegalArgumentException("intervalMs must be positive");
+        }
+        this.file = file;
+        this.intervalMs = intervalMs;
+        String duration;
+        try {
+            duration = retriever.get().extractMetadata(MediaMetadataRetriever.METADATA_KEY_DURATION);
+        } catch (RuntimeException e) {
+            throw new IOException("Can't open " + file, e);
+        }
+        if (duration == null) {
+            throw new IOException("No duration in " + file);
+        }
+        this.frameCount = (int) (Long.parseLong(duration) / intervalMs) + 1;
+    }
+
+    @Override
+    public int getFrameCount() {
+        return frameCount;
+    }
+
+    @Override
+    public ArgbFrame decode(int index) throws IOException {
+        long timeMs = index * intervalMs;
+        Bitmap bitmap;
+        try {
+            bitmap = retriever.get().getFrameAtTime(timeMs * 1000, MediaMetadataRetriever.OPTION_CLOSEST);
+        } catch (RuntimeException e) {
+            throw new IOException("Can't open " + file, e);
+        }
+        if (bitmap == null) {
+            throw new IOException("No frame at " + timeMs + " ms");
+        }
+        try {
+            int width = bitmap.getWidth();
+            int height = bitmap.getHeight();
+            int[] pixels = new int[width * height];
+            bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+            return new ArgbFrame(file.getName(), timeMs, width, height, pixels);
+        } finally {
+            bitmap.recycle();
+        }
+    }
+
+    @Override
+    public void close() {
+        synchronized (retrievers) {
+            for (MediaMetadataRetriever r : retrievers) {
+                try {
+                    r.release();
+                } catch (Exception ignored) {
+                    // release() throws IOException from API 29 on, nothing to do about it here
+                }
+            }
+            retrievers.clear();
+        }
+    }
+}
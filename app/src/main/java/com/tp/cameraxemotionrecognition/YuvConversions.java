@@ -0,0 +1,202 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * YUV_420_888 to NV21, NV12 or I420 repacking over {@link YuvPlane}s, so it can be used and
+ * measured without the Android image classes. {@link BitmapUtils} wraps the camera planes and
+ * delegates here.
+ *
+ * <p>Planes are copied a row at a time with bulk {@code get}s. Rows of strided planes are read into
+ * a scratch array first and spread from there, instead of one {@code ByteBuffer.get} per byte.
+ */
+public class YuvConversions {
+    /** All Y, then interleaved V and U. What {@code YuvImage} expects. */
+    public static final int NV21 = 0;
+    /** All Y, then interleaved U and V. */
+    public static final int NV12 = 1;
+    /** All Y, then all U, then all V. */
+    public static final int I420 = 2;
+
+    private YuvConversions() {
+    }
+
+    /** Size in bytes of a {@code width x height} NV21, NV12 or I420 image. */
+    public static int nv21Size(int width, int height) {
+        int imageSize = width * height;
+        return imageSize + 2 * (imageSize / 4);
+    }
+
+    /** Scratch size {@link #convert} needs for one row of a frame {@code width} pixels wide. */
+    public static int rowScratchSize(int width) {
+        return 2 * width;
+    }
+
+    /**
+     * Converts YUV_420_888 to NV21 into {@code out}, which must hold {@link #nv21Size} bytes.
+     *
+     * <p>The NV21 format consists of a single byte array containing the Y, U and V values. For an
+     * image of size S, the first S positions of the array contain all the Y values. The remaining
+     * positions contain interleaved V and U values. U and V are subsampled by a factor of 2 in both
+     * dimensions, so there are S/4 U values and S/4 V values. In summary, the NV21 array will contain
+     * S Y values followed by S/4 VU values: YYYYYYYYYYYYYY(...)YVUVUVUVU(...)VU
+     *
+     * <p>YUV_420_888 is a generic format that can describe any YUV image where U and V are subsampled
+     * by a factor of 2 in both dimensions. {@code Image#getPlanes} returns an array with the Y, U and
+     * V planes. The Y plane is guaranteed not to be interleaved, so we can just copy its values into
+     * the first part of the NV21 array. The U and V planes may already have the representation in the
+     * NV21 format. This happens if the planes share the same buffer, the V buffer is one position
+     * before the U buffer and the planes have a pixelStride of 2. If this is case, we can just copy
+     * them to the NV21 array.
+     */
+    public static void yuv420ThreePlanesToNV21(
+            YuvPlane[] yuv420888planes, int width, int height, byte[] out) {
+        convert(yuv420888planes, width, height, NV21, out, new byte[rowScratchSize(width)]);
+    }
+
+    /**
+     * Converts YUV_420_888 to {@code format} into {@code out}, which must hold {@link #nv21Size}
+     * bytes. {@code rowScratch} must hold {@link #rowScratchSize} bytes; pass the same array every
+     * frame to keep the conversion allocation free.
+     */
+    public static void convert(
+            YuvPlane[] yuv420888planes, int width, int height, int format, byte[] out, byte[] rowScratch) {
+        int imageSize = width * height;
+        int chromaSize = imageSize / 4;
+
+        if (format != I420 && areUVPlanesNV21(yuv420888planes, width, height)) {
+            // Copy the Y values.
+            unpackPlane(yuv420888planes[0], width, height, out, 0, 1, rowScratch);
+
+            ByteBuffer uBuffer = yuv420888planes[1].getBuffer();
+            ByteBuffer vBuffer = yuv420888planes[2].getBuffer();
+            uBuffer.rewind();
+            vBuffer.rewind();
+            // Get the first V value from the V buffer, since the U buffer does not contain it.
+            vBuffer.get(out, imageSize, 1);
+            // Copy the first U value and the remaining VU values from the U buffer.
+            uBuffer.get(out, imageSize + 1, 2 * chromaSize - 1);
+            if (format == NV12) {
+                // Still one bulk copy; swapping the pairs in place is cheaper than unpacking.
+                for (int i = imageSize; i < imageSize + 2 * chromaSize; i += 2) {
+                    byte v = out[i];
+                    out[i] = out[i + 1];
+                    out[i + 1] = v;
+                }
+            }
+            uBuffer.rewind();
+            vBuffer.rewind();
+            return;
+        }
+
+        unpackPlane(yuv420888planes[0], width, height, out, 0, 1, rowScratch);
+        switch (format) {
+            case NV21:
+                unpackPlane(yuv420888planes[1], width, height, out, imageSize + 1, 2, rowScratch);
+                unpackPlane(yuv420888planes[2], width, height, out, imageSize, 2, rowScratch);
+                break;
+            case NV12:
+                unpackPlane(yuv420888planes[1], width, height, out, imageSize, 2, rowScratch);
+                unpackPlane(yuv420888planes[2], width, height, out, imageSize + 1, 2, rowScratch);
+                break;
+            case I420:
+                unpackPlane(yuv420888planes[1], width, height, out, imageSize, 1, rowScratch);
+                unpackPlane(yuv420888planes[2], width, height, out, imageSize + chromaSize, 1, rowScratch);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
+    /** Checks if the UV plane buffers of a YUV_420_888 image are in the NV21 format. */
+    public static boolean areUVPlanesNV21(YuvPlane[] planes, int width, int height) {
+        int imageSize = width * height;
+
+        ByteBuffer uBuffer = planes[1].getBuffer();
+        ByteBuffer vBuffer = planes[2].getBuffer();
+
+        // Backup buffer properties.
+        int vBufferPosition = vBuffer.position();
+        int uBufferLimit = uBuffer.limit();
+
+        // Advance the V buffer by 1 byte, since the U buffer will not contain the first V value.
+        vBuffer.position(vBufferPosition + 1);
+        // Chop off the last byte of the U buffer, since the V buffer will not contain the last U value.
+        uBuffer.limit(uBufferLimit - 1);
+
+        // Check that the buffers are equal and have the expected number of elements.
+        boolean areNV21 =
+                (vBuffer.remaining() == (2 * imageSize / 4 - 2)) && (vBuffer.compareTo(uBuffer) == 0);
+
+        // Restore buffers to their initial state.
+        vBuffer.position(vBufferPosition);
+        uBuffer.limit(uBufferLimit);
+
+        return areNV21;
+    }
+
+    /**
+     * Unpack an image plane into a byte array.
+     *
+     * <p>The input plane data will be copied in 'out', starting at 'offset' and every pixel will be
+     * spaced by 'pixelStride'. Note that there is no row padding on the output.
+     */
+    public static void unpackPlane(
+            YuvPlane plane, int width, int height, byte[] out, int offset, int pixelStride) {
+        unpackPlane(plane, width, height, out, offset, pixelStride, null);
+    }
+
+    /**
+     * Same as {@link #unpackPlane(YuvPlane, int, int, byte[], int, int)}, reading strided rows
+     * through {@code rowScratch}, which is allocated here if it is null or too small.
+     */
+    public static void unpackPlane(YuvPlane plane, int width, int height, byte[] out, int offset,
+                                   int pixelStride, byte[] rowScratch) {
+        ByteBuffer buffer = plane.getBuffer();
+        int limit = buffer.limit();
+        int rowStride = plane.getRowStride();
+        int inPixelStride = plane.getPixelStride();
+
+        // Compute the size of the current plane.
+        // We assume that it has the aspect ratio as the original image.
+        int numRow = (limit + rowStride - 1) / rowStride;
+        if (numRow == 0) {
+            return;
+        }
+        int scaleFactor = height / numRow;
+        int numCol = width / scaleFactor;
+
+        if (inPixelStride == 1 && pixelStride == 1) {
+            if (rowStride == numCol) {
+                // No padding, the whole plane is one copy.
+                buffer.rewind();
+                buffer.get(out, offset, numRow * numCol);
+            } else {
+                for (int row = 0; row < numRow; row++) {
+                    buffer.position(row * rowStride);
+                    buffer.get(out, offset + row * numCol, numCol);
+                }
+            }
+            buffer.rewind();
+            return;
+        }
+
+        // Bytes that hold one row of samples; the last row of a plane may end right after them.
+        int rowBytes = (numCol - 1) * inPixelStride + 1;
+        if (rowScratch == null || rowScratch.length < rowBytes) {
+            rowScratch = new byte[rowBytes];
+        }
+        int outputPos = offset;
+        for (int row = 0; row < numRow; row++) {
+            buffer.position(row * rowStride);
+            buffer.get(rowScratch, 0, rowBytes);
+            int inputPos = 0;
+            for (int col = 0; col < numCol; col++) {
+                out[outputPos] = rowScratch[inputPos];
+                outputPos += pixelStride;
+                inputPos += inPixelStride;
+            }
+        }
+        buffer.rewind();
+    }
+}
@@ -0,0 +1,119 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * A camera frame shared by every face detected in it.
+ *
+ * <p>The frame only references the plane buffers of the underlying image, so it is built once per
+ * frame and each face is read from it as a region. {@link #release()} must be called before the
+ * image is closed; any later access fails instead of reading recycled camera memory.
+ *
+ * <p>A frame created empty can be pointed at image after image with {@link #reset} and
+ * {@link #setPlane}. It keeps its plane objects, and its metadata and coordinates until the
+ * size or rotation changes, so a pooled frame costs no allocations per image.
+ */
+public class YuvFrame {
+
+    private YuvPlane yPlane;
+    private YuvPlane uPlane;
+    private YuvPlane vPlane;
+    private FrameMetadata metadata;
+    private FrameCoordinates coordinates;
+    // Sadece boş oluşturulan, tekrar kullanılan frame'lerde dolu
+    private final YuvPlane[] ownPlanes;
+
+    public YuvFrame(YuvPlane yPlane, YuvPlane uPlane, YuvPlane vPlane, FrameMetadata metadata) {
+        this.yPlane = yPlane;
+        this.uPlane = uPlane;
+        this.vPlane = vPlane;
+        this.metadata = metadata;
+        this.coordinates = new FrameCoordinates(metadata);
+        this.ownPlanes = null;
+    }
+
+    /** A released frame to be filled with {@link #reset} and {@link #setPlane}. */
+    public YuvFrame() {
+        ownPlanes = new YuvPlane[]{new YuvPlane(null, 0, 0), new YuvPlane(null, 0, 0), new YuvPlane(null, 0, 0)};
+    }
+
+    /**
+     * Starts wrapping an unrotated, unmirrored image of the given size. The metadata and the
+     * coordinates are kept if they already describe it. Follow with {@link #setPlane}.
+     */
+    public void reset(int width, int height, int rotation) {
+        if (ownPlanes == null) {
+            throw new IllegalStateException("Frame was not created for reuse");
+        }
+        if (metadata == null || metadata.getWidth() != width || metadata.getHeight() != height
+                || metadata.getRotation() != rotation || metadata.isMirrored()) {
+            metadata = new FrameMetadata.Builder()
+                    .setWidth(width)
+                    .setHeight(height)
+                    .setRotation(rotation)
+                    .build();
+            coordinates = new FrameCoordinates(metadata);
+        }
+        yPlane = ownPlanes[0];
+        uPlane = ownPlanes[1];
+        vPlane = ownPlanes[2];
+    }
+
+    /** Points plane {@code index}, 0 to 2 for Y, U and V, of a reset frame at an image buffer. */
+    public void setPlane(int index, ByteBuffer buffer, int rowStride, int pixelStride) {
+        checkNotReleased();
+        ownPlanes[index].set(buffer, rowStride, pixelStride);
+    }
+
+    public FrameMetadata getMetadata() {
+        return metadata;
+    }
+
+    /** Mapping between the upright face coordinates and the plane buffers of this frame. */
+    public FrameCoordinates getCoordinates() {
+        return coordinates;
+    }
+
+    public YuvPlane getYPlane() {
+        checkNotReleased();
+        return yPlane;
+    }
+
+    public YuvPlane getUPlane() {
+        checkNotReleased();
+        return uPlane;
+    }
+
+    public YuvPlane getVPlane() {
+        checkNotReleased();
+        return vPlane;
+    }
+
+    /** Writes the face region, in upright coordinates, to {@code out} as a model input tensor. */
+    public void convertFace(YuvTensorConverter converter, int left, int top, int right, int bottom, ByteBuffer out) {
+        checkNotReleased();
+        converter.convert(yPlane, uPlane, vPlane, coordinates, left, top, right, bottom, out);
+    }
+
+    public boolean isReleased() {
+        return yPlane == null;
+    }
+
+    /** Drops the plane references. Called right before the backing image is closed. */
+    public void release() {
+        yPlane = null;
+        uPlane = null;
+        vPlane = null;
+        if (ownPlanes != null) {
+            for (YuvPlane plane : ownPlanes) {
+                plane.set(null, 0, 0);
+            }
+        }
+    }
+
+    private void checkNotReleased() {
+        if (yPlane == null) {
+            throw new IllegalStateException("Frame is already released");
+        }
+    }
+}
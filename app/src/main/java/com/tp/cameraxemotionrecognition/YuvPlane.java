@@ -0,0 +1,37 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * One plane of a YUV_420_888 frame, detached from the Android image classes so the conversion
+ * code can run on a plain JVM. A reused {@link YuvFrame} points its planes at each new image with
+ * {@link #set}.
+ */
+public class YuvPlane {
+
+    private ByteBuffer buffer;
+    private int rowStride;
+    private int pixelStride;
+
+    public YuvPlane(ByteBuffer buffer, int rowStride, int pixelStride) {
+        set(buffer, rowStride, pixelStride);
+    }
+
+    void set(ByteBuffer buffer, int rowStride, int pixelStride) {
+        this.buffer = buffer;
+        this.rowStride = rowStride;
+        this.pixelStride = pixelStride;
+    }
+
+    public ByteBuffer getBuffer() {
+        return buffer;
+    }
+
+    public int getRowStride() {
+        return rowStride;
+    }
+
+    public int getPixelStride() {
+        return pixelStride;
+    }
+}
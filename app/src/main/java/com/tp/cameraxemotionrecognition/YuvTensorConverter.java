@@ -0,0 +1,183 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Converts a face region of a YUV_420_888 frame straight into the float input tensor of the
+ * emotion model.
+ *
+ * <p>Rotation, crop, nearest neighbour resize and YUV to RGB conversion are done in a single pass
+ * over the output pixels, so no intermediate NV21 array, JPEG or Bitmap is created. The face
+ * rectangle is given in the upright (rotated) coordinate space that ML Kit reports, mapped to the
+ * sensor buffer by {@link FrameCoordinates}. Parts of the rectangle outside the frame are written
+ * as black, like {@link Utils#cropBitmap} does.
+ *
+ * <p>Instances keep scratch arrays and are not thread safe.
+ */
+public class YuvTensorConverter {
+    /** RGB values per output pixel. */
+    public static final int CHANNELS = 3;
+
+    private final int outputSize;
+    private final TensorFormat format;
+    private final int[] sampleX;
+    private final int[] sampleY;
+
+    public YuvTensorConverter(int outputSize) {
+        this(outputSize, TensorFormat.FLOAT);
+    }
+
+    /** Converter writing channels in the element type of the model input, e.g. bytes for INT8. */
+    public YuvTensorConverter(int outputSize, TensorFormat format) {
+        this.outputSize = outputSize;
+        this.format = format;
+        this.sampleX = new int[outputSize];
+        this.sampleY = new int[outputSize];
+    }
+
+    public int getOutputSize() {
+        return outputSize;
+    }
+
+    public TensorFormat getFormat() {
+        return format;
+    }
+
+    /** Size of one converted face in bytes. */
+    public int getTensorBytes() {
+        return getTensorBytes(outputSize, format);
+    }
+
+    /** Size in bytes of one {@code size x size} RGB input in {@code format}. */
+    public static int getTensorBytes(int size, TensorFormat format) {
+        return format.getBytesPerChannel() * size * size * CHANNELS;
+    }
+
+    /**
+     * Writes {@code count} ARGB pixels, e.g. from {@code Bitmap#getPixels}, as RGB floats in
+     * [0, 255] to {@code out}, starting at its current position.
+     */
+    public static void argbToTensor(int[] pixels, int count, ByteBuffer out) {
+        argbToTensor(pixels, count, TensorFormat.FLOAT, out);
+    }
+
+    /** Same as {@link #argbToTensor(int[], int, ByteBuffer)}, in the given element format. */
+    public static void argbToTensor(int[] pixels, int count, TensorFormat format, ByteBuffer out) {
+        for (int i = 0; i < count; i++) {
+            int val = pixels[i]; //RGB
+            // Modelde rescaling layer yoksa 255'e böl [0 - 255] aralığına al
+            format.put(out, (val >> 16) & 0xFF);
+            format.put(out, (val >> 8) & 0xFF);
+            format.put(out, val & 0xFF);
+        }
+    }
+
+    /**
+     * Writes the face at {@code left, top, right, bottom} as {@code outputSize * outputSize * 3}
+     * channels in [0, 255], in the converter's format, to {@code out}, starting at its current
+     * position.
+     */
+    public void convert(YuvPlane yPlane, YuvPlane uPlane, YuvPlane vPlane, FrameMetadata metadata,
+                        int left, int top, int right, int bottom, ByteBuffer out) {
+        convert(yPlane, uPlane, vPlane, new FrameCoordinates(metadata), left, top, right, bottom, out);
+    }
+
+    /** Same as above, with the coordinate mapping of the frame already built. */
+    public void convert(YuvPlane yPlane, YuvPlane uPlane, YuvPlane vPlane, FrameCoordinates coordinates,
+                        int left, int top, int right, int bottom, ByteBuffer out) {
+        int uprightWidth = coordinates.getUprightWidth();
+        int uprightHeight = coordinates.getUprightHeight();
+
+        int cropWidth = right - left;
+        int cropHeight = bottom - top;
+        if (cropWidth <= 0 || cropHeight <= 0) {
+            throw new IllegalArgumentException("Empty face rect: " + left + "," + top + "," + right + "," + bottom);
+        }
+
+        // Sample the centre of every output pixel, -1 marks samples outside the frame.
+        for (int i = 0; i < outputSize; i++) {
+            int x = left + (2 * i + 1) * cropWidth / (2 * outputSize);
+            int y = top + (2 * i + 1) * cropHeight / (2 * outputSize);
+            sampleX[i] = x >= 0 && x < uprightWidth ? x : -1;
+            sampleY[i] = y >= 0 && y < uprightHeight ? y : -1;
+        }
+
+        // Upright (x, y) -> sensor (cx + ax * x + bx * y, cy + ay * x + by * y).
+        int ax = coordinates.getSensorXPerX();
+        int bx = coordinates.getSensorXPerY();
+        int cx = coordinates.getSensorX0();
+        int ay = coordinates.getSensorYPerX();
+        int by = coordinates.getSensorYPerY();
+        int cy = coordinates.getSensorY0();
+
+        ByteBuffer yBuffer = yPlane.getBuffer();
+        ByteBuffer uBuffer = uPlane.getBuffer();
+        ByteBuffer vBuffer = vPlane.getBuffer();
+        int yRowStride = yPlane.getRowStride();
+        int yPixelStride = yPlane.getPixelStride();
+        int uRowStride = uPlane.getRowStride();
+        int uPixelStride = uPlane.getPixelStride();
+        int vRowStride = vPlane.getRowStride();
+        int vPixelStride = vPlane.getPixelStride();
+
+        for (int row = 0; row < outputSize; row++) {
+            int y = sampleY[row];
+            for (int col = 0; col < outputSize; col++) {
+                int x = sampleX[col];
+                if (x < 0 || y < 0) {
+                    format.put(out, 0);
+                    format.put(out, 0);
+                    format.put(out, 0);
+                    continue;
+                }
+                int sensorX = cx + ax * x + bx * y;
+                int sensorY = cy + ay * x + by * y;
+
+                int luma = yBuffer.get(sensorY * yRowStride + sensorX * yPixelStride) & 0xFF;
+                int chromaRow = sensorY >> 1;
+                int chromaCol = sensorX >> 1;
+                int u = (uBuffer.get(chromaRow * uRowStride + chromaCol * uPixelStride) & 0xFF) - 128;
+                int v = (vBuffer.get(chromaRow * vRowStride + chromaCol * vPixelStride) & 0xFF) - 128;
+
+                // Full range BT.601, the same conversion the JPEG path used. 16.16 fixed point.
+                format.put(out, clamp(luma + ((91881 * v) >> 16)));
+                format.put(out, clamp(luma - ((22554 * u + 46802 * v) >> 16)));
+                format.put(out, clamp(luma + ((116130 * u) >> 16)));
+            }
+        }
+    }
+
+    /**
+     * Writes the face at {@code left, top, right, bottom} of an upright ARGB image, e.g. a decoded
+     * photo or video frame, like {@link #convert} does for camera frames: centre sampled, black
+     * outside the image.
+     */
+    public void convertArgb(int[] pixels, int width, int height,
+                            int left, int top, int right, int bottom, ByteBuffer out) {
+        int cropWidth = right - left;
+        int cropHeight = bottom - top;
+        if (cropWidth <= 0 || cropHeight <= 0) {
+            throw new IllegalArgumentException("Empty face rect: " + left + "," + top + "," + right + "," + bottom);
+        }
+        for (int i = 0; i < outputSize; i++) {
+            int x = left + (2 * i + 1) * cropWidth / (2 * outputSize);
+            int y = top + (2 * i + 1) * cropHeight / (2 * outputSize);
+            sampleX[i] = x >= 0 && x < width ? x : -1;
+            sampleY[i] = y >= 0 && y < height ? y : -1;
+        }
+        for (int row = 0; row < outputSize; row++) {
+            int y = sampleY[row];
+            for (int col = 0; col < outputSize; col++) {
+                int x = sampleX[col];
+                int argb = x < 0 || y < 0 ? 0 : pixels[y * width + x];
+                format.put(out, (argb >> 16) & 0xFF);
+                format.put(out, (argb >> 8) & 0xFF);
+                format.put(out, argb & 0xFF);
+            }
+        }
+    }
+
+    private static int clamp(int value) {
+        return value < 0 ? 0 : (value > 255 ? 255 : value);
+    }
+}
@@ -0,0 +1,136 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class BackendSelectorTest {
+    private static final long MS = FakeClassifier.MS;
+
+    private static class FakeFactory implements EmotionClassifier.Factory {
+        final String name;
+        final FakeClassifier.Clock clock;
+        final long runMs;
+        final boolean fails;
+        final List<FakeClassifier> created = new ArrayList<>();
+
+        FakeFactory(String name, FakeClassifier.Clock clock, long runMs, boolean fails) {
+            this.name = name;
+            this.clock = clock;
+            this.runMs = runMs;
+            this.fails = fails;
+        }
+
+        @Override
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public EmotionClassifier create() throws IOException {
+            if (fails) {
+                throw new IOException(name + " not supported");
+            }
+            FakeClassifier classifier = new FakeClassifier(name, clock, runMs);
+            created.add(classifier);
+            return classifier;
+        }
+    }
+
+    @Test
+    public void select_keepsFastestAndClosesOthers() throws IOException {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        FakeFactory gpu = new FakeFactory("gpu", clock, 12, false);
+        FakeFactory cpu = new FakeFactory("cpu", clock, 8, false);
+        FakeFactory nnapi = new FakeFactory("nnapi", clock, 20, false);
+        BackendSelector selector = new BackendSelector(clock, 2, 5);
+
+        EmotionClassifier selected = selector.select(Arrays.<EmotionClassifier.Factory>asList(gpu, cpu, nnapi), null);
+
+        assertEquals("cpu", selected.getName());
+        assertEquals("cpu", selector.getSelectedName());
+        assertFalse(cpu.created.get(0).closed);
+        assertTrue(gpu.created.get(0).closed);
+        assertTrue(nnapi.created.get(0).closed);
+        assertEquals(7, gpu.created.get(0).runs);
+        assertEquals(12 * MS, selector.getAverageNanos(0));
+        assertEquals(8 * MS, selector.getAverageNanos(1));
+        assertEquals("gpu 12.0 ms, cpu 8.0 ms, nnapi 20.0 ms -> cpu", selector.getSummary());
+    }
+
+    @Test
+    public void select_skipsBackendsThatFail() throws IOException {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        FakeFactory gpu = new FakeFactory("gpu", clock, 1, true);
+        FakeFactory cpu = new FakeFactory("cpu", clock, 8, false);
+        BackendSelector selector = new BackendSelector(clock, 0, 1);
+
+        EmotionClassifier selected = selector.select(Arrays.<EmotionClassifier.Factory>asList(gpu, cpu), null);
+
+        assertEquals("cpu", selected.getName());
+        assertEquals(BackendSelector.FAILED, selector.getAverageNanos(0));
+    }
+
+    @Test
+    public void select_usesOverrideWithoutTiming() throws IOException {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        FakeFactory gpu = new FakeFactory("gpu", clock, 12, false);
+        FakeFactory cpu = new FakeFactory("cpu", clock, 8, false);
+        BackendSelector selector = new BackendSelector(clock, 2, 5);
+
+        EmotionClassifier selected = selector.select(Arrays.<EmotionClassifier.Factory>asList(gpu, cpu), "gpu");
+
+        assertEquals("gpu", selected.getName());
+        assertEquals(0, gpu.created.get(0).runs);
+        assertTrue(cpu.created.isEmpty());
+        assertTrue(selector.getCandidateNames().isEmpty());
+    }
+
+    @Test
+    public void select_fallsBackToTimingWhenOverrideFails() throws IOException {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        FakeFactory gpu = new FakeFactory("gpu", clock, 1, true);
+        FakeFactory cpu = new FakeFactory("cpu", clock, 8, false);
+        BackendSelector selector = new BackendSelector(clock, 0, 1);
+
+        EmotionClassifier selected = selector.select(Arrays.<EmotionClassifier.Factory>asList(gpu, cpu), "gpu");
+
+        assertEquals("cpu", selected.getName());
+    }
+
+    @Test
+    public void select_stopsWhenInterrupted() throws IOException {
+        final FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        // Cancelled while the first candidate is being timed
+        FakeFactory gpu = new FakeFactory("gpu", clock, 1, false) {
+            @Override
+            public EmotionClassifier create() throws IOException {
+                Thread.currentThread().interrupt();
+                return super.create();
+            }
+        };
+        FakeFactory cpu = new FakeFactory("cpu", clock, 8, false);
+        try {
+            new BackendSelector(clock, 0, 1).select(Arrays.<EmotionClassifier.Factory>asList(gpu, cpu), null);
+            fail("Expected InterruptedIOException");
+        } catch (InterruptedIOException expected) {
+            assertTrue(gpu.created.get(0).closed);
+            assertTrue(cpu.created.isEmpty());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test(expected = IOException.class)
+    public void select_throwsWhenNothingLoads() throws IOException {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        FakeFactory gpu = new FakeFactory("gpu", clock, 1, true);
+        new BackendSelector(clock, 0, 1).select(Arrays.<EmotionClassifier.Factory>asList(gpu), null);
+    }
+}
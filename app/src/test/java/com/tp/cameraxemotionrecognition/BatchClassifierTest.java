@@ -0,0 +1,243 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class BatchClassifierTest {
+    private static final int SIZE = 32;
+    private static final int FACE = 8;
+
+    /** Frame {@code i} has {@code i % 4} faces side by side, face {@code f} filled with red {@code i + f}. */
+    private static class SyntheticSource implements BatchClassifier.FrameSource {
+        final int frames;
+        final int failing;
+
+        SyntheticSource(int frames, int failing) {
+            this.frames = frames;
+            this.failing = failing;
+        }
+
+        @Override
+        public int getFrameCount() {
+            return frames;
+        }
+
+        @Override
+        public ArgbFrame decode(int index) throws IOException {
+            if (index == failing) {
+                throw new IOException("corrupt");
+            }
+            int[] pixels = new int[SIZE * SIZE];
+            for (int face = 0; face < index % 4; face++) {
+                for (int y = 0; y < FACE; y++) {
+                    for (int x = face * FACE; x < (face + 1) * FACE; x++) {
+                        pixels[y * SIZE + x] = 0xFF000000 | ((index + face) % Emotions.NUM_CLASSES) << 16;
+                    }
+                }
+            }
+            return new ArgbFrame("f" + index, index * 100L, SIZE, SIZE, pixels);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /** Stand-in detector that knows where the synthetic faces are; slower on some frames so workers finish out of order. */
+    private static final BatchClassifier.FaceLocator LOCATOR = new BatchClassifier.FaceLocator() {
+        @Override
+        public int[] locate(ArgbFrame frame) throws IOException {
+            int index = Integer.parseInt(frame.getId().substring(1));
+            try {
+                Thread.sleep(index % 3 == 0 ? 5 : 0);
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+            int[] rects = new int[index % 4 * 4];
+            for (int face = 0; face < index % 4; face++) {
+                rects[4 * face] = face * FACE;
+                rects[4 * face + 2] = (face + 1) * FACE;
+                rects[4 * face + 3] = FACE;
+            }
+            return rects;
+        }
+    };
+
+    /** Classifies a face as the class given by the red value of its first pixel. */
+    private static class RedClassifier extends FakeClassifier {
+        RedClassifier() {
+            super("red", new FakeClassifier.Clock(), 1);
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return 2;
+        }
+
+        @Override
+        public void run(ByteBuffer input, int count, float[][] output) {
+            int tensorFloats = getInputSize() * getInputSize() * YuvTensorConverter.CHANNELS;
+            assertEquals(count * tensorFloats * 4, input.capacity());
+            for (int i = 0; i < count; i++) {
+                int red = (int) input.getFloat(4 * i * tensorFloats);
+                for (int c = 0; c < output[i].length; c++) {
+                    output[i][c] = c == red ? 0.9f : 0.1f / (output[i].length - 1);
+                }
+            }
+        }
+    }
+
+    private static EmotionClassifier.Factory factory(final AtomicInteger created) {
+        return new EmotionClassifier.Factory() {
+            @Override
+            public String getName() {
+                return "red";
+            }
+
+            @Override
+            public EmotionClassifier create() {
+                created.incrementAndGet();
+                return new RedClassifier();
+            }
+        };
+    }
+
+    @Test
+    public void run_writesFacesInFrameOrder() throws Exception {
+        AtomicInteger created = new AtomicInteger();
+        StringWriter out = new StringWriter();
+        BatchClassifier batch = new BatchClassifier(LOCATOR, factory(created), 4, 2);
+
+        BatchClassifier.Summary summary = batch.run(new SyntheticSource(20, -1),
+                new BatchResultWriter(out, BatchResultWriter.FORMAT_CSV));
+
+        assertEquals(2, created.get());
+        assertEquals(20, summary.frames);
+        assertEquals(0, summary.failedFrames);
+        String[] lines = out.toString().split("\n");
+        assertTrue(lines[0], lines[0].startsWith("frame,time_ms,face,left,top,right,bottom,emotion,confidence,anger,"));
+        int line = 1;
+        for (int index = 0; index < 20; index++) {
+            for (int face = 0; face < index % 4; face++) {
+                String emotion = Emotions.CLASSES[(index + face) % Emotions.NUM_CLASSES];
+                String expected = "f" + index + "," + index * 100 + "," + face + ","
+                        + face * FACE + ",0," + (face + 1) * FACE + "," + FACE + "," + emotion + ",0.9000,";
+                assertTrue(lines[line], lines[line].startsWith(expected));
+                line++;
+            }
+        }
+        assertEquals(line, lines.length);
+        assertEquals(line - 1, summary.faces);
+    }
+
+    @Test
+    public void run_skipsFramesThatFail() throws Exception {
+        StringWriter out = new StringWriter();
+        BatchClassifier batch = new BatchClassifier(LOCATOR, factory(new AtomicInteger()), 3, 1);
+        final int[] progress = new int[1];
+        batch.setProgressListener(new BatchClassifier.ProgressListener() {
+            @Override
+            public void onProgress(int framesDone, int frameCount) {
+                synchronized (progress) {
+                    progress[0] = Math.max(progress[0], framesDone);
+                }
+            }
+        });
+
+        BatchClassifier.Summary summary = batch.run(new SyntheticSource(8, 3),
+                new BatchResultWriter(out, BatchResultWriter.FORMAT_JSONL));
+
+        assertEquals(1, summary.failedFrames);
+        assertEquals("frame 3: corrupt", summary.firstError);
+        // Faces of frames 1, 2, 5, 6 and 7; frame 3 is gone.
+        assertEquals(1 + 2 + 1 + 2 + 3, summary.faces);
+        assertFalse(out.toString().contains("\"frame\":\"f3\""));
+        assertEquals(8, progress[0]);
+        String first = out.toString().split("\n")[0];
+        assertTrue(first, first.startsWith("{\"frame\":\"f1\",\"time_ms\":100,\"face\":0,\"box\":[0,0,8,8],"
+                + "\"emotion\":\"contempt\",\"confidence\":0.9000,\"scores\":{\"anger\":0.0143,"));
+    }
+
+    @Test
+    public void run_interruptedWaitsForRunningFramesBeforeClosing() throws Exception {
+        final CountDownLatch entered = new CountDownLatch(1);
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicBoolean locating = new AtomicBoolean();
+        // Like a native call, ignores interrupts until released
+        BatchClassifier.FaceLocator blocking = new BatchClassifier.FaceLocator() {
+            @Override
+            public int[] locate(ArgbFrame frame) throws IOException {
+                locating.set(true);
+                entered.countDown();
+                while (true) {
+                    try {
+                        release.await();
+                        break;
+                    } catch (InterruptedException ignored) {
+                    }
+                }
+                locating.set(false);
+                return new int[] {0, 0, FACE, FACE};
+            }
+        };
+        final List<FakeClassifier> created = new ArrayList<>();
+        EmotionClassifier.Factory factory = new EmotionClassifier.Factory() {
+            @Override
+            public String getName() {
+                return "red";
+            }
+
+            @Override
+            public EmotionClassifier create() {
+                FakeClassifier classifier = new RedClassifier();
+                created.add(classifier);
+                return classifier;
+            }
+        };
+        final BatchClassifier batch = new BatchClassifier(blocking, factory, 2, 2);
+        final AtomicBoolean locatingAtReturn = new AtomicBoolean(true);
+        Thread runner = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    batch.run(new SyntheticSource(50, -1),
+                            new BatchResultWriter(new StringWriter(), BatchResultWriter.FORMAT_CSV));
+                } catch (IOException | InterruptedException ignored) {
+                }
+                locatingAtReturn.set(locating.get());
+            }
+        });
+        runner.start();
+        entered.await();
+        runner.interrupt();
+        Thread.sleep(50);
+        for (FakeClassifier classifier : created) {
+            assertFalse(classifier.closed);
+        }
+        release.countDown();
+        runner.join(5000);
+
+        assertFalse(runner.isAlive());
+        assertFalse(locatingAtReturn.get());
+        assertEquals(2, created.size());
+        for (FakeClassifier classifier : created) {
+            assertTrue(classifier.closed);
+        }
+    }
+
+    @Test
+    public void formatOf_followsExtension() {
+        assertEquals(BatchResultWriter.FORMAT_JSONL, BatchResultWriter.formatOf("out.JSONL"));
+        assertEquals(BatchResultWriter.FORMAT_CSV, BatchResultWriter.formatOf("out.csv"));
+    }
+}
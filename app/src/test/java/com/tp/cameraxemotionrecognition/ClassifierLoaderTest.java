@@ -0,0 +1,123 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+public class ClassifierLoaderTest {
+
+    /** Records the batch size of every run. */
+    private static class RecordingClassifier extends FakeClassifier {
+        final List<Integer> batches = new ArrayList<>();
+
+        RecordingClassifier(FakeClassifier.Clock clock) {
+            super("cpu", clock, 10);
+        }
+
+        @Override
+        public int getMaxBatchSize() {
+            return 4;
+        }
+
+        @Override
+        public void run(ByteBuffer input, int count, float[][] output) {
+            assertEquals(count * 4 * 4 * 3 * 4, input.capacity());
+            assertEquals(count, output.length);
+            batches.add(count);
+            clock.now += runNanosByThreads[0];
+        }
+    }
+
+    @Test
+    public void load_publishesAfterBatchOneThenWarmsUpLargestBatch() throws IOException {
+        final FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        final RecordingClassifier classifier = new RecordingClassifier(clock);
+        ClassifierLoader loader = new ClassifierLoader(new ClassifierLoader.Loader() {
+            @Override
+            public EmotionClassifier load() {
+                clock.now += 300 * FakeClassifier.MS;
+                return classifier;
+            }
+        }, 2, clock);
+        assertNull(loader.getIfReady());
+
+        loader.load();
+        assertSame(classifier, loader.getIfReady());
+        assertEquals(ClassifierLoader.STATE_READY, loader.getState());
+        assertEquals(Arrays.asList(1, 1), classifier.batches);
+        assertEquals(300, loader.getLoadMillis());
+        assertEquals(20, loader.getWarmupMillis());
+
+        loader.warmUpLargerBatches();
+        loader.warmUpLargerBatches();
+        assertEquals(Arrays.asList(1, 1, 4, 4), classifier.batches);
+
+        loader.close();
+        assertTrue(classifier.closed);
+    }
+
+    @Test
+    public void getIfReady_doesNotBlockWhileLoading() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final FakeClassifier classifier = new FakeClassifier("cpu", new FakeClassifier.Clock(), 1);
+        ClassifierLoader loader = new ClassifierLoader(new ClassifierLoader.Loader() {
+            @Override
+            public EmotionClassifier load() throws IOException {
+                try {
+                    release.await();
+                } catch (InterruptedException e) {
+                    throw new IOException(e);
+                }
+                return classifier;
+            }
+        }, 1, FrameScheduler.SYSTEM_CLOCK);
+
+        loader.start();
+        assertEquals(ClassifierLoader.STATE_LOADING, loader.getState());
+        assertNull(loader.getIfReady());
+        assertNull(loader.await(10, TimeUnit.MILLISECONDS));
+
+        release.countDown();
+        assertSame(classifier, loader.await(5, TimeUnit.SECONDS));
+        assertTrue(loader.isReady());
+        loader.close();
+    }
+
+    @Test
+    public void close_whileLoadingReleasesClassifierWhenLoaded() throws IOException {
+        final FakeClassifier classifier = new FakeClassifier("cpu", new FakeClassifier.Clock(), 1);
+        final ClassifierLoader[] self = new ClassifierLoader[1];
+        self[0] = new ClassifierLoader(new ClassifierLoader.Loader() {
+            @Override
+            public EmotionClassifier load() {
+                self[0].close();
+                return classifier;
+            }
+        }, 1, FrameScheduler.SYSTEM_CLOCK);
+
+        self[0].load();
+        assertTrue(classifier.closed);
+        assertEquals(ClassifierLoader.STATE_CLOSED, self[0].getState());
+    }
+
+    @Test(expected = IOException.class)
+    public void getIfReady_throwsWhenLoadFailed() throws IOException {
+        ClassifierLoader loader = new ClassifierLoader(new ClassifierLoader.Loader() {
+            @Override
+            public EmotionClassifier load() throws IOException {
+                throw new IOException("no model");
+            }
+        }, 1, FrameScheduler.SYSTEM_CLOCK);
+        loader.load();
+        assertEquals(ClassifierLoader.STATE_FAILED, loader.getState());
+        loader.getIfReady();
+    }
+}
@@ -0,0 +1,36 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class DetectionProfileTest {
+
+    @Test
+    public void forName_findsBuiltInProfiles() {
+        assertSame(DetectionProfile.FAST, DetectionProfile.forName("fast"));
+        assertSame(DetectionProfile.ACCURATE, DetectionProfile.forName("ACCURATE"));
+        assertNull(DetectionProfile.forName("adaptive"));
+        assertNull(DetectionProfile.forName(null));
+    }
+
+    @Test
+    public void withAnalysisSize_keepsDetectorOptions() {
+        DetectionProfile profile = new DetectionProfile.Builder("custom")
+                .setPerformanceMode(DetectionProfile.PERFORMANCE_ACCURATE)
+                .setMinFaceSize(0.15f)
+                .setLandmarks(true)
+                .setTracking(false)
+                .build();
+        DetectionProfile resized = profile.withAnalysisSize(320, 240);
+
+        assertEquals(320, resized.getAnalysisWidth());
+        assertEquals(240, resized.getAnalysisHeight());
+        assertEquals(DetectionProfile.PERFORMANCE_ACCURATE, resized.getPerformanceMode());
+        assertEquals(0.15f, resized.getMinFaceSize(), 0f);
+        assertTrue(resized.isLandmarks());
+        assertFalse(resized.isContours());
+        assertFalse(resized.isTracking());
+        assertEquals(640, profile.getAnalysisWidth());
+    }
+}
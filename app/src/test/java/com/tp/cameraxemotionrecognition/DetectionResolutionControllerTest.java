@@ -0,0 +1,106 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class DetectionResolutionControllerTest {
+    private static final long MS = 1_000_000L;
+
+    private final FakeClassifier.Clock clock = new FakeClassifier.Clock();
+    private final List<Integer> changes = new ArrayList<>();
+
+    private DetectionResolutionController controller() {
+        DetectionResolutionController controller = new DetectionResolutionController.Builder()
+                .setLevels(240, 360, 480, 720)
+                .setInitialLevel(2)
+                .setMinFacePixels(64)
+                .setDownscaleMargin(1.5f)
+                .setStableFrames(3)
+                .setMissFrames(5)
+                .setCooldownMs(1000)
+                .setClock(clock)
+                .build();
+        controller.setListener(new DetectionResolutionController.Listener() {
+            @Override
+            public void onLevelChanged(int level, int shortSide) {
+                changes.add(shortSide);
+            }
+        });
+        return controller;
+    }
+
+    /** Reports {@code frames} frames 100 ms apart. */
+    private void frames(DetectionResolutionController controller, int frames, int frameShortSide, int face) {
+        for (int i = 0; i < frames; i++) {
+            clock.now += 100 * MS;
+            controller.onFrame(frameShortSide, face);
+        }
+    }
+
+    @Test
+    public void largeFaces_stepDownUntilJustAboveMinimum() {
+        DetectionResolutionController controller = controller();
+        clock.now += 1000 * MS;
+        // 300 px at 480p would be 225 px at 360p, well above 1.5 * 64.
+        frames(controller, 3, 480, 300);
+        assertEquals(1, controller.getLevel());
+
+        // Cooldown: agreeing frames right after a change don't switch again.
+        frames(controller, 3, 360, 225);
+        assertEquals(1, controller.getLevel());
+        frames(controller, 10, 360, 225);
+        assertEquals(0, controller.getLevel());
+
+        // 150 px at 240p stays; 240p is the lowest level.
+        frames(controller, 30, 240, 150);
+        assertEquals(0, controller.getLevel());
+        assertEquals(2, changes.size());
+        assertEquals(240, (int) changes.get(1));
+    }
+
+    @Test
+    public void smallFaces_stepUp() {
+        DetectionResolutionController controller = controller();
+        clock.now += 1000 * MS;
+        frames(controller, 2, 480, 40);
+        // One face big enough in between resets the run.
+        frames(controller, 1, 480, 80);
+        frames(controller, 2, 480, 40);
+        assertEquals(2, controller.getLevel());
+        frames(controller, 1, 480, 40);
+        assertEquals(3, controller.getLevel());
+        assertEquals(720, controller.getShortSide());
+    }
+
+    @Test
+    public void faceBetweenThresholds_keepsLevel() {
+        DetectionResolutionController controller = controller();
+        clock.now += 1000 * MS;
+        // 100 px at 480p would be 75 px at 360p, under the 96 px margin.
+        frames(controller, 50, 480, 100);
+        assertEquals(2, controller.getLevel());
+        assertEquals(0, controller.getChangeCount());
+    }
+
+    @Test
+    public void missedFaces_stepUpButEmptySceneDoesNot() {
+        DetectionResolutionController controller = controller();
+        clock.now += 1000 * MS;
+        frames(controller, 50, 480, DetectionResolutionController.NO_FACES);
+        assertEquals(2, controller.getLevel());
+
+        frames(controller, 1, 480, 70);
+        frames(controller, 4, 480, DetectionResolutionController.NO_FACES);
+        assertEquals(2, controller.getLevel());
+        frames(controller, 1, 480, DetectionResolutionController.NO_FACES);
+        assertEquals(3, controller.getLevel());
+
+        // Only one step per loss: nothing seen at 720p since.
+        frames(controller, 50, 720, DetectionResolutionController.NO_FACES);
+        assertEquals(3, controller.getLevel());
+    }
+}
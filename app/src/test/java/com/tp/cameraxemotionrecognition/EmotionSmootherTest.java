@@ -0,0 +1,78 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EmotionSmootherTest {
+
+    private static float[] scores(int emotion, float confidence) {
+        float[] scores = new float[Emotions.NUM_CLASSES];
+        float rest = (1f - confidence) / (scores.length - 1);
+        for (int i = 0; i < scores.length; i++) {
+            scores[i] = i == emotion ? confidence : rest;
+        }
+        return scores;
+    }
+
+    @Test
+    public void firstUpdate_setsLabel() {
+        EmotionSmoother smoother = new EmotionSmoother(Emotions.NUM_CLASSES, 0.3f, 0.1f);
+        assertEquals(EmotionSmoother.NO_LABEL, smoother.getLabel());
+        smoother.update(scores(4, 0.9f));
+        assertEquals(4, smoother.getLabel());
+        assertEquals(0.9f, smoother.getScore(4), 1e-6f);
+    }
+
+    @Test
+    public void singleNoisyFrame_doesNotFlipLabel() {
+        EmotionSmoother smoother = new EmotionSmoother(Emotions.NUM_CLASSES, 0.3f, 0.1f);
+        for (int i = 0; i < 5; i++) {
+            smoother.update(scores(4, 0.8f));
+        }
+        smoother.update(scores(6, 0.9f));
+        assertEquals(4, smoother.getLabel());
+        smoother.update(scores(4, 0.8f));
+        assertEquals(4, smoother.getLabel());
+    }
+
+    @Test
+    public void sustainedChange_switchesLabel() {
+        EmotionSmoother smoother = new EmotionSmoother(Emotions.NUM_CLASSES, 0.3f, 0.1f);
+        smoother.update(scores(4, 0.8f));
+        int frames = 0;
+        while (smoother.getLabel() == 4) {
+            smoother.update(scores(6, 0.8f));
+            frames++;
+            assertTrue("label never switched", frames < 20);
+        }
+        assertEquals(6, smoother.getLabel());
+        // Argmax alone would have switched after 2 frames; the margin holds it one more.
+        assertEquals(3, frames);
+    }
+
+    @Test
+    public void smoothedDistribution_staysNormalized() {
+        EmotionSmoother smoother = new EmotionSmoother(Emotions.NUM_CLASSES, 0.5f, 0.1f);
+        smoother.update(scores(1, 0.6f));
+        smoother.update(scores(2, 0.7f));
+        float sum = 0f;
+        for (float score : smoother.getSmoothed()) {
+            sum += score;
+        }
+        assertEquals(1f, sum, 1e-5f);
+        float before = 0.4f / 7;
+        assertEquals(before + 0.5f * (0.7f - before), smoother.getScore(2), 1e-6f);
+    }
+
+    @Test
+    public void reset_clearsHistory() {
+        EmotionSmoother smoother = new EmotionSmoother(Emotions.NUM_CLASSES, 0.5f, 0.1f);
+        smoother.update(scores(1, 0.6f));
+        smoother.reset();
+        assertEquals(EmotionSmoother.NO_LABEL, smoother.getLabel());
+        assertEquals(0, smoother.getUpdateCount());
+        smoother.update(scores(3, 0.6f));
+        assertEquals(3, smoother.getLabel());
+    }
+}
@@ -0,0 +1,80 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class EmotionVotesTest {
+
+    @Test
+    public void singleFrame_majorityAndHistogram() {
+        EmotionVotes votes = new EmotionVotes(Emotions.NUM_CLASSES, 1);
+        assertEquals(EmotionVotes.NO_VOTES, votes.getMajority());
+        votes.add(4);
+        votes.add(6);
+        votes.add(4);
+        assertEquals(4, votes.getMajority());
+        assertEquals(2, votes.getCount(4));
+        assertEquals(1, votes.getCount(6));
+        assertEquals(3, votes.getTotalVotes());
+
+        votes.beginFrame();
+        assertEquals(EmotionVotes.NO_VOTES, votes.getMajority());
+        assertEquals(0, votes.getCount(4));
+    }
+
+    @Test
+    public void ties_brokenByWeightThenIndex() {
+        EmotionVotes votes = new EmotionVotes(Emotions.NUM_CLASSES, 1);
+        votes.add(6, 0.9f);
+        votes.add(2, 0.5f);
+        assertEquals(6, votes.getMajority());
+
+        votes.beginFrame();
+        votes.add(6);
+        votes.add(2);
+        assertEquals(2, votes.getMajority());
+    }
+
+    @Test
+    public void weightedMajority_followsConfidence() {
+        EmotionVotes votes = new EmotionVotes(Emotions.NUM_CLASSES, 1);
+        votes.add(1, 0.3f);
+        votes.add(1, 0.3f);
+        votes.add(5, 0.9f);
+        assertEquals(1, votes.getMajority());
+        assertEquals(5, votes.getWeightedMajority());
+        assertEquals(0.6f, votes.getWeight(1), 1e-6f);
+    }
+
+    @Test
+    public void window_dropsOldestFrame() {
+        EmotionVotes votes = new EmotionVotes(Emotions.NUM_CLASSES, 3);
+        votes.beginFrame();
+        votes.add(3, 1f);
+        votes.add(3, 1f);
+        votes.beginFrame();
+        votes.add(0, 1f);
+        votes.beginFrame();
+        votes.add(0, 0.5f);
+        assertEquals(3, votes.getMajority());
+        assertEquals(4, votes.getTotalVotes());
+
+        votes.beginFrame();
+        assertEquals(0, votes.getMajority());
+        assertEquals(0, votes.getCount(3));
+        assertEquals(0f, votes.getWeight(3), 0f);
+        assertEquals(2, votes.getTotalVotes());
+    }
+
+    @Test
+    public void reset_clearsWindow() {
+        EmotionVotes votes = new EmotionVotes(Emotions.NUM_CLASSES, 2);
+        votes.add(7);
+        votes.beginFrame();
+        votes.add(7);
+        votes.reset();
+        assertEquals(EmotionVotes.NO_VOTES, votes.getMajority());
+        assertArrayEquals(new int[Emotions.NUM_CLASSES], votes.getCounts());
+    }
+}
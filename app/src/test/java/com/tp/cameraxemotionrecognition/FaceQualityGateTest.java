@@ -0,0 +1,74 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class FaceQualityGateTest {
+    private static final int WIDTH = 200;
+    private static final int HEIGHT = 160;
+
+    private final FaceQualityGate gate = new FaceQualityGate.Builder()
+            .setMinFaceArea(40 * 40)
+            .setMaxAngles(30f, 20f, 25f)
+            .setMinSharpness(20f)
+            .setSharpnessGrid(16)
+            .setSharpnessScale(40)
+            .build();
+
+    /** A frame whose left half has fine detail and whose right half is flat gray. */
+    private static YuvFrame frame(int rotation) {
+        ByteBuffer y = ByteBuffer.allocateDirect(WIDTH * HEIGHT);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                int value = col < WIDTH / 2 ? ((col / 2 + row / 2) % 2 == 0 ? 40 : 200) : 120;
+                y.put(row * WIDTH + col, (byte) value);
+            }
+        }
+        ByteBuffer chroma = ByteBuffer.allocateDirect(WIDTH * HEIGHT / 4);
+        FrameMetadata metadata = new FrameMetadata.Builder()
+                .setWidth(WIDTH)
+                .setHeight(HEIGHT)
+                .setRotation(rotation)
+                .build();
+        return new YuvFrame(new YuvPlane(y, WIDTH, 1), new YuvPlane(chroma, WIDTH / 2, 1),
+                new YuvPlane(chroma, WIDTH / 2, 1), metadata);
+    }
+
+    @Test
+    public void check_rejectsSmallOffAngleAndBlurredFaces() {
+        YuvFrame frame = frame(0);
+        assertEquals(FaceQualityGate.TOO_SMALL, gate.check(frame, 10, 10, 40, 40, 0f, 0f, 0f));
+        assertEquals(FaceQualityGate.OFF_ANGLE, gate.check(frame, 10, 10, 90, 90, 45f, 0f, 0f));
+        assertEquals(FaceQualityGate.OFF_ANGLE, gate.check(frame, 10, 10, 90, 90, 0f, -21f, 0f));
+        assertEquals(FaceQualityGate.BLURRED, gate.check(frame, 110, 10, 190, 90, 0f, 0f, 0f));
+        assertEquals(0f, gate.getLastSharpness(), 0f);
+        assertEquals(FaceQualityGate.ACCEPTED, gate.check(frame, 10, 10, 90, 90, 0f, 0f, 0f));
+        assertTrue(gate.getLastSharpness() > 1000f);
+        assertEquals(1, gate.getRejectedCount(FaceQualityGate.TOO_SMALL));
+        assertEquals(2, gate.getRejectedCount(FaceQualityGate.OFF_ANGLE));
+        assertEquals(1, gate.getRejectedCount(FaceQualityGate.BLURRED));
+    }
+
+    @Test
+    public void check_scoresLargeFrontalFacesHigher() {
+        YuvFrame frame = frame(0);
+        assertEquals(FaceQualityGate.ACCEPTED, gate.check(frame, 0, 0, 90, 90, 0f, 0f, 0f));
+        float frontal = gate.getLastScore();
+        assertEquals(1f, frontal, 1e-6f);
+        assertEquals(FaceQualityGate.ACCEPTED, gate.check(frame, 0, 0, 90, 90, 15f, 0f, 0f));
+        assertEquals(0.75f, gate.getLastScore(), 1e-6f);
+        assertEquals(FaceQualityGate.ACCEPTED, gate.check(frame, 0, 0, 50, 50, 0f, 0f, 0f));
+        assertTrue(gate.getLastScore() < frontal);
+    }
+
+    @Test
+    public void check_readsFaceInSensorSpace() {
+        // Rotated 90 degrees clockwise, the left half of the sensor image is the upright top half.
+        YuvFrame frame = frame(90);
+        assertEquals(FaceQualityGate.ACCEPTED, gate.check(frame, 20, 20, 140, 80, 0f, 0f, 0f));
+        assertEquals(FaceQualityGate.BLURRED, gate.check(frame, 20, 120, 140, 180, 0f, 0f, 0f));
+    }
+}
@@ -0,0 +1,227 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FaceTrackerTest {
+
+    private static class FakeClock implements FrameScheduler.Clock {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+    private final List<FaceTracker.Track> selected = new ArrayList<>();
+
+    private FaceTracker.Builder builder() {
+        return new FaceTracker.Builder()
+                .setClock(clock)
+                .setReclassifyEveryFrames(5)
+                .setTtlMs(60_000)
+                .setMaxMissedFrames(2);
+    }
+
+    /** Runs one frame with the given boxes and classifies whatever the tracker selects. */
+    private List<FaceTracker.Track> frame(FaceTracker tracker, int[]... boxes) {
+        tracker.beginFrame();
+        List<FaceTracker.Track> tracks = new ArrayList<>();
+        for (int[] box : boxes) {
+            tracks.add(tracker.update(FaceTracker.NO_TRACKING_ID, box[0], box[1], box[2], box[3]));
+        }
+        tracker.selectForClassification(selected);
+        for (FaceTracker.Track track : selected) {
+            tracker.setEmotion(track, 4);
+        }
+        tracker.endFrame();
+        return tracks;
+    }
+
+    @Test
+    public void iou_ofBoxes() {
+        assertEquals(1f, FaceTracker.iou(0, 0, 10, 10, 0, 0, 10, 10), 1e-6f);
+        assertEquals(0f, FaceTracker.iou(0, 0, 10, 10, 10, 0, 20, 10), 1e-6f);
+        assertEquals(50f / 150f, FaceTracker.iou(0, 0, 10, 10, 5, 0, 15, 10), 1e-6f);
+    }
+
+    @Test
+    public void staticFace_isClassifiedEveryKFrames() {
+        FaceTracker tracker = builder().build();
+        int classified = 0;
+        long id = -1;
+        for (int i = 0; i < 20; i++) {
+            FaceTracker.Track track = frame(tracker, new int[]{100, 100, 200, 200}).get(0);
+            classified += selected.size();
+            if (id >= 0) {
+                assertEquals(id, track.getId());
+            }
+            id = track.getId();
+            assertEquals(4, track.getEmotion());
+        }
+        assertEquals(4, classified);
+        assertEquals(1, tracker.getTrackCount());
+        assertEquals(16, tracker.getCachedCount());
+    }
+
+    @Test
+    public void movedFace_isClassifiedAgain() {
+        FaceTracker tracker = builder().build();
+        frame(tracker, new int[]{100, 100, 200, 200});
+        frame(tracker, new int[]{102, 101, 202, 201});
+        assertTrue(selected.isEmpty());
+
+        // Still the same track, but far enough from where it was classified.
+        FaceTracker.Track track = frame(tracker, new int[]{130, 100, 230, 200}).get(0);
+        assertEquals(1, selected.size());
+        assertEquals(0, track.getId());
+    }
+
+    @Test
+    public void ttl_expiresCachedEmotion() {
+        FaceTracker tracker = builder().setTtlMs(1000).setReclassifyEveryFrames(1000).build();
+        frame(tracker, new int[]{0, 0, 50, 50});
+        clock.now += 500_000_000L;
+        frame(tracker, new int[]{0, 0, 50, 50});
+        assertTrue(selected.isEmpty());
+        clock.now += 600_000_000L;
+        frame(tracker, new int[]{0, 0, 50, 50});
+        assertEquals(1, selected.size());
+    }
+
+    @Test
+    public void trackingId_winsOverOverlap() {
+        FaceTracker tracker = builder().build();
+        tracker.beginFrame();
+        FaceTracker.Track a = tracker.update(7, 0, 0, 100, 100);
+        tracker.endFrame();
+
+        // The detector says it's face 7 even though it jumped across the frame.
+        tracker.beginFrame();
+        FaceTracker.Track b = tracker.update(7, 500, 500, 600, 600);
+        FaceTracker.Track c = tracker.update(8, 0, 0, 100, 100);
+        tracker.endFrame();
+        assertSame(a, b);
+        assertNotSame(a, c);
+        assertEquals(0, b.getSlot());
+        assertEquals(1, c.getSlot());
+    }
+
+    @Test
+    public void missingTracks_areDropped() {
+        FaceTracker tracker = builder().build();
+        frame(tracker, new int[]{0, 0, 50, 50}, new int[]{200, 0, 250, 50});
+        assertEquals(2, tracker.getTrackCount());
+        frame(tracker, new int[]{0, 0, 50, 50});
+        frame(tracker, new int[]{0, 0, 50, 50});
+        assertEquals(2, tracker.getTrackCount());
+        frame(tracker, new int[]{0, 0, 50, 50});
+        assertEquals(1, tracker.getTrackCount());
+    }
+
+    @Test
+    public void budget_prefersNewThenStalestTracks() {
+        FaceTracker tracker = builder().setReclassifyBudget(2).build();
+        int[] a = {0, 0, 50, 50};
+        int[] b = {100, 0, 150, 50};
+        int[] c = {200, 0, 250, 50};
+
+        List<FaceTracker.Track> tracks = frame(tracker, a, b, c);
+        assertEquals(2, selected.size());
+        assertEquals(FaceTracker.NO_EMOTION, tracks.get(2).getEmotion());
+
+        // The face left over is picked up in the next frame.
+        frame(tracker, a, b, c);
+        assertEquals(1, selected.size());
+        assertSame(tracks.get(2), selected.get(0));
+
+        // When all go stale together, the budget still caps the work per frame.
+        for (int i = 0; i < 3; i++) {
+            frame(tracker, a, b, c);
+            assertTrue(selected.isEmpty());
+        }
+        frame(tracker, a, b, c);
+        assertEquals(2, selected.size());
+        assertNotSame(tracks.get(2), selected.get(0));
+        assertNotSame(tracks.get(2), selected.get(1));
+    }
+
+    @Test
+    public void quality_ordersBudgetAndExcludesRejectedFaces() {
+        FaceTracker tracker = builder().setReclassifyBudget(2).build();
+        int[] a = {0, 0, 100, 100};
+        int[] b = {200, 0, 300, 100};
+        int[] c = {400, 0, 500, 100};
+        int[] d = {600, 0, 700, 100};
+
+        tracker.beginFrame();
+        FaceTracker.Track ta = tracker.update(FaceTracker.NO_TRACKING_ID, a[0], a[1], a[2], a[3]);
+        FaceTracker.Track tb = tracker.update(FaceTracker.NO_TRACKING_ID, b[0], b[1], b[2], b[3]);
+        FaceTracker.Track tc = tracker.update(FaceTracker.NO_TRACKING_ID, c[0], c[1], c[2], c[3]);
+        FaceTracker.Track td = tracker.update(FaceTracker.NO_TRACKING_ID, d[0], d[1], d[2], d[3]);
+        tracker.setQuality(ta, 0.3f);
+        tracker.setQuality(tb, 0f);
+        tracker.setQuality(tc, 0.9f);
+        tracker.setQuality(td, 0.6f);
+        tracker.selectForClassification(selected);
+        tracker.endFrame();
+
+        assertEquals(2, selected.size());
+        assertSame(tc, selected.get(0));
+        assertSame(td, selected.get(1));
+        assertEquals(1, tracker.getLowQualityCount());
+
+        // update() resets the quality for the next frame.
+        tracker.beginFrame();
+        assertEquals(1f, tracker.update(FaceTracker.NO_TRACKING_ID, b[0], b[1], b[2], b[3]).getQuality(), 0f);
+    }
+
+    @Test
+    public void pendingTrack_isNotSelectedAgainAndAgesFromSelection() {
+        FaceTracker tracker = builder().build();
+        int[] box = {100, 100, 200, 200};
+
+        // Frame 1 selects the new face; its scores only arrive two frames later.
+        tracker.beginFrame();
+        FaceTracker.Track track = tracker.update(FaceTracker.NO_TRACKING_ID, box[0], box[1], box[2], box[3]);
+        tracker.selectForClassification(selected);
+        tracker.endFrame();
+        assertEquals(1, selected.size());
+        List<FaceTracker.Track> inFlight = new ArrayList<>(selected);
+
+        frame(tracker, box);
+        assertTrue(selected.isEmpty());
+        frame(tracker, box);
+        assertTrue(selected.isEmpty());
+        tracker.setEmotion(inFlight.get(0), 2);
+        assertEquals(2, track.getEmotion());
+
+        // Aged from frame 1, so with K = 5 it is due again in frame 6, not frame 8.
+        frame(tracker, box);
+        frame(tracker, box);
+        assertTrue(selected.isEmpty());
+        frame(tracker, box);
+        assertEquals(1, selected.size());
+    }
+
+    @Test
+    public void cancelledTrack_isSelectedAgain() {
+        FaceTracker tracker = builder().build();
+        int[] box = {100, 100, 200, 200};
+        tracker.beginFrame();
+        FaceTracker.Track track = tracker.update(FaceTracker.NO_TRACKING_ID, box[0], box[1], box[2], box[3]);
+        tracker.selectForClassification(selected);
+        tracker.endFrame();
+
+        tracker.cancelClassification(track);
+        frame(tracker, box);
+        assertEquals(1, selected.size());
+        assertSame(track, selected.get(0));
+    }
+}
@@ -0,0 +1,93 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+
+/** Classifier whose runs only advance a fake clock, by a time that can depend on the thread count. */
+class FakeClassifier implements EmotionClassifier {
+    static final long MS = 1_000_000L;
+
+    static class Clock implements FrameScheduler.Clock {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    final String name;
+    final Clock clock;
+    // Run time by thread count; a single entry for backends without CPU threads.
+    final long[] runNanosByThreads;
+    int numThreads = 1;
+    int runs;
+    boolean closed;
+
+    FakeClassifier(String name, Clock clock, long runMs) {
+        this(name, clock, new long[]{runMs * MS});
+    }
+
+    FakeClassifier(String name, Clock clock, long[] runNanosByThreads) {
+        this.name = name;
+        this.clock = clock;
+        this.runNanosByThreads = runNanosByThreads;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public TensorFormat getInputFormat() {
+        return TensorFormat.FLOAT;
+    }
+
+    @Override
+    public int getInputSize() {
+        return 4;
+    }
+
+    @Override
+    public int getNumClasses() {
+        return Emotions.NUM_CLASSES;
+    }
+
+    @Override
+    public int getMaxBatchSize() {
+        return 1;
+    }
+
+    @Override
+    public void run(ByteBuffer input, int count, float[][] output) {
+        if (input.capacity() != 4 * 4 * 3 * 4) {
+            throw new IllegalArgumentException("Wrong input size " + input.capacity());
+        }
+        runs++;
+        clock.now += runNanosByThreads[numThreads - 1];
+    }
+
+    @Override
+    public int getNumThreads() {
+        return numThreads;
+    }
+
+    @Override
+    public boolean setNumThreads(int numThreads) {
+        if (runNanosByThreads.length == 1) {
+            return false;
+        }
+        this.numThreads = numThreads;
+        return true;
+    }
+
+    @Override
+    public long getLastInferenceTimeMs() {
+        return runNanosByThreads[numThreads - 1] / MS;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
@@ -0,0 +1,151 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class FrameBufferArenaTest {
+    private static final int SIZE = 224;
+    private static final int TENSOR_BYTES = 4 * SIZE * SIZE * 3;
+
+    @Test
+    public void inputViews_haveExactCapacityAndShareMemory() {
+        FrameBufferArena arena = new FrameBufferArena(SIZE, 4, Emotions.NUM_CLASSES);
+        for (int count = 1; count <= 4; count++) {
+            ByteBuffer input = arena.getInput(count);
+            assertEquals(count * TENSOR_BYTES, input.capacity());
+            assertEquals(0, input.position());
+            assertTrue(input.isDirect());
+            assertEquals(ByteOrder.nativeOrder(), input.order());
+            assertEquals(count, arena.getOutput(count).length);
+            assertEquals(Emotions.NUM_CLASSES, arena.getOutput(count)[0].length);
+        }
+        arena.getInput(4).putFloat(0, 42f);
+        assertEquals(42f, arena.getInput(1).getFloat(0), 0f);
+    }
+
+    @Test
+    public void batches_doNotOverlap() {
+        FrameBufferArena arena = new FrameBufferArena(SIZE, 2, 3, Emotions.NUM_CLASSES, TensorFormat.FLOAT);
+        assertEquals(3, arena.getMaxBatches());
+        for (int batch = 0; batch < 3; batch++) {
+            ByteBuffer input = arena.getInput(batch, 2);
+            assertEquals(2 * TENSOR_BYTES, input.capacity());
+            input.putFloat(2 * TENSOR_BYTES - 4, batch + 1);
+            input.putFloat(0, -(batch + 1));
+        }
+        for (int batch = 0; batch < 3; batch++) {
+            assertEquals(batch + 1, arena.getInput(batch, 2).getFloat(2 * TENSOR_BYTES - 4), 0f);
+            assertEquals(-(batch + 1), arena.getInput(batch, 1).getFloat(0), 0f);
+        }
+        assertNotSame(arena.getOutput(0, 2), arena.getOutput(1, 2));
+        assertSame(arena.getOutput(2), arena.getOutput(0, 2));
+    }
+
+    @Test
+    public void ensureBatches_growsOnlyWhenNeededAndKeepsContents() {
+        FrameBufferArena arena = new FrameBufferArena(SIZE, 4, 1, Emotions.NUM_CLASSES, TensorFormat.FLOAT);
+        arena.getInput(0, 4).putFloat(0, 7f);
+        float[][] output = arena.getOutput(0, 4);
+        int allocations = arena.getAllocationCount();
+
+        arena.ensureBatches(1);
+        assertEquals(allocations, arena.getAllocationCount());
+        arena.ensureBatches(2);
+
+        assertEquals(2, arena.getMaxBatches());
+        assertEquals(allocations + 1 + 4, arena.getAllocationCount());
+        assertEquals(7f, arena.getInput(0, 1).getFloat(0), 0f);
+        assertSame(output, arena.getOutput(0, 4));
+        arena.getInput(1, 4).putFloat(0, 9f);
+        assertEquals(7f, arena.getInput(0, 1).getFloat(0), 0f);
+    }
+
+    /** Bytes allocated so far by the calling thread, or -1 if this JVM can't tell. */
+    private static long allocatedBytes() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        if (!(bean instanceof com.sun.management.ThreadMXBean)) {
+            return -1;
+        }
+        return ((com.sun.management.ThreadMXBean) bean).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    /**
+     * One frame through the pure-Java part of preprocess, classify and aggregate: wrap, scene
+     * gate, quality gate, tracking, crops into the arena, scores and votes.
+     */
+    private static void runFrame(int i, YuvFrame frame, ByteBuffer y, ByteBuffer uv, SceneChangeGate sceneGate,
+                                 FaceQualityGate qualityGate, FaceTracker tracker, List<FaceTracker.Track> toClassify,
+                                 YuvTensorConverter converter, FrameBufferArena arena, EmotionVotes votes) {
+        frame.reset(640, 480, 90);
+        frame.setPlane(0, y, 640, 1);
+        frame.setPlane(1, uv, 640, 2);
+        frame.setPlane(2, uv, 640, 2);
+        sceneGate.shouldAnalyze(frame.getYPlane(), 640, 480);
+        int faces = 1 + i % 4;
+        tracker.beginFrame();
+        for (int face = 0; face < faces; face++) {
+            int left = face * 110;
+            FaceTracker.Track track = tracker.update(FaceTracker.NO_TRACKING_ID, left, 10, left + 100, 110);
+            qualityGate.check(frame, left, 10, left + 100, 110, 0f, 0f, 0f);
+            tracker.setQuality(track, 1f);
+        }
+        tracker.selectForClassification(toClassify);
+        tracker.endFrame();
+        int count = toClassify.size();
+        ByteBuffer input = arena.getInput(0, Math.max(1, count));
+        for (int face = 0; face < count; face++) {
+            FaceTracker.Track track = toClassify.get(face);
+            frame.convertFace(converter, track.getLeft(), track.getTop(), track.getRight(), track.getBottom(), input);
+        }
+        frame.release();
+        float[][] output = arena.getOutput(0, Math.max(1, count));
+        votes.beginFrame();
+        for (int face = 0; face < count; face++) {
+            output[face][(i + face) % Emotions.NUM_CLASSES] = 1f;
+            tracker.setScores(toClassify.get(face), output[face]);
+            int emotion = toClassify.get(face).getEmotion();
+            votes.add(emotion, toClassify.get(face).getSmoother().getScore(emotion));
+        }
+        votes.getMajority();
+    }
+
+    @Test
+    public void steadyState_allocatesNothing() {
+        Assume.assumeTrue(allocatedBytes() >= 0);
+        FrameBufferArena arena = new FrameBufferArena(SIZE, 4, Emotions.NUM_CLASSES);
+        YuvTensorConverter converter = new YuvTensorConverter(SIZE);
+        ByteBuffer y = ByteBuffer.allocateDirect(640 * 480);
+        ByteBuffer uv = ByteBuffer.allocateDirect(640 * 240);
+        YuvFrame frame = new YuvFrame();
+        SceneChangeGate sceneGate = new SceneChangeGate.Builder().build();
+        FaceQualityGate qualityGate = new FaceQualityGate.Builder().setMinSharpness(0f).build();
+        // Every frame is classified again, so the crop path runs each time
+        FaceTracker tracker = new FaceTracker.Builder().setReclassifyEveryFrames(1).build();
+        List<FaceTracker.Track> toClassify = new ArrayList<>();
+        EmotionVotes votes = new EmotionVotes(Emotions.NUM_CLASSES, 3);
+
+        // First frames create the tracks, their smoothers and the frame geometry
+        for (int i = 0; i < 200; i++) {
+            runFrame(i, frame, y, uv, sceneGate, qualityGate, tracker, toClassify, converter, arena, votes);
+        }
+        int allocations = arena.getAllocationCount();
+        long overhead = -(allocatedBytes() - allocatedBytes());
+        long before = allocatedBytes();
+        for (int i = 0; i < 200; i++) {
+            runFrame(i, frame, y, uv, sceneGate, qualityGate, tracker, toClassify, converter, arena, votes);
+        }
+        long allocated = allocatedBytes() - before - overhead;
+
+        assertEquals(allocations, arena.getAllocationCount());
+        assertEquals("bytes allocated over 200 frames", 0, allocated);
+    }
+}
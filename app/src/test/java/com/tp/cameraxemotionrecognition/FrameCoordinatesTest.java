@@ -0,0 +1,131 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameCoordinatesTest {
+    private static final int WIDTH = 5;
+    private static final int HEIGHT = 3;
+
+    private static FrameCoordinates coordinates(int rotation, boolean mirrored) {
+        return new FrameCoordinates(new FrameMetadata.Builder()
+                .setWidth(WIDTH).setHeight(HEIGHT).setRotation(rotation).setMirrored(mirrored).build());
+    }
+
+    /** Sensor grid where every pixel holds its own sensor index. */
+    private static int[][] sensorIndices() {
+        int[][] grid = new int[HEIGHT][WIDTH];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                grid[row][col] = row * WIDTH + col;
+            }
+        }
+        return grid;
+    }
+
+    /** Rotates a grid 90 degrees clockwise, like Matrix.postRotate(90) does to a bitmap. */
+    private static int[][] rotateClockwise(int[][] grid) {
+        int rows = grid.length;
+        int cols = grid[0].length;
+        int[][] rotated = new int[cols][rows];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                rotated[col][rows - 1 - row] = grid[row][col];
+            }
+        }
+        return rotated;
+    }
+
+    private static int[][] flipHorizontally(int[][] grid) {
+        int cols = grid[0].length;
+        int[][] flipped = new int[grid.length][cols];
+        for (int row = 0; row < grid.length; row++) {
+            for (int col = 0; col < cols; col++) {
+                flipped[row][cols - 1 - col] = grid[row][col];
+            }
+        }
+        return flipped;
+    }
+
+    /** What rotating and then mirroring the whole frame, as BitmapUtils.rotateBitmap does, gives. */
+    private static int[][] uprightIndices(int rotation, boolean mirrored) {
+        int[][] grid = sensorIndices();
+        for (int r = 0; r < rotation; r += 90) {
+            grid = rotateClockwise(grid);
+        }
+        return mirrored ? flipHorizontally(grid) : grid;
+    }
+
+    @Test
+    public void everyPixel_matchesRotatedAndMirroredFrame() {
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            for (boolean mirrored : new boolean[]{false, true}) {
+                String config = "rotation " + rotation + (mirrored ? " mirrored" : "");
+                FrameCoordinates coordinates = coordinates(rotation, mirrored);
+                int[][] upright = uprightIndices(rotation, mirrored);
+                assertEquals(config, upright[0].length, coordinates.getUprightWidth());
+                assertEquals(config, upright.length, coordinates.getUprightHeight());
+
+                for (int y = 0; y < upright.length; y++) {
+                    for (int x = 0; x < upright[0].length; x++) {
+                        int sx = coordinates.toSensorX(x, y);
+                        int sy = coordinates.toSensorY(x, y);
+                        assertEquals(config + " at " + x + "," + y, upright[y][x], sy * WIDTH + sx);
+                        assertEquals(config, x, coordinates.toUprightX(sx, sy));
+                        assertEquals(config, y, coordinates.toUprightY(sx, sy));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void everyRect_mapsToTheSensorPixelsItCovers() {
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            for (boolean mirrored : new boolean[]{false, true}) {
+                FrameCoordinates coordinates = coordinates(rotation, mirrored);
+                int[][] upright = uprightIndices(rotation, mirrored);
+                int[] sensor = new int[4];
+                int[] back = new int[4];
+                for (int top = 0; top < upright.length; top++) {
+                    for (int bottom = top + 1; bottom <= upright.length; bottom++) {
+                        for (int left = 0; left < upright[0].length; left++) {
+                            for (int right = left + 1; right <= upright[0].length; right++) {
+                                String config = "rotation " + rotation + (mirrored ? " mirrored" : "")
+                                        + " rect " + left + "," + top + "," + right + "," + bottom;
+                                coordinates.toSensorRect(left, top, right, bottom, sensor);
+                                assertEquals(config, (right - left) * (bottom - top),
+                                        (sensor[2] - sensor[0]) * (sensor[3] - sensor[1]));
+                                // Every upright pixel of the rect lands inside the sensor rect.
+                                for (int y = top; y < bottom; y++) {
+                                    for (int x = left; x < right; x++) {
+                                        int sx = upright[y][x] % WIDTH;
+                                        int sy = upright[y][x] / WIDTH;
+                                        assertTrue(config, sx >= sensor[0] && sx < sensor[2]);
+                                        assertTrue(config, sy >= sensor[1] && sy < sensor[3]);
+                                    }
+                                }
+                                coordinates.toUprightRect(sensor[0], sensor[1], sensor[2], sensor[3], back);
+                                assertArrayEquals(config, new int[]{left, top, right, bottom}, back);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void isInside_usesUprightSize() {
+        FrameCoordinates coordinates = coordinates(90, false);
+        assertTrue(coordinates.isInside(HEIGHT - 1, WIDTH - 1));
+        assertFalse(coordinates.isInside(HEIGHT, 0));
+        assertFalse(coordinates.isInside(0, -1));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void unknownRotation_isRejected() {
+        coordinates(45, false);
+    }
+}
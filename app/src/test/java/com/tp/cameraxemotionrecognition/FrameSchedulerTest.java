@@ -0,0 +1,112 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class FrameSchedulerTest {
+    private static final long MS = 1_000_000L;
+
+    private static class FakeClock implements FrameScheduler.Clock {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+
+        void advanceMs(long ms) {
+            now += ms * MS;
+        }
+    }
+
+    @Test
+    public void acquire_limitsToTargetRate() {
+        FakeClock clock = new FakeClock();
+        FrameScheduler scheduler = new FrameScheduler(clock, 10f, 1);
+
+        long ticket = scheduler.acquire();
+        assertNotEquals(FrameScheduler.SKIPPED, ticket);
+        clock.advanceMs(1);
+        scheduler.finish(ticket);
+
+        // Frames at 30 fps: only every 100 ms one is accepted.
+        int accepted = 0;
+        for (int i = 0; i < 30; i++) {
+            clock.advanceMs(33);
+            long t = scheduler.acquire();
+            if (t != FrameScheduler.SKIPPED) {
+                accepted++;
+                scheduler.finish(t);
+            }
+        }
+        assertTrue("accepted " + accepted, accepted >= 9 && accepted <= 10);
+        assertEquals(31, scheduler.getReceivedCount());
+        assertEquals(31 - 1 - accepted, scheduler.getSkippedCount());
+    }
+
+    @Test
+    public void acquire_skipsWhileBacklogIsFull() {
+        FakeClock clock = new FakeClock();
+        FrameScheduler scheduler = new FrameScheduler(clock, 1000f, 1);
+
+        long ticket = scheduler.acquire();
+        clock.advanceMs(50);
+        assertEquals(FrameScheduler.SKIPPED, scheduler.acquire());
+        assertEquals(1, scheduler.getInFlight());
+
+        scheduler.finish(ticket);
+        assertEquals(0, scheduler.getInFlight());
+        clock.advanceMs(50);
+        assertNotEquals(FrameScheduler.SKIPPED, scheduler.acquire());
+    }
+
+    @Test
+    public void interval_adaptsToLatency() {
+        FakeClock clock = new FakeClock();
+        FrameScheduler scheduler = new FrameScheduler(clock, 30f, 1);
+
+        // Every analysis takes 200 ms, far slower than the 33 ms target.
+        for (int i = 0; i < 20; i++) {
+            long ticket = scheduler.acquire();
+            assertNotEquals(FrameScheduler.SKIPPED, ticket);
+            clock.advanceMs(200);
+            scheduler.finish(ticket);
+            clock.advanceMs(scheduler.getIntervalNanos() / MS);
+        }
+        assertEquals(200 * MS, scheduler.getSmoothedLatencyNanos());
+        assertEquals(200 * MS, scheduler.getIntervalNanos());
+
+        // Once the device speeds up, the interval falls back towards the target.
+        for (int i = 0; i < 50; i++) {
+            clock.advanceMs(scheduler.getIntervalNanos() / MS + 1);
+            long ticket = scheduler.acquire();
+            assertNotEquals(FrameScheduler.SKIPPED, ticket);
+            clock.advanceMs(5);
+            scheduler.finish(ticket);
+        }
+        assertEquals(1_000_000_000L / 30, scheduler.getIntervalNanos());
+    }
+
+    @Test
+    public void finish_ignoresSkippedTicket() {
+        FrameScheduler scheduler = new FrameScheduler(new FakeClock(), 5f, 1);
+        scheduler.finish(FrameScheduler.SKIPPED);
+        assertEquals(0, scheduler.getCompletedCount());
+        assertEquals(0, scheduler.getInFlight());
+    }
+
+    @Test
+    public void cancel_freesSlotWithoutLatencySample() {
+        FakeClock clock = new FakeClock();
+        FrameScheduler scheduler = new FrameScheduler(clock, 10f, 1);
+        long ticket = scheduler.acquire();
+        clock.advanceMs(500);
+        scheduler.cancel(ticket);
+
+        assertEquals(0, scheduler.getInFlight());
+        assertEquals(0, scheduler.getCompletedCount());
+        assertEquals(100 * MS, scheduler.getIntervalNanos());
+        assertNotEquals(FrameScheduler.SKIPPED, scheduler.acquire());
+    }
+}
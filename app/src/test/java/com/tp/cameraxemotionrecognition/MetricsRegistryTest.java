@@ -0,0 +1,135 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+
+import static org.junit.Assert.*;
+
+public class MetricsRegistryTest {
+    private static final long US = 1000L;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void bucket_boundsContainTheirValues() {
+        for (long micros = 0; micros < 1_000_000; micros += 1 + micros / 7) {
+            int bucket = MetricsRegistry.Histogram.bucket(micros);
+            assertTrue(micros + " < upper bound", micros < MetricsRegistry.Histogram.bucketUpperBound(bucket));
+            if (bucket > 0) {
+                assertTrue(micros + " >= lower bound", micros >= MetricsRegistry.Histogram.bucketUpperBound(bucket - 1));
+            }
+        }
+        // Huge values land in the last bucket instead of overflowing.
+        assertEquals(MetricsRegistry.Histogram.BUCKETS - 1, MetricsRegistry.Histogram.bucket(Long.MAX_VALUE / 1000));
+    }
+
+    @Test
+    public void snapshot_summarizesHistogram() {
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Histogram inference = registry.histogram("inference");
+        for (int i = 1; i <= 100; i++) {
+            inference.record(i * 100 * US);
+        }
+
+        MetricsRegistry.HistogramSnapshot h = registry.snapshot().histograms.get("inference");
+        assertEquals(100, h.count);
+        assertEquals(5050, h.meanMicros);
+        assertEquals(10_000, h.maxMicros);
+        // Bucket upper bounds: within 25% above the exact percentile.
+        assertTrue("p50 " + h.p50Micros, h.p50Micros > 5000 && h.p50Micros <= 6250);
+        assertTrue("p90 " + h.p90Micros, h.p90Micros > 9000 && h.p90Micros <= 11250);
+        assertTrue("p99 " + h.p99Micros, h.p99Micros > 9900 && h.p99Micros <= 12375);
+        assertSame(inference, registry.histogram("inference"));
+    }
+
+    @Test
+    public void snapshot_readsCountersAndGauges() {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.counter("frames_received").add(3);
+        registry.counter("frames_received").increment();
+        final long[] depth = {2};
+        registry.gauge("queue_depth", new MetricsRegistry.Gauge() {
+            @Override
+            public long getValue() {
+                return depth[0];
+            }
+        });
+
+        MetricsRegistry.Snapshot snapshot = registry.snapshot();
+        assertEquals(4L, (long) snapshot.counters.get("frames_received"));
+        assertEquals(2L, (long) snapshot.gauges.get("queue_depth"));
+        depth[0] = 5;
+        assertEquals(5L, (long) registry.snapshot().gauges.get("queue_depth"));
+
+        String json = snapshot.toJson();
+        assertTrue(json, json.contains("\"counters\":{\"frames_received\":4}"));
+        assertTrue(json, json.contains("\"gauges\":{\"queue_depth\":2}"));
+    }
+
+    @Test
+    public void dump_appendsJsonLinesAndRotates() throws IOException {
+        MetricsRegistry registry = new MetricsRegistry();
+        registry.histogram("detect").record(20_000 * US);
+        File file = new File(folder.getRoot(), "metrics.jsonl");
+
+        registry.dump(file, 1 << 20);
+        registry.dump(file, 1 << 20);
+        assertEquals(2, countLines(file));
+
+        // Over the limit: the next dump starts a new file.
+        registry.dump(file, 1);
+        assertEquals(1, countLines(file));
+        assertEquals(2, countLines(new File(folder.getRoot(), "metrics.jsonl.1")));
+    }
+
+    @Test
+    public void record_allocatesNothing() {
+        ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        Assume.assumeTrue(bean instanceof com.sun.management.ThreadMXBean);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) bean;
+        Assume.assumeTrue(threads.isThreadAllocatedMemorySupported());
+
+        MetricsRegistry registry = new MetricsRegistry();
+        MetricsRegistry.Histogram histogram = registry.histogram("inference");
+        MetricsRegistry.Counter counter = registry.counter("faces_classified");
+        // Warm up so class loading and JIT don't count.
+        for (int i = 0; i < 20_000; i++) {
+            histogram.record(i * US);
+            counter.increment();
+        }
+
+        long thread = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(thread);
+        for (int i = 0; i < 100_000; i++) {
+            histogram.record(i * 37 * US);
+            counter.add(2);
+        }
+        long allocated = threads.getThreadAllocatedBytes(thread) - before;
+        assertTrue("allocated " + allocated + " bytes", allocated < 1024);
+    }
+
+    private static int countLines(File file) throws IOException {
+        BufferedReader reader = new BufferedReader(new FileReader(file));
+        try {
+            int lines = 0;
+            String line;
+            while ((line = reader.readLine()) != null) {
+                assertTrue(line, line.startsWith("{\"time_ms\":") && line.endsWith("}}"));
+                lines++;
+            }
+            return lines;
+        } finally {
+            reader.close();
+        }
+    }
+}
@@ -0,0 +1,122 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class PipelineStageTest {
+    private static final long MS = 1_000_000L;
+
+    private static class FakeClock implements FrameScheduler.Clock {
+        long now;
+
+        @Override
+        public long nanoTime() {
+            return now;
+        }
+    }
+
+    /** Runs tasks only when asked, like a busy worker thread. */
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+    private final ManualExecutor executor = new ManualExecutor();
+    private final List<Integer> processed = new ArrayList<>();
+    private final List<Integer> dropped = new ArrayList<>();
+
+    private PipelineStage<Integer> stage(int capacity, final long processMs) {
+        return new PipelineStage<>("test", capacity, executor,
+                new PipelineStage.Handler<Integer>() {
+                    @Override
+                    public void process(Integer item) {
+                        clock.now += processMs * MS;
+                        processed.add(item);
+                    }
+                },
+                new PipelineStage.DropListener<Integer>() {
+                    @Override
+                    public void onDropped(Integer item) {
+                        dropped.add(item);
+                    }
+                }, clock);
+    }
+
+    @Test
+    public void offer_dropsOldestWhenFull() {
+        PipelineStage<Integer> stage = stage(2, 0);
+        for (int i = 1; i <= 5; i++) {
+            stage.offer(i);
+        }
+        assertEquals(2, stage.getQueueDepth());
+        assertEquals(Arrays.asList(1, 2, 3), dropped);
+        // One drain task for the whole burst.
+        assertEquals(1, executor.tasks.size());
+
+        executor.runAll();
+        assertEquals(Arrays.asList(4, 5), processed);
+        assertEquals(0, stage.getQueueDepth());
+        assertEquals(2, stage.getMaxQueueDepth());
+        assertEquals(5, stage.getOfferedCount());
+        assertEquals(2, stage.getProcessedCount());
+        assertEquals(3, stage.getDroppedCount());
+    }
+
+    @Test
+    public void offer_afterDrainSchedulesAgain() {
+        PipelineStage<Integer> stage = stage(1, 0);
+        stage.offer(1);
+        executor.runAll();
+        stage.offer(2);
+        assertEquals(1, executor.tasks.size());
+        executor.runAll();
+        assertEquals(Arrays.asList(1, 2), processed);
+        assertTrue(dropped.isEmpty());
+    }
+
+    @Test
+    public void getOccupancy_isBusyFractionOfWindow() {
+        PipelineStage<Integer> stage = stage(4, 30);
+        stage.offer(1);
+        stage.offer(2);
+        executor.runAll();
+        clock.now += 40 * MS;
+        // 60 ms busy out of 100 ms.
+        assertEquals(0.6f, stage.getOccupancy(), 1e-6f);
+
+        stage.resetStats();
+        clock.now += 50 * MS;
+        assertEquals(0f, stage.getOccupancy(), 0f);
+        assertEquals(0, stage.getMaxQueueDepth());
+    }
+
+    @Test
+    public void close_dropsWaitingAndLaterItems() {
+        PipelineStage<Integer> stage = stage(4, 0);
+        stage.offer(1);
+        stage.offer(2);
+        stage.close();
+        stage.offer(3);
+        executor.runAll();
+        assertTrue(processed.isEmpty());
+        assertEquals(Arrays.asList(1, 2, 3), dropped);
+    }
+}
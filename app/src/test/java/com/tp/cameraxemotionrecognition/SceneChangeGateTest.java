@@ -0,0 +1,109 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class SceneChangeGateTest {
+    private static final long MS = 1_000_000L;
+    private static final int WIDTH = 64;
+    private static final int HEIGHT = 48;
+
+    private final FakeClassifier.Clock clock = new FakeClassifier.Clock();
+
+    private SceneChangeGate gate() {
+        return new SceneChangeGate.Builder()
+                .setGrid(8, 6)
+                .setSamplesPerCell(2)
+                .setCellThreshold(10)
+                .setMinChangedCells(2)
+                .setFacesRefreshMs(500)
+                .setEmptyRefreshMs(2000)
+                .setClock(clock)
+                .build();
+    }
+
+    /** A luma plane with padding at the end of every row, filled with {@code value}. */
+    private static YuvPlane plane(int value) {
+        int rowStride = WIDTH + 16;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(rowStride * HEIGHT);
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) value);
+        }
+        return new YuvPlane(buffer, rowStride, 1);
+    }
+
+    /** Paints the rectangle from {@code left, top} to {@code right, bottom}, exclusive. */
+    private static YuvPlane withRect(YuvPlane plane, int left, int top, int right, int bottom, int value) {
+        for (int y = top; y < bottom; y++) {
+            for (int x = left; x < right; x++) {
+                plane.getBuffer().put(y * plane.getRowStride() + x, (byte) value);
+            }
+        }
+        return plane;
+    }
+
+    private boolean check(SceneChangeGate gate, YuvPlane plane) {
+        clock.now += 100 * MS;
+        return gate.shouldAnalyze(plane, WIDTH, HEIGHT);
+    }
+
+    @Test
+    public void staticScene_skippedUntilRefresh() {
+        SceneChangeGate gate = gate();
+        gate.setFacesPresent(false);
+        assertTrue(check(gate, plane(80)));
+        int analyzed = 0;
+        for (int i = 0; i < 40; i++) {
+            if (check(gate, plane(80))) {
+                analyzed++;
+            }
+        }
+        // 4 s of frames 100 ms apart, refreshed every 2 s
+        assertEquals(2, analyzed);
+        assertEquals(38, gate.getUnchangedCount());
+
+        gate.setFacesPresent(true);
+        analyzed = 0;
+        for (int i = 0; i < 40; i++) {
+            if (check(gate, plane(80))) {
+                analyzed++;
+            }
+        }
+        assertEquals(8, analyzed);
+    }
+
+    @Test
+    public void newObject_isAnalyzedButBrightnessShiftIsNot() {
+        SceneChangeGate gate = gate();
+        gate.setFacesPresent(false);
+        assertTrue(check(gate, plane(80)));
+        // Auto exposure brightening the whole frame
+        assertFalse(check(gate, plane(110)));
+        // One 8x8 cell changing is under minChangedCells, two are not
+        assertFalse(check(gate, withRect(plane(80), 0, 0, 8, 8, 200)));
+        assertTrue(check(gate, withRect(plane(80), 16, 16, 32, 32, 200)));
+        assertFalse(check(gate, withRect(plane(80), 16, 16, 32, 32, 200)));
+        assertEquals(0, gate.getLastChangedCells());
+    }
+
+    @Test
+    public void sizeChangeOrReset_analyzesNextFrame() {
+        SceneChangeGate gate = gate();
+        assertTrue(check(gate, plane(80)));
+        assertFalse(check(gate, plane(80)));
+        clock.now += 100 * MS;
+        assertTrue(gate.shouldAnalyze(plane(80), 32, 24));
+        gate.reset();
+        assertTrue(gate.shouldAnalyze(plane(80), 32, 24));
+    }
+
+    @Test
+    public void computeSignature_averagesCells() {
+        int[] signature = new int[4];
+        SceneChangeGate.computeSignature(withRect(plane(0), 32, 0, 64, 24, 100), WIDTH, HEIGHT, 2, 2, 3, signature);
+        assertArrayEquals(new int[]{0, 100, 0, 0}, signature);
+    }
+}
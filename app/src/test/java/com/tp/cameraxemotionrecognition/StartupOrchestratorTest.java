@@ -0,0 +1,164 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+import static org.junit.Assert.*;
+
+public class StartupOrchestratorTest {
+    private static final long MS = 1_000_000L;
+
+    /** Runs posted steps only when asked, like a busy main thread. */
+    private static class ManualExecutor implements Executor {
+        final ArrayDeque<Runnable> tasks = new ArrayDeque<>();
+
+        @Override
+        public void execute(Runnable command) {
+            tasks.add(command);
+        }
+
+        void runAll() {
+            while (!tasks.isEmpty()) {
+                tasks.poll().run();
+            }
+        }
+    }
+
+    private static class RecordingListener implements StartupOrchestrator.Listener {
+        final List<String> started = new ArrayList<>();
+        List<StartupOrchestrator.Span> finished;
+
+        @Override
+        public void onStepStarted(String name) {
+            started.add(name);
+        }
+
+        @Override
+        public void onStepFinished(StartupOrchestrator.Span span) {
+        }
+
+        @Override
+        public void onFinished(List<StartupOrchestrator.Span> spans) {
+            finished = spans;
+        }
+    }
+
+    private final FakeClassifier.Clock clock = new FakeClassifier.Clock();
+    private final ManualExecutor executor = new ManualExecutor();
+    private final RecordingListener listener = new RecordingListener();
+    // Callbacks of steps that finish later, e.g. when the camera is ready
+    private final Map<String, StartupOrchestrator.Callback> pending = new HashMap<>();
+
+    private StartupOrchestrator.Step asyncStep(final String name) {
+        return new StartupOrchestrator.Step() {
+            @Override
+            public void start(StartupOrchestrator.Callback callback) {
+                pending.put(name, callback);
+            }
+        };
+    }
+
+    private StartupOrchestrator.Step failingStep() {
+        return new StartupOrchestrator.Step() {
+            @Override
+            public void start(StartupOrchestrator.Callback callback) {
+                throw new IllegalStateException("no camera");
+            }
+        };
+    }
+
+    private static StartupOrchestrator.Span span(List<StartupOrchestrator.Span> spans, String name) {
+        for (StartupOrchestrator.Span span : spans) {
+            if (span.name.equals(name)) {
+                return span;
+            }
+        }
+        throw new AssertionError("No span " + name);
+    }
+
+    @Test
+    public void start_runsIndependentStepsTogetherAndDependentsAfter() {
+        StartupOrchestrator startup = new StartupOrchestrator(clock, listener)
+                .add("bind", executor, asyncStep("bind"), "camera", "detector")
+                .add("camera", executor, asyncStep("camera"))
+                .add("detector", executor, asyncStep("detector"))
+                .add("model", executor, asyncStep("model"));
+        startup.start();
+        executor.runAll();
+        assertEquals(Arrays.asList("camera", "detector", "model"), listener.started);
+
+        clock.now += 50 * MS;
+        pending.get("camera").done();
+        executor.runAll();
+        assertFalse(listener.started.contains("bind"));
+
+        clock.now += 30 * MS;
+        pending.get("detector").done();
+        executor.runAll();
+        assertEquals("bind", listener.started.get(3));
+
+        clock.now += 20 * MS;
+        pending.get("bind").done();
+        pending.get("model").done();
+        assertNotNull(listener.finished);
+        assertTrue(startup.isFinished());
+        StartupOrchestrator.Span bind = span(listener.finished, "bind");
+        assertEquals(80 * MS, bind.startNanos);
+        assertEquals(100 * MS, bind.endNanos);
+        assertEquals(50, span(listener.finished, "camera").getDurationMillis());
+    }
+
+    @Test
+    public void failedStep_skipsItsDependents() {
+        StartupOrchestrator startup = new StartupOrchestrator(clock, listener)
+                .add("camera", executor, failingStep())
+                .add("bind", executor, asyncStep("bind"), "camera")
+                .add("first_frame", executor, asyncStep("first_frame"), "bind")
+                .add("tts", executor, asyncStep("tts"));
+        startup.start();
+        executor.runAll();
+        pending.get("tts").done();
+
+        assertEquals(Arrays.asList("camera", "tts"), listener.started);
+        assertEquals(StartupOrchestrator.Span.FAILED, span(listener.finished, "camera").result);
+        assertEquals(StartupOrchestrator.Span.SKIPPED, span(listener.finished, "bind").result);
+        assertEquals(StartupOrchestrator.Span.SKIPPED, span(listener.finished, "first_frame").result);
+        assertEquals(StartupOrchestrator.Span.DONE, span(listener.finished, "tts").result);
+        String json = StartupOrchestrator.toJson(0, listener.finished);
+        assertTrue(json, json.contains("\"bind\":{\"start_ms\":0,\"end_ms\":0,\"result\":\"skipped\"}"));
+    }
+
+    @Test
+    public void done_calledTwiceCountsOnce() {
+        StartupOrchestrator startup = new StartupOrchestrator(clock, listener)
+                .add("tts", executor, asyncStep("tts"));
+        startup.start();
+        executor.runAll();
+        pending.get("tts").done();
+        pending.get("tts").failed(new RuntimeException("late"));
+        assertEquals(1, startup.getSpans().size());
+        assertEquals(StartupOrchestrator.Span.DONE, startup.getSpans().get(0).result);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void start_rejectsCycles() {
+        new StartupOrchestrator(clock, listener)
+                .add("a", executor, asyncStep("a"), "b")
+                .add("b", executor, asyncStep("b"), "a")
+                .start();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void start_rejectsUnknownDependency() {
+        new StartupOrchestrator(clock, listener)
+                .add("bind", executor, asyncStep("bind"), "camera")
+                .start();
+    }
+}
@@ -0,0 +1,72 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class TensorFormatTest {
+
+    @Test
+    public void float_writesFourBytesPerChannel() {
+        ByteBuffer out = ByteBuffer.allocate(8);
+        TensorFormat.FLOAT.put(out, 200);
+        TensorFormat.FLOAT.put(out, 3);
+        assertEquals(8, out.position());
+        assertEquals(200f, out.getFloat(0), 0f);
+        assertEquals(3, TensorFormat.FLOAT.get(out, 1));
+        assertFalse(TensorFormat.FLOAT.isQuantized());
+    }
+
+    @Test
+    public void uint8_withoutQuantization_isRawBytes() {
+        TensorFormat format = TensorFormat.quantized(TensorFormat.UINT8, 0f, 0);
+        ByteBuffer out = ByteBuffer.allocate(2);
+        format.put(out, 255);
+        format.put(out, 7);
+        assertEquals((byte) 255, out.get(0));
+        assertEquals(7, out.get(1));
+        assertEquals(255, format.get(out, 0));
+        assertEquals(1, format.getBytesPerChannel());
+    }
+
+    @Test
+    public void int8_appliesScaleAndZeroPoint() {
+        // Typical full integer image input: [0, 255] -> [-128, 127].
+        TensorFormat format = TensorFormat.quantized(TensorFormat.INT8, 1f, -128);
+        ByteBuffer out = ByteBuffer.allocate(3);
+        format.put(out, 0);
+        format.put(out, 128);
+        format.put(out, 255);
+        assertEquals(-128, out.get(0));
+        assertEquals(0, out.get(1));
+        assertEquals(127, out.get(2));
+        assertEquals(128, format.get(out, 1));
+    }
+
+    @Test
+    public void quantization_clampsToTypeRange() {
+        // A [0, 1] input quantized with scale 1/255 saturates for pixel values above 1.
+        TensorFormat format = TensorFormat.quantized(TensorFormat.UINT8, 1f / 255, 0);
+        ByteBuffer out = ByteBuffer.allocate(2);
+        format.put(out, 0);
+        format.put(out, 2);
+        assertEquals(0, out.get(0));
+        assertEquals((byte) 255, out.get(1));
+    }
+
+    @Test
+    public void dequantize_usesSignedness() {
+        TensorFormat uint8 = TensorFormat.quantized(TensorFormat.UINT8, 1f / 256, 0);
+        assertEquals(1f - 1f / 256, uint8.dequantize((byte) 255), 1e-6f);
+        TensorFormat int8 = TensorFormat.quantized(TensorFormat.INT8, 1f / 256, -128);
+        assertEquals(0f, int8.dequantize((byte) -128), 1e-6f);
+        assertEquals(1f - 1f / 256, int8.dequantize((byte) 127), 1e-6f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void quantized_rejectsFloatType() {
+        TensorFormat.quantized(TensorFormat.FLOAT32, 1f, 0);
+    }
+}
@@ -0,0 +1,41 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ThreadBudgetTest {
+
+    @Test
+    public void getThreads_backsOffOnThermalAndBattery() {
+        ThreadBudget budget = new ThreadBudget(8);
+        assertEquals(8, budget.getThreads());
+        assertFalse(budget.isThrottled());
+
+        budget.setThermalStatus(ThreadBudget.THERMAL_STATUS_LIGHT);
+        assertEquals(8, budget.getThreads());
+        budget.setThermalStatus(ThreadBudget.THERMAL_STATUS_MODERATE);
+        assertEquals(4, budget.getThreads());
+        budget.setPowerSave(true);
+        assertEquals(2, budget.getThreads());
+        assertTrue(budget.isThrottled());
+        budget.setThermalStatus(ThreadBudget.THERMAL_STATUS_SEVERE);
+        assertEquals(1, budget.getThreads());
+
+        budget.setThermalStatus(ThreadBudget.THERMAL_STATUS_NONE);
+        budget.setPowerSave(false);
+        budget.setBatteryLow(true);
+        assertEquals(4, budget.getThreads());
+        budget.setBatteryLow(false);
+        assertEquals(8, budget.getThreads());
+    }
+
+    @Test
+    public void getThreads_neverBelowOne() {
+        ThreadBudget budget = new ThreadBudget(1);
+        budget.setThermalStatus(ThreadBudget.THERMAL_STATUS_MODERATE);
+        budget.setBatteryLow(true);
+        assertEquals(1, budget.getThreads());
+        assertFalse(budget.isThrottled());
+    }
+}
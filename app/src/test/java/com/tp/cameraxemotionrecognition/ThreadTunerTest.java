@@ -0,0 +1,62 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class ThreadTunerTest {
+    private static final long MS = FakeClassifier.MS;
+
+    @Test
+    public void tune_choosesFewestThreadsNearFastest() {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        // 4 threads is fastest, but 3 is within 10%.
+        FakeClassifier classifier = new FakeClassifier("cpu", clock,
+                new long[]{20 * MS, 12 * MS, 10500 * 1000L, 10 * MS});
+        ThreadTuner tuner = new ThreadTuner(clock, 1, 2, 0.1f);
+
+        assertEquals(3, tuner.tune(classifier, 4));
+        assertEquals(3, classifier.getNumThreads());
+        assertEquals(12 * MS, tuner.getAverageNanos(2));
+        assertEquals(4 * 3, classifier.runs);
+        assertEquals("1: 20.0 ms, 2: 12.0 ms, 3: 10.5 ms, 4: 10.0 ms -> 3", tuner.getSummary());
+    }
+
+    @Test
+    public void tune_zeroToleranceTakesFastest() {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        FakeClassifier classifier = new FakeClassifier("cpu", clock,
+                new long[]{20 * MS, 12 * MS, 10500 * 1000L, 10 * MS});
+
+        assertEquals(4, new ThreadTuner(clock, 0, 1, 0f).tune(classifier, 4));
+    }
+
+    @Test
+    public void tune_stopsTimingWhenInterrupted() {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        FakeClassifier classifier = new FakeClassifier("cpu", clock,
+                new long[]{20 * MS, 12 * MS, 10500 * 1000L, 10 * MS});
+        ThreadTuner tuner = new ThreadTuner(clock, 1, 2, 0.1f);
+
+        Thread.currentThread().interrupt();
+        try {
+            assertEquals(1, tuner.tune(classifier, 4));
+        } finally {
+            Thread.interrupted();
+        }
+        assertEquals(3, classifier.runs);
+        assertEquals(0, tuner.getAverageNanos(2));
+        assertEquals("1: 20.0 ms -> 1", tuner.getSummary());
+    }
+
+    @Test
+    public void tune_leavesDelegatesAlone() {
+        FakeClassifier.Clock clock = new FakeClassifier.Clock();
+        FakeClassifier gpu = new FakeClassifier("gpu", clock, 5);
+        ThreadTuner tuner = new ThreadTuner(clock, 1, 2, 0.1f);
+
+        assertEquals(1, tuner.tune(gpu, 4));
+        assertEquals(0, gpu.runs);
+        assertEquals("fixed -> 1", tuner.getSummary());
+    }
+}
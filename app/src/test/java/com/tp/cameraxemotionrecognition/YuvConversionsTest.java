@@ -0,0 +1,159 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class YuvConversionsTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+
+    private static byte y(int x, int y) {
+        return (byte) (y * WIDTH + x);
+    }
+
+    private static byte u(int x, int y) {
+        return (byte) (100 + y * WIDTH / 2 + x);
+    }
+
+    private static byte v(int x, int y) {
+        return (byte) (200 + y * WIDTH / 2 + x);
+    }
+
+    private static byte[] expectedNv21() {
+        return expected(YuvConversions.NV21);
+    }
+
+    /** The frame as it should come out: all Y, then VU pairs, UV pairs or all U then all V. */
+    private static byte[] expected(int format) {
+        byte[] out = new byte[YuvConversions.nv21Size(WIDTH, HEIGHT)];
+        int pos = 0;
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                out[pos++] = y(col, row);
+            }
+        }
+        int chromaSize = WIDTH * HEIGHT / 4;
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int col = 0; col < WIDTH / 2; col++) {
+                if (format == YuvConversions.I420) {
+                    out[pos + chromaSize] = v(col, row);
+                    out[pos++] = u(col, row);
+                } else if (format == YuvConversions.NV12) {
+                    out[pos++] = u(col, row);
+                    out[pos++] = v(col, row);
+                } else {
+                    out[pos++] = v(col, row);
+                    out[pos++] = u(col, row);
+                }
+            }
+        }
+        return out;
+    }
+
+    /** Y plane with {@code padding} bytes at the end of every row but the last. */
+    private static YuvPlane yPlane(int padding) {
+        int rowStride = WIDTH + padding;
+        ByteBuffer buffer = ByteBuffer.allocateDirect(rowStride * (HEIGHT - 1) + WIDTH);
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                buffer.put(row * rowStride + col, y(col, row));
+            }
+        }
+        return new YuvPlane(buffer, rowStride, 1);
+    }
+
+    /** U and V sharing one VU buffer, like most devices, with optional row padding. */
+    private static YuvPlane[] semiPlanar(int padding) {
+        int rowStride = WIDTH + padding;
+        int size = rowStride * (HEIGHT / 2 - 1) + WIDTH;
+        ByteBuffer vu = ByteBuffer.allocateDirect(size);
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int col = 0; col < WIDTH / 2; col++) {
+                vu.put(row * rowStride + 2 * col, v(col, row));
+                vu.put(row * rowStride + 2 * col + 1, u(col, row));
+            }
+        }
+        ByteBuffer v = vu.duplicate();
+        v.limit(size - 1);
+        ByteBuffer u = vu.duplicate();
+        u.position(1);
+        return new YuvPlane[]{yPlane(padding), new YuvPlane(u.slice(), rowStride, 2),
+                new YuvPlane(v.slice(), rowStride, 2)};
+    }
+
+    private static YuvPlane[] planar() {
+        ByteBuffer u = ByteBuffer.allocate(WIDTH * HEIGHT / 4);
+        ByteBuffer v = ByteBuffer.allocate(WIDTH * HEIGHT / 4);
+        for (int row = 0; row < HEIGHT / 2; row++) {
+            for (int col = 0; col < WIDTH / 2; col++) {
+                u.put(row * WIDTH / 2 + col, u(col, row));
+                v.put(row * WIDTH / 2 + col, v(col, row));
+            }
+        }
+        return new YuvPlane[]{yPlane(0), new YuvPlane(u, WIDTH / 2, 1), new YuvPlane(v, WIDTH / 2, 1)};
+    }
+
+    private static byte[] toNv21(YuvPlane[] planes) {
+        byte[] out = new byte[YuvConversions.nv21Size(WIDTH, HEIGHT)];
+        YuvConversions.yuv420ThreePlanesToNV21(planes, WIDTH, HEIGHT, out);
+        return out;
+    }
+
+    private static byte[] convert(YuvPlane[] planes, int format, byte[] rowScratch) {
+        byte[] out = new byte[YuvConversions.nv21Size(WIDTH, HEIGHT)];
+        YuvConversions.convert(planes, WIDTH, HEIGHT, format, out, rowScratch);
+        return out;
+    }
+
+    @Test
+    public void semiPlanar_usesNv21Layout() {
+        YuvPlane[] planes = semiPlanar(0);
+        assertTrue(YuvConversions.areUVPlanesNV21(planes, WIDTH, HEIGHT));
+        assertArrayEquals(expectedNv21(), toNv21(planes));
+    }
+
+    @Test
+    public void paddedRows_fallBackToUnpacking() {
+        YuvPlane[] planes = semiPlanar(4);
+        assertFalse(YuvConversions.areUVPlanesNV21(planes, WIDTH, HEIGHT));
+        assertArrayEquals(expectedNv21(), toNv21(planes));
+    }
+
+    @Test
+    public void planar_isInterleaved() {
+        YuvPlane[] planes = planar();
+        assertFalse(YuvConversions.areUVPlanesNV21(planes, WIDTH, HEIGHT));
+        assertArrayEquals(expectedNv21(), toNv21(planes));
+    }
+
+    @Test
+    public void allLayouts_convertToEveryFormat() {
+        int[] formats = {YuvConversions.NV21, YuvConversions.NV12, YuvConversions.I420};
+        byte[] rowScratch = new byte[YuvConversions.rowScratchSize(WIDTH)];
+        for (int format : formats) {
+            assertArrayEquals("semi-planar " + format, expected(format), convert(semiPlanar(0), format, rowScratch));
+            assertArrayEquals("padded " + format, expected(format), convert(semiPlanar(4), format, rowScratch));
+            assertArrayEquals("planar " + format, expected(format), convert(planar(), format, rowScratch));
+        }
+    }
+
+    @Test
+    public void repeatedConversion_leavesPlanesReusable() {
+        YuvPlane[] planes = semiPlanar(0);
+        byte[] rowScratch = new byte[YuvConversions.rowScratchSize(WIDTH)];
+        convert(planes, YuvConversions.NV21, rowScratch);
+        assertArrayEquals(expectedNv21(), convert(planes, YuvConversions.NV21, rowScratch));
+        assertEquals(0, planes[0].getBuffer().position());
+        assertEquals(0, planes[1].getBuffer().position());
+    }
+
+    @Test
+    public void paddedLumaRows_areSkipped() {
+        YuvPlane[] planes = semiPlanar(0);
+        planes[0] = yPlane(6);
+        assertArrayEquals(expectedNv21(), convert(planes, YuvConversions.NV21, null));
+    }
+}
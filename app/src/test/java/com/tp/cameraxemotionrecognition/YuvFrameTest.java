@@ -0,0 +1,62 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.*;
+
+public class YuvFrameTest {
+
+    private static void wrap(YuvFrame frame, int width, int height, int rotation, ByteBuffer y, ByteBuffer uv) {
+        frame.reset(width, height, rotation);
+        frame.setPlane(0, y, width, 1);
+        frame.setPlane(1, uv, width, 2);
+        frame.setPlane(2, uv, width, 2);
+    }
+
+    @Test
+    public void reset_reusesPlanesAndGeometryWhileSizeIsUnchanged() {
+        YuvFrame frame = new YuvFrame();
+        assertTrue(frame.isReleased());
+        ByteBuffer y1 = ByteBuffer.allocate(64 * 48);
+        ByteBuffer uv1 = ByteBuffer.allocate(64 * 24);
+        wrap(frame, 64, 48, 90, y1, uv1);
+        YuvPlane yPlane = frame.getYPlane();
+        FrameMetadata metadata = frame.getMetadata();
+        FrameCoordinates coordinates = frame.getCoordinates();
+        assertSame(y1, yPlane.getBuffer());
+        assertEquals(2, frame.getUPlane().getPixelStride());
+        frame.release();
+        assertTrue(frame.isReleased());
+        assertNull(yPlane.getBuffer());
+
+        ByteBuffer y2 = ByteBuffer.allocate(64 * 48);
+        wrap(frame, 64, 48, 90, y2, uv1);
+
+        assertSame(yPlane, frame.getYPlane());
+        assertSame(y2, frame.getYPlane().getBuffer());
+        assertSame(metadata, frame.getMetadata());
+        assertSame(coordinates, frame.getCoordinates());
+    }
+
+    @Test
+    public void reset_rebuildsGeometryWhenRotationChanges() {
+        YuvFrame frame = new YuvFrame();
+        ByteBuffer y = ByteBuffer.allocate(64 * 48);
+        ByteBuffer uv = ByteBuffer.allocate(64 * 24);
+        wrap(frame, 64, 48, 0, y, uv);
+        FrameCoordinates upright = frame.getCoordinates();
+        frame.release();
+
+        wrap(frame, 64, 48, 90, y, uv);
+
+        assertNotSame(upright, frame.getCoordinates());
+        assertEquals(90, frame.getMetadata().getRotation());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void setPlane_failsOnReleasedFrame() {
+        new YuvFrame().setPlane(0, ByteBuffer.allocate(4), 2, 1);
+    }
+}
@@ -0,0 +1,177 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.*;
+
+public class YuvTensorConverterTest {
+    private static final int WIDTH = 8;
+    private static final int HEIGHT = 4;
+
+    /** Y plane with a distinct value per pixel and a row stride wider than the image. */
+    private static YuvPlane lumaPlane(int[][] luma, int rowStride) {
+        ByteBuffer buffer = ByteBuffer.allocateDirect(rowStride * luma.length);
+        for (int row = 0; row < luma.length; row++) {
+            for (int col = 0; col < luma[row].length; col++) {
+                buffer.put(row * rowStride + col, (byte) luma[row][col]);
+            }
+        }
+        return new YuvPlane(buffer, rowStride, 1);
+    }
+
+    /** Constant chroma plane with the given pixel stride. */
+    private static YuvPlane chromaPlane(int value, int pixelStride) {
+        int rowStride = WIDTH / 2 * pixelStride;
+        ByteBuffer buffer = ByteBuffer.allocate(rowStride * HEIGHT / 2);
+        for (int i = 0; i < buffer.capacity(); i++) {
+            buffer.put(i, (byte) value);
+        }
+        return new YuvPlane(buffer, rowStride, pixelStride);
+    }
+
+    private static int[][] sensorLuma() {
+        int[][] luma = new int[HEIGHT][WIDTH];
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                luma[row][col] = 100 + row * WIDTH + col;
+            }
+        }
+        return luma;
+    }
+
+    /** Rotates a grid 90 degrees clockwise, like Matrix.postRotate(90) does to a bitmap. */
+    private static int[][] rotateClockwise(int[][] grid) {
+        int rows = grid.length;
+        int cols = grid[0].length;
+        int[][] rotated = new int[cols][rows];
+        for (int row = 0; row < rows; row++) {
+            for (int col = 0; col < cols; col++) {
+                rotated[col][rows - 1 - row] = grid[row][col];
+            }
+        }
+        return rotated;
+    }
+
+    private static ByteBuffer convert(YuvPlane y, YuvPlane u, YuvPlane v, int rotation, int outputSize,
+                                      int left, int top, int right, int bottom) {
+        YuvTensorConverter converter = new YuvTensorConverter(outputSize);
+        ByteBuffer out = ByteBuffer.allocateDirect(converter.getTensorBytes()).order(ByteOrder.nativeOrder());
+        FrameMetadata metadata = new FrameMetadata.Builder()
+                .setWidth(WIDTH).setHeight(HEIGHT).setRotation(rotation).build();
+        converter.convert(y, u, v, metadata, left, top, right, bottom, out);
+        assertEquals(converter.getTensorBytes(), out.position());
+        return out;
+    }
+
+    private static float channel(ByteBuffer tensor, int outputSize, int x, int y, int channel) {
+        return tensor.getFloat(4 * ((y * outputSize + x) * YuvTensorConverter.CHANNELS + channel));
+    }
+
+    @Test
+    public void convert_matchesRotatedFrame() {
+        int[][] upright = sensorLuma();
+        YuvPlane y = lumaPlane(upright, WIDTH + 3);
+        YuvPlane u = chromaPlane(128, 1);
+        YuvPlane v = chromaPlane(128, 1);
+
+        for (int rotation = 0; rotation < 360; rotation += 90) {
+            int width = upright[0].length;
+            int height = upright.length;
+            // Square crop from the top-left corner of the upright image, sampled 1:1.
+            int size = Math.min(width, height);
+            ByteBuffer out = convert(y, u, v, rotation, size, 0, 0, size, size);
+            for (int row = 0; row < size; row++) {
+                for (int col = 0; col < size; col++) {
+                    for (int c = 0; c < YuvTensorConverter.CHANNELS; c++) {
+                        assertEquals("rotation " + rotation + " at " + col + "," + row,
+                                upright[row][col], channel(out, size, col, row, c), 0f);
+                    }
+                }
+            }
+            upright = rotateClockwise(upright);
+        }
+    }
+
+    @Test
+    public void convert_readsInterleavedChroma() {
+        YuvPlane y = lumaPlane(sensorLuma(), WIDTH);
+        YuvPlane u = chromaPlane(128, 2);
+        YuvPlane v = chromaPlane(228, 2);
+
+        ByteBuffer out = convert(y, u, v, 0, 2, 0, 0, 2, 2);
+        int luma = 100 + WIDTH + 1;
+        // V = +100: red goes up, green goes down, blue is unchanged.
+        assertEquals(luma + 140, channel(out, 2, 1, 1, 0), 0f);
+        assertEquals(luma - 71, channel(out, 2, 1, 1, 1), 0f);
+        assertEquals(luma, channel(out, 2, 1, 1, 2), 0f);
+    }
+
+    @Test
+    public void convert_scalesWithNearestNeighbour() {
+        YuvPlane y = lumaPlane(sensorLuma(), WIDTH);
+        YuvPlane chroma = chromaPlane(128, 1);
+
+        // 4x4 crop down to 2x2 samples the centre of each 2x2 block.
+        ByteBuffer out = convert(y, chroma, chroma, 0, 2, 4, 0, 8, 4);
+        assertEquals(100 + 1 * WIDTH + 5, channel(out, 2, 0, 0, 0), 0f);
+        assertEquals(100 + 1 * WIDTH + 7, channel(out, 2, 1, 0, 0), 0f);
+        assertEquals(100 + 3 * WIDTH + 5, channel(out, 2, 0, 1, 0), 0f);
+        assertEquals(100 + 3 * WIDTH + 7, channel(out, 2, 1, 1, 0), 0f);
+    }
+
+    @Test
+    public void convert_writesBlackOutsideFrame() {
+        YuvPlane y = lumaPlane(sensorLuma(), WIDTH);
+        YuvPlane chroma = chromaPlane(128, 1);
+
+        ByteBuffer out = convert(y, chroma, chroma, 0, 2, -2, -2, 2, 2);
+        assertEquals(0f, channel(out, 2, 0, 0, 0), 0f);
+        assertEquals(100 + WIDTH + 1, channel(out, 2, 1, 1, 0), 0f);
+    }
+
+    @Test
+    public void convert_writesBytesForQuantizedInput() {
+        YuvPlane y = lumaPlane(sensorLuma(), WIDTH);
+        YuvPlane chroma = chromaPlane(128, 1);
+        TensorFormat format = TensorFormat.quantized(TensorFormat.UINT8, 1f, 0);
+        YuvTensorConverter converter = new YuvTensorConverter(2, format);
+        assertEquals(2 * 2 * YuvTensorConverter.CHANNELS, converter.getTensorBytes());
+
+        ByteBuffer out = ByteBuffer.allocate(converter.getTensorBytes());
+        FrameMetadata metadata = new FrameMetadata.Builder().setWidth(WIDTH).setHeight(HEIGHT).build();
+        converter.convert(y, chroma, chroma, metadata, 4, 0, 8, 4, out);
+        assertEquals(converter.getTensorBytes(), out.position());
+        assertEquals(100 + 1 * WIDTH + 5, out.get(0) & 0xFF);
+        assertEquals(100 + 3 * WIDTH + 7, out.get(3 * YuvTensorConverter.CHANNELS) & 0xFF);
+    }
+
+    @Test
+    public void convertArgb_samplesCentresAndWritesBlackOutside() {
+        int[] pixels = new int[WIDTH * HEIGHT];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFF000000 | i << 16 | (i + 1) << 8 | (i + 2);
+        }
+        YuvTensorConverter converter = new YuvTensorConverter(2);
+        ByteBuffer out = ByteBuffer.allocateDirect(converter.getTensorBytes()).order(ByteOrder.nativeOrder());
+
+        // Same sampling as the YUV path; the right half of the crop is past the frame.
+        converter.convertArgb(pixels, WIDTH, HEIGHT, 4, 0, 12, 4, out);
+        assertEquals(converter.getTensorBytes(), out.position());
+        int sample = 1 * WIDTH + 6;
+        assertEquals(sample, channel(out, 2, 0, 0, 0), 0f);
+        assertEquals(sample + 1, channel(out, 2, 0, 0, 1), 0f);
+        assertEquals(sample + 2, channel(out, 2, 0, 0, 2), 0f);
+        assertEquals(0f, channel(out, 2, 1, 0, 0), 0f);
+        assertEquals(3 * WIDTH + 6, channel(out, 2, 0, 1, 0), 0f);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void convert_rejectsUnknownRotation() {
+        YuvPlane y = lumaPlane(sensorLuma(), WIDTH);
+        YuvPlane chroma = chromaPlane(128, 1);
+        convert(y, chroma, chroma, 45, 2, 0, 0, 2, 2);
+    }
+}
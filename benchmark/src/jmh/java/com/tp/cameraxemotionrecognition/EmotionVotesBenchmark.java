@@ -0,0 +1,65 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/**
+ * Per-frame majority vote: the HashMap based {@code mostFrequentWord} against {@link EmotionVotes}
+ * over the same labels, for a single frame and for a window of frames.
+ */
+@State(Scope.Thread)
+public class EmotionVotesBenchmark {
+
+    @Param({"1", "4", "16"})
+    public int faces;
+
+    private int[] emotions;
+    private float[] confidences;
+    private ArrayList<String> labels;
+    private EmotionVotes frameVotes;
+    private EmotionVotes windowVotes;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        emotions = new int[faces];
+        confidences = new float[faces];
+        labels = new ArrayList<>();
+        for (int i = 0; i < faces; i++) {
+            emotions[i] = random.nextInt(Emotions.NUM_CLASSES);
+            confidences[i] = random.nextFloat();
+            labels.add(Emotions.CLASSES[emotions[i]]);
+        }
+        frameVotes = new EmotionVotes(Emotions.NUM_CLASSES, 1);
+        windowVotes = new EmotionVotes(Emotions.NUM_CLASSES, 10);
+    }
+
+    @Benchmark
+    public String mostFrequentWord() {
+        return LegacyVotes.mostFrequentWord(labels);
+    }
+
+    @Benchmark
+    public int votesSingleFrame() {
+        frameVotes.beginFrame();
+        for (int i = 0; i < faces; i++) {
+            frameVotes.add(emotions[i]);
+        }
+        return frameVotes.getMajority();
+    }
+
+    @Benchmark
+    public int votesWeightedWindow() {
+        windowVotes.beginFrame();
+        for (int i = 0; i < faces; i++) {
+            windowVotes.add(emotions[i], confidences[i]);
+        }
+        return windowVotes.getMajority();
+    }
+}
@@ -0,0 +1,109 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-frame work around the model call for {@code faces} faces: filling the input tensor, either
+ * from YUV planes or from bitmap pixels, and reducing the outputs to a spoken label.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class FaceTensorBenchmark {
+    private static final int IMAGE_SIZE = 224;
+
+    @Param({"480p", "720p", "1080p"})
+    public String resolution;
+
+    @Param({"1", "4", "8"})
+    public int faces;
+
+    /** Input element type: the float model, or a quantized one taking a byte per channel. */
+    @Param({"float32", "uint8"})
+    public String input;
+
+    private YuvFrame frame;
+    private int[][] boxes;
+    private TensorFormat format;
+    private YuvTensorConverter converter;
+    private ByteBuffer tensor;
+    private int[] pixels;
+    private float[][] confidences;
+
+    @Setup
+    public void setUp() {
+        int[] size = SyntheticFrames.size(resolution);
+        YuvPlane[] planes = SyntheticFrames.planes(size[0], size[1], SyntheticFrames.SEMI_PLANAR, 42);
+        // Portrait phone, the sensor frame is rotated by 90 degrees.
+        FrameMetadata metadata = new FrameMetadata.Builder()
+                .setWidth(size[0])
+                .setHeight(size[1])
+                .setRotation(90)
+                .build();
+        frame = new YuvFrame(planes[0], planes[1], planes[2], metadata);
+        boxes = SyntheticFrames.faces(size[1], size[0], faces, 7);
+        format = "uint8".equals(input) ? TensorFormat.quantized(TensorFormat.UINT8, 1f, 0) : TensorFormat.FLOAT;
+        converter = new YuvTensorConverter(IMAGE_SIZE, format);
+        tensor = ByteBuffer.allocateDirect(converter.getTensorBytes()).order(ByteOrder.nativeOrder());
+
+        Random random = new Random(42);
+        pixels = new int[IMAGE_SIZE * IMAGE_SIZE];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = random.nextInt();
+        }
+        confidences = new float[faces][Emotions.NUM_CLASSES];
+        for (float[] scores : confidences) {
+            for (int i = 0; i < scores.length; i++) {
+                scores[i] = random.nextFloat();
+            }
+        }
+    }
+
+    @Benchmark
+    public ByteBuffer yuvFacesToTensor() {
+        for (int[] box : boxes) {
+            tensor.clear();
+            frame.convertFace(converter, box[0], box[1], box[2], box[3], tensor);
+        }
+        return tensor;
+    }
+
+    /** The RGB unpack loop of {@code classify(Bitmap)}, once per face. */
+    @Benchmark
+    public ByteBuffer argbFacesToTensor() {
+        for (int i = 0; i < faces; i++) {
+            tensor.clear();
+            YuvTensorConverter.argbToTensor(pixels, pixels.length, format, tensor);
+        }
+        return tensor;
+    }
+
+    @Benchmark
+    public int argmax() {
+        int sum = 0;
+        for (float[] scores : confidences) {
+            sum += Emotions.argmax(scores);
+        }
+        return sum;
+    }
+
+    /** Argmax, label lookup and the HashMap vote, as the analyzer did it per frame. */
+    @Benchmark
+    public String argmaxAndMostFrequentWord() {
+        ArrayList<String> labels = new ArrayList<>();
+        for (float[] scores : confidences) {
+            labels.add(Emotions.CLASSES[Emotions.argmax(scores)]);
+        }
+        return LegacyVotes.mostFrequentWord(labels);
+    }
+}
@@ -0,0 +1,55 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * The HashMap based majority vote the app used before {@link EmotionVotes}, kept here as the
+ * baseline of the vote benchmarks.
+ */
+final class LegacyVotes {
+
+    private LegacyVotes() {
+    }
+
+    static String mostFrequentWord(ArrayList<String> arr)
+    {
+        HashMap<String, Integer> freq = new HashMap<>();
+        HashMap<String, Integer> occurrence
+                = new HashMap<>();
+        int max = 0;
+        String result = "";
+        int k = 1;
+
+        for (String s : arr) {
+            if (occurrence.containsKey(s)) {
+                continue;
+            }
+
+            occurrence.put(s, k);
+            k++;
+        }
+
+        for (String s : arr) {
+            if (freq.containsKey(s)) {
+                freq.put(s, freq.get(s) + 1);
+            } else
+                freq.put(s, +1);
+
+            if (max <= freq.get(s)) {
+                if (max < freq.get(s)) {
+                    max = freq.get(s);
+                    result = s;
+                } else {
+                    if (occurrence.get(result)
+                            < occurrence.get(s)) {
+                        max = freq.get(s);
+                        result = s;
+                    }
+                }
+            }
+        }
+
+        return result;
+    }
+}
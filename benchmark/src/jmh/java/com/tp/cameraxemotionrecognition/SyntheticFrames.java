@@ -0,0 +1,79 @@
+package com.tp.cameraxemotionrecognition;
+
+import java.nio.ByteBuffer;
+import java.util.Random;
+
+/** Random YUV_420_888 frames laid out the way camera HALs hand them out. */
+final class SyntheticFrames {
+
+    /** Chroma interleaved as VU with the planes one byte apart; the NV21 fast path applies. */
+    static final String SEMI_PLANAR = "semiPlanar";
+    /** Separate U and V planes with a pixel stride of 1. */
+    static final String PLANAR = "planar";
+    /** Interleaved chroma with row padding, which sends the NV21 conversion to the fallback. */
+    static final String PADDED = "padded";
+
+    private static final int ROW_PADDING = 64;
+
+    private SyntheticFrames() {
+    }
+
+    /** Width and height of "480p", "720p" or "1080p". */
+    static int[] size(String resolution) {
+        switch (resolution) {
+            case "480p":
+                return new int[]{640, 480};
+            case "720p":
+                return new int[]{1280, 720};
+            case "1080p":
+                return new int[]{1920, 1080};
+            default:
+                throw new IllegalArgumentException("Unknown resolution " + resolution);
+        }
+    }
+
+    /** Y, U and V planes of a {@code width x height} frame in the given layout. */
+    static YuvPlane[] planes(int width, int height, String layout, long seed) {
+        Random random = new Random(seed);
+        int chromaWidth = width / 2;
+        int chromaHeight = height / 2;
+        int rowStride = PADDED.equals(layout) ? width + ROW_PADDING : width;
+        YuvPlane y = new YuvPlane(random(rowStride * (height - 1) + width, random), rowStride, 1);
+
+        if (PLANAR.equals(layout)) {
+            YuvPlane u = new YuvPlane(random(chromaWidth * chromaHeight, random), chromaWidth, 1);
+            YuvPlane v = new YuvPlane(random(chromaWidth * chromaHeight, random), chromaWidth, 1);
+            return new YuvPlane[]{y, u, v};
+        }
+        // One VU buffer; like on devices, each plane misses the other's last (or first) byte.
+        int chromaBytes = rowStride * (chromaHeight - 1) + 2 * chromaWidth;
+        ByteBuffer vu = random(chromaBytes, random);
+        ByteBuffer v = vu.duplicate();
+        v.limit(chromaBytes - 1);
+        ByteBuffer u = vu.duplicate();
+        u.position(1);
+        return new YuvPlane[]{y, new YuvPlane(u.slice(), rowStride, 2), new YuvPlane(v.slice(), rowStride, 2)};
+    }
+
+    /** Face boxes of about a fifth of the upright frame height, spread over the frame. */
+    static int[][] faces(int uprightWidth, int uprightHeight, int count, long seed) {
+        Random random = new Random(seed);
+        int side = uprightHeight / 5;
+        int[][] boxes = new int[count][];
+        for (int i = 0; i < count; i++) {
+            int left = random.nextInt(uprightWidth - side);
+            int top = random.nextInt(uprightHeight - side);
+            boxes[i] = new int[]{left, top, left + side, top + side};
+        }
+        return boxes;
+    }
+
+    private static ByteBuffer random(int size, Random random) {
+        byte[] bytes = new byte[size];
+        random.nextBytes(bytes);
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size);
+        buffer.put(bytes);
+        buffer.rewind();
+        return buffer;
+    }
+}
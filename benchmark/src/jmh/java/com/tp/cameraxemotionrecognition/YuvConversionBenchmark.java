@@ -0,0 +1,78 @@
+package com.tp.cameraxemotionrecognition;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * YUV_420_888 repacking of whole frames, as done before building a preview bitmap, next to the
+ * byte at a time unpacking it replaced.
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class YuvConversionBenchmark {
+
+    @Param({"480p", "720p", "1080p"})
+    public String resolution;
+
+    @Param({SyntheticFrames.SEMI_PLANAR, SyntheticFrames.PLANAR, SyntheticFrames.PADDED})
+    public String layout;
+
+    private int width;
+    private int height;
+    private YuvPlane[] planes;
+    private byte[] nv21;
+    private byte[] rowScratch;
+
+    @Setup
+    public void setUp() {
+        int[] size = SyntheticFrames.size(resolution);
+        width = size[0];
+        height = size[1];
+        planes = SyntheticFrames.planes(width, height, layout, 42);
+        nv21 = new byte[YuvConversions.nv21Size(width, height)];
+        rowScratch = new byte[YuvConversions.rowScratchSize(width)];
+    }
+
+    @Benchmark
+    public byte[] toNv21() {
+        YuvConversions.convert(planes, width, height, YuvConversions.NV21, nv21, rowScratch);
+        return nv21;
+    }
+
+    @Benchmark
+    public byte[] toNv12() {
+        YuvConversions.convert(planes, width, height, YuvConversions.NV12, nv21, rowScratch);
+        return nv21;
+    }
+
+    @Benchmark
+    public byte[] toI420() {
+        YuvConversions.convert(planes, width, height, YuvConversions.I420, nv21, rowScratch);
+        return nv21;
+    }
+
+    /** The per-plane fallback alone, for the chroma layout at hand. */
+    @Benchmark
+    public byte[] unpackPlanes() {
+        int imageSize = width * height;
+        YuvConversions.unpackPlane(planes[0], width, height, nv21, 0, 1, rowScratch);
+        YuvConversions.unpackPlane(planes[1], width, height, nv21, imageSize + 1, 2, rowScratch);
+        YuvConversions.unpackPlane(planes[2], width, height, nv21, imageSize, 2, rowScratch);
+        return nv21;
+    }
+
+    @Benchmark
+    public byte[] legacyUnpackPlanes() {
+        int imageSize = width * height;
+        LegacyYuv.unpackPlane(planes[0], width, height, nv21, 0, 1);
+        LegacyYuv.unpackPlane(planes[1], width, height, nv21, imageSize + 1, 2);
+        LegacyYuv.unpackPlane(planes[2], width, height, nv21, imageSize, 2);
+        return nv21;
+    }
+}